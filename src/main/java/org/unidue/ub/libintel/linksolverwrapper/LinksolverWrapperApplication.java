@@ -19,7 +19,9 @@ public class LinksolverWrapperApplication extends WebSecurityConfigurerAdapter {
     }
 
     /**
-     *  Security settings. access is allowed from everywhere to the /resolve endpoint
+     *  Security settings. access is allowed from everywhere to the /resolve and /resolve/batch endpoints, the caches
+     *  and the import of the Unpaywall snapshot are restricted to the system user. As the API keeps no sessions, these
+     *  requests need no CSRF token.
      * @param http HTTP security object from the Spring framework
      * @throws Exception General exception
      */
@@ -29,7 +31,12 @@ public class LinksolverWrapperApplication extends WebSecurityConfigurerAdapter {
                 .and()
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
+                .csrf().ignoringAntMatchers("/resolve/batch", "/caches/**", "/unpaywall/snapshot/**")
+                .and()
                 .authorizeRequests()
-                .antMatchers(HttpMethod.GET, "/resolve").permitAll();
+                .antMatchers(HttpMethod.GET, "/resolve").permitAll()
+                .antMatchers(HttpMethod.POST, "/resolve/batch").permitAll()
+                .antMatchers("/caches/**").hasRole("SYSTEM")
+                .antMatchers("/unpaywall/snapshot/**").hasRole("SYSTEM");
     }
 }
@@ -1,6 +1,8 @@
 package org.unidue.ub.libintel.linksolverwrapper;
 
+import feign.Client;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
@@ -8,7 +10,10 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamFeignClient;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
@@ -42,4 +47,46 @@ public class LinksolverWrapperConfiguration {
     ) {
         return new JpaTransactionManager(entityManagerFactory);
     }
+
+    /**
+     * thread pool running the calls to the upstream services (doi resolver, Unpaywall, linksolver) in parallel
+     * @param poolSize the maximum number of concurrent upstream calls
+     * @return the executor for upstream calls
+     */
+    @Bean
+    public ThreadPoolTaskExecutor upstreamExecutor(@Value("${libintel.upstream.pool.size:64}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("upstream-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * thread pool running the resolution of /resolve requests in the 'async' execution mode. As the threads mostly
+     * wait for the upstream services, the pool may be much larger than the servlet thread pool.
+     * @param poolSize the maximum number of concurrent resolutions
+     * @return the executor for resolutions
+     */
+    @Bean
+    public ThreadPoolTaskExecutor resolveExecutor(@Value("${libintel.resolve.pool.size:500}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("resolve-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * runs the Feign clients on the shared upstream connection pools
+     * @param upstreamHttpClient the shared HTTP client
+     * @return the Feign client
+     */
+    @Bean
+    public Client feignClient(UpstreamHttpClient upstreamHttpClient) {
+        return new UpstreamFeignClient(upstreamHttpClient);
+    }
 }
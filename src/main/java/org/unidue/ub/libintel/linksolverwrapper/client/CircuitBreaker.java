@@ -0,0 +1,219 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker and adaptive timeout of one upstream. The outcomes and latencies of the last requests are kept in a
+ * sliding window. If the failure rate in the window exceeds the threshold, the breaker opens and requests are rejected
+ * without being sent. After the open period, a single probe request is let through: if it succeeds, the breaker closes
+ * again, otherwise it stays open for another period.
+ * <p>
+ * The request timeout follows the observed latency: a multiple of the 99th percentile of the successful requests in
+ * the window, at least the minimum and at most the configured request timeout. Until enough requests are observed,
+ * the configured request timeout is used.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final long failureRateThreshold;
+
+    private final int minimumCalls;
+
+    private final long openDurationNanos;
+
+    private final long maxTimeoutMillis;
+
+    private final long minTimeoutMillis;
+
+    private final double timeoutFactor;
+
+    private final LongSupplier clock;
+
+    // ring buffers of the outcomes and the latencies of the last requests, guarded by this
+    private final boolean[] failures;
+
+    private final long[] latencies;
+
+    private int position = 0;
+
+    private int calls = 0;
+
+    private int failed = 0;
+
+    private int successes = 0;
+
+    private volatile State state = State.CLOSED;
+
+    private volatile long openedAt;
+
+    private volatile long timeoutMillis;
+
+    // set while the probe request of the half open state is in flight
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    public CircuitBreaker(HttpClientProperties.Settings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    /**
+     * @param settings the settings of the upstream
+     * @param clock    the source of the current time in nanoseconds
+     */
+    public CircuitBreaker(HttpClientProperties.Settings settings, LongSupplier clock) {
+        this.failureRateThreshold = settings.getFailureRateThreshold();
+        this.minimumCalls = Math.max(1, Math.min(settings.getMinimumCalls(), settings.getWindowSize()));
+        this.openDurationNanos = Duration.ofMillis(settings.getOpenDuration()).toNanos();
+        this.maxTimeoutMillis = settings.getRequestTimeout();
+        this.minTimeoutMillis = Math.min(settings.getMinRequestTimeout(), maxTimeoutMillis);
+        this.timeoutFactor = settings.getTimeoutFactor();
+        this.clock = clock;
+        this.failures = new boolean[settings.getWindowSize()];
+        this.latencies = new long[settings.getWindowSize()];
+        this.timeoutMillis = maxTimeoutMillis;
+    }
+
+    /**
+     * decides whether a request may be sent. In the half open state, only one probe request is allowed at a time.
+     * Each allowed request must be followed by a call of {@link #onSuccess(long)}, {@link #onFailure()} or
+     * {@link #release()}.
+     *
+     * @return true if the request may be sent
+     */
+    public boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openDurationNanos)
+                    return false;
+                synchronized (this) {
+                    if (state == State.OPEN)
+                        state = State.HALF_OPEN;
+                }
+                return probing.compareAndSet(false, true);
+            default:
+                return probing.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * @return false if the breaker is open and requests are rejected, without acquiring a probe
+     */
+    public boolean isAvailable() {
+        return state != State.OPEN || clock.getAsLong() - openedAt >= openDurationNanos;
+    }
+
+    /**
+     * records a successful request
+     *
+     * @param latencyNanos the duration of the request
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        if (state == State.HALF_OPEN) {
+            reset();
+            state = State.CLOSED;
+            probing.set(false);
+        }
+        record(false, latencyNanos);
+    }
+
+    /**
+     * records a failed request, i.e. a connection error, a timeout or a server error
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            probing.set(false);
+            return;
+        }
+        record(true, 0);
+        if (state == State.CLOSED && calls >= minimumCalls && failed * 100L >= failureRateThreshold * calls)
+            open();
+    }
+
+    /**
+     * releases an allowed request which was not sent, without recording an outcome
+     */
+    public void release() {
+        if (state == State.HALF_OPEN)
+            probing.set(false);
+    }
+
+    /**
+     * @return the current timeout for a complete request
+     */
+    public Duration getTimeout() {
+        return Duration.ofMillis(timeoutMillis);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the share of failed requests in the window in percent
+     */
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : failed * 100.0 / calls;
+    }
+
+    /**
+     * @return the number of requests in the window
+     */
+    public synchronized int getCalls() {
+        return calls;
+    }
+
+    private void record(boolean failure, long latencyNanos) {
+        if (calls == failures.length) {
+            // the oldest request leaves the window
+            if (failures[position])
+                failed--;
+            else
+                successes--;
+        } else
+            calls++;
+        failures[position] = failure;
+        latencies[position] = latencyNanos;
+        if (failure)
+            failed++;
+        else
+            successes++;
+        position = (position + 1) % failures.length;
+        // the percentile is only computed every few requests
+        if (!failure && successes >= minimumCalls && position % 10 == 0)
+            updateTimeout();
+    }
+
+    private void updateTimeout() {
+        long[] successful = new long[successes];
+        int count = 0;
+        for (int i = 0; i < calls; i++)
+            if (!failures[i])
+                successful[count++] = latencies[i];
+        Arrays.sort(successful, 0, count);
+        long percentile = successful[Math.min(count - 1, (int) Math.ceil(count * 0.99) - 1)];
+        long timeout = (long) (timeoutFactor * percentile / 1_000_000);
+        timeoutMillis = Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, timeout));
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        reset();
+    }
+
+    private void reset() {
+        Arrays.fill(failures, false);
+        position = 0;
+        calls = 0;
+        failed = 0;
+        successes = 0;
+    }
+}
@@ -5,14 +5,12 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RequestParam;
 import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteResponse;
 
-
-@FeignClient(name="dataciteClient", url="https://data.datacite.org")
+@FeignClient(name="dataciteClient", url="https://api.datacite.org")
 @Component
 public interface DataciteClient {
 
-    @RequestMapping(method= RequestMethod.GET, value="/application/vnd.datacite.datacite+xml/{doi}")
-    DataciteResponse getDataciteData(@PathVariable String doi, @RequestParam String email);
+    @RequestMapping(method= RequestMethod.GET, value="/dois/{doi}")
+    DataciteResponse getDataciteData(@PathVariable String doi);
 }
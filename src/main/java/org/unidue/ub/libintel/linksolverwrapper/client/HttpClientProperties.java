@@ -0,0 +1,139 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * connection settings for the upstream services, e.g. 'libintel.http.upstreams.linksolver.request-timeout=60000'.
+ * Upstreams without own settings use the defaults.
+ */
+@Component
+@ConfigurationProperties(prefix = "libintel.http")
+public class HttpClientProperties {
+
+    private Map<String, Settings> upstreams = new HashMap<>();
+
+    public Map<String, Settings> getUpstreams() {
+        return upstreams;
+    }
+
+    public void setUpstreams(Map<String, Settings> upstreams) {
+        this.upstreams = upstreams;
+    }
+
+    /**
+     * @param upstream the upstream
+     * @return the settings for the upstream, or the default settings if none are configured
+     */
+    public Settings getSettings(Upstream upstream) {
+        return upstreams.getOrDefault(upstream.getName(), new Settings());
+    }
+
+    /**
+     * connection settings of a single upstream
+     */
+    public static class Settings {
+
+        // maximum number of concurrent requests
+        private int maxConnections = 50;
+
+        // connect timeout in milliseconds
+        private long connectTimeout = 5000;
+
+        // timeout for the complete request in milliseconds, the upper bound of the adaptive timeout
+        private long requestTimeout = 60000;
+
+        // lower bound of the adaptive timeout in milliseconds
+        private long minRequestTimeout = 5000;
+
+        // the adaptive timeout is this multiple of the 99th percentile of the observed latency
+        private double timeoutFactor = 3.0;
+
+        // number of requests in the sliding window of the circuit breaker
+        private int windowSize = 100;
+
+        // minimum number of requests in the window before the circuit breaker opens
+        private int minimumCalls = 20;
+
+        // share of failed requests in percent opening the circuit breaker
+        private int failureRateThreshold = 50;
+
+        // time in milliseconds the circuit breaker stays open before a probe request is sent
+        private long openDuration = 30000;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public long getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        public void setRequestTimeout(long requestTimeout) {
+            this.requestTimeout = requestTimeout;
+        }
+
+        public long getMinRequestTimeout() {
+            return minRequestTimeout;
+        }
+
+        public void setMinRequestTimeout(long minRequestTimeout) {
+            this.minRequestTimeout = minRequestTimeout;
+        }
+
+        public double getTimeoutFactor() {
+            return timeoutFactor;
+        }
+
+        public void setTimeoutFactor(double timeoutFactor) {
+            this.timeoutFactor = timeoutFactor;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public long getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(long openDuration) {
+            this.openDuration = openDuration;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+/**
+ * the remote services called by the linksolver wrapper. Each upstream gets its own connection pool and limits.
+ */
+public enum Upstream {
+
+    DOI("doi.org"),
+    UNPAYWALL("api.unpaywall.org"),
+    DATACITE("api.datacite.org"),
+    LINKSOLVER(null),
+    PRIMO(null),
+    OTHER(null);
+
+    // the fixed host of the upstream, null if the host is taken from the configuration
+    private final String host;
+
+    Upstream(String host) {
+        this.host = host;
+    }
+
+    /**
+     * @return the name of the upstream as used in the configuration properties
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * determines the upstream for a request to the given host
+     *
+     * @param host the host of the request
+     * @return the upstream with this host, OTHER if the host is not known
+     */
+    public static Upstream forHost(String host) {
+        for (Upstream upstream : values())
+            if (upstream.host != null && upstream.host.equalsIgnoreCase(host))
+                return upstream;
+        return OTHER;
+    }
+}
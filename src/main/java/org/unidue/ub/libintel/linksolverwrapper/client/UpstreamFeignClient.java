@@ -0,0 +1,69 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Feign client executing the requests of the Feign interfaces on the shared {@link UpstreamHttpClient}. The upstream
+ * is chosen by the host of the request. The JDK client knows only a timeout for the complete request, so the connect
+ * and read timeouts of the Feign options together bound the timeout of the upstream.
+ */
+public class UpstreamFeignClient implements Client {
+
+    // headers set by the JDK client itself, which must not be given on the request
+    private final static Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.addAll(Arrays.asList("connection", "content-length", "expect", "host", "upgrade"));
+    }
+
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    public UpstreamFeignClient(UpstreamHttpClient upstreamHttpClient) {
+        this.upstreamHttpClient = upstreamHttpClient;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        URI uri = URI.create(request.url());
+        Upstream upstream = Upstream.forHost(uri.getHost());
+        byte[] body = request.requestBody().asBytes();
+        HttpRequest.BodyPublisher bodyPublisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body);
+        Duration timeout = Duration.ofMillis((long) options.connectTimeoutMillis() + options.readTimeoutMillis());
+        Duration upstreamTimeout = upstreamHttpClient.getRequestTimeout(upstream);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(timeout.compareTo(upstreamTimeout) < 0 ? timeout : upstreamTimeout)
+                .method(request.httpMethod().name(), bodyPublisher);
+        request.headers().forEach((name, values) -> {
+            if (!RESTRICTED_HEADERS.contains(name))
+                values.forEach(value -> builder.header(name, value));
+        });
+        HttpResponse<byte[]> httpResponse = upstreamHttpClient.send(upstream, builder.build(), options.isFollowRedirects());
+        Map<String, Collection<String>> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : httpResponse.headers().map().entrySet())
+            headers.put(header.getKey(), header.getValue());
+        return Response.builder()
+                .status(httpResponse.statusCode())
+                .reason("")
+                .headers(headers)
+                .body(httpResponse.body())
+                .request(request)
+                .build();
+    }
+}
@@ -0,0 +1,364 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.model.UpstreamStatus;
+import org.unidue.ub.libintel.linksolverwrapper.utils.AsyncSemaphore;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shared HTTP client for all calls to upstream services. Each upstream gets its own pooled, HTTP/2-capable client
+ * with keep-alive connections, a limit of concurrent requests and its own timeouts, so that a slow upstream cannot
+ * use up the connections of the others. The duration of every request is recorded by upstream, host and status.
+ * <p>
+ * Each named upstream has a {@link CircuitBreaker}: while it is open, requests fail immediately with an
+ * {@link UpstreamUnavailableException}, and the request timeout adapts to the observed latency. Requests to
+ * arbitrary hosts ({@link Upstream#OTHER}) are not guarded.
+ */
+@Component
+public class UpstreamHttpClient {
+
+    private final Map<Upstream, Pool> pools = new EnumMap<>(Upstream.class);
+
+    private final static Logger log = LoggerFactory.getLogger(UpstreamHttpClient.class);
+
+    public UpstreamHttpClient(HttpClientProperties properties) {
+        this(properties, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public UpstreamHttpClient(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        for (Upstream upstream : Upstream.values())
+            pools.put(upstream, new Pool(upstream, properties.getSettings(upstream), meterRegistry));
+    }
+
+    /**
+     * retrieves the given url and returns the response body. Redirects are followed.
+     *
+     * @param upstream the upstream service
+     * @param url      the url to retrieve
+     * @return the response body
+     * @throws IOException if the upstream cannot be reached or answers with an error status
+     */
+    public String get(Upstream upstream, String url) throws IOException {
+        try {
+            return getAsync(upstream, url).join();
+        } catch (CompletionException ce) {
+            throw unwrap(ce);
+        }
+    }
+
+    /**
+     * retrieves the given url asynchronously. Redirects are followed.
+     *
+     * @param upstream the upstream service
+     * @param url      the url to retrieve
+     * @return the future of the response body. Completes with an {@link UpstreamStatusException} in case of an error status.
+     */
+    public CompletableFuture<String> getAsync(Upstream upstream, String url) {
+        Pool pool = pools.get(upstream);
+        HttpRequest request = pool.request(url).GET().build();
+        return pool.send(pool.client, request, HttpResponse.BodyHandlers.ofString(), false)
+                .thenApply(response -> {
+                    if (response.statusCode() >= 400)
+                        throw new CompletionException(new UpstreamStatusException(response.statusCode(), url));
+                    return response.body();
+                });
+    }
+
+    /**
+     * retrieves the given url and returns a reader on the response body, so that the body can be processed while it
+     * arrives. Redirects are followed. Closing the reader before the end of the body discards the rest of the response.
+     * The reader holds one of the concurrent requests of the upstream until it is closed.
+     *
+     * @param upstream the upstream service
+     * @param url      the url to retrieve
+     * @return a reader on the response body, decoded with the charset given in the content type (UTF-8 by default)
+     * @throws IOException if the upstream cannot be reached or answers with an error status
+     */
+    public Reader openReader(Upstream upstream, String url) throws IOException {
+        Pool pool = pools.get(upstream);
+        HttpRequest request = pool.request(url).GET().build();
+        HttpResponse<InputStream> response;
+        try {
+            response = pool.send(pool.client, request, HttpResponse.BodyHandlers.ofInputStream(), true).join();
+        } catch (CompletionException ce) {
+            throw unwrap(ce);
+        }
+        InputStream body = new PermitInputStream(response.body(), pool.permits);
+        if (response.statusCode() >= 400) {
+            body.close();
+            throw new UpstreamStatusException(response.statusCode(), url);
+        }
+        return new InputStreamReader(body, charsetOf(response));
+    }
+
+    /**
+     * requests the given url with HEAD without following redirects, e.g. to read the location of a redirect. Servers
+     * refusing HEAD requests (status 4xx or 5xx) are asked again with GET, the body is discarded.
+     *
+     * @param upstream the upstream service
+     * @param url      the url to request
+     * @return the response without body, or null if the url could not be requested
+     */
+    public HttpResponse<Void> head(Upstream upstream, String url) {
+        Pool pool = pools.get(upstream);
+        try {
+            HttpRequest request = pool.request(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+            HttpResponse<Void> response = pool.send(pool.redirectClient, request, HttpResponse.BodyHandlers.discarding(), false).join();
+            if (response.statusCode() < 400)
+                return response;
+            log.debug("HEAD request to " + url + " answered with status " + response.statusCode() + ", retrying with GET");
+            request = pool.request(url).GET().build();
+            return pool.send(pool.redirectClient, request, HttpResponse.BodyHandlers.discarding(), false).join();
+        } catch (IllegalArgumentException | CompletionException e) {
+            log.debug("could not request " + url, e);
+            return null;
+        }
+    }
+
+    /**
+     * sends the given request and returns the raw response
+     *
+     * @param upstream        the upstream service
+     * @param request         the request
+     * @param followRedirects whether redirects are followed or returned to the caller
+     * @return the response with the body as bytes
+     * @throws IOException if the upstream cannot be reached
+     */
+    public HttpResponse<byte[]> send(Upstream upstream, HttpRequest request, boolean followRedirects) throws IOException {
+        Pool pool = pools.get(upstream);
+        try {
+            return pool.send(followRedirects ? pool.client : pool.redirectClient, request, HttpResponse.BodyHandlers.ofByteArray(), false).join();
+        } catch (CompletionException ce) {
+            throw unwrap(ce);
+        }
+    }
+
+    /**
+     * @param upstream the upstream service
+     * @return the current timeout for a complete request to this upstream
+     */
+    public Duration getRequestTimeout(Upstream upstream) {
+        return pools.get(upstream).getRequestTimeout();
+    }
+
+    /**
+     * @param upstream the upstream service
+     * @return false if the circuit breaker of the upstream is open, so that requests would fail immediately
+     */
+    public boolean isAvailable(Upstream upstream) {
+        CircuitBreaker breaker = pools.get(upstream).breaker;
+        return breaker == null || breaker.isAvailable();
+    }
+
+    /**
+     * @return the state of the circuit breakers and the current request timeouts of the upstreams
+     */
+    public List<UpstreamStatus> getStatus() {
+        List<UpstreamStatus> status = new ArrayList<>();
+        pools.forEach((upstream, pool) -> {
+            if (pool.breaker != null)
+                status.add(new UpstreamStatus(upstream.getName(), pool.breaker.getState().name(), pool.breaker.getFailureRate(),
+                        pool.breaker.getCalls(), pool.breaker.getTimeout().toMillis()));
+        });
+        return status;
+    }
+
+    private static Charset charsetOf(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index >= 0) {
+            String charset = contentType.substring(index + 8).split(";")[0].replace("\"", "").trim();
+            try {
+                return Charset.forName(charset);
+            } catch (IllegalArgumentException iae) {
+                log.debug("unknown charset " + charset + ", using UTF-8");
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private IOException unwrap(CompletionException ce) {
+        if (ce.getCause() instanceof IOException)
+            return (IOException) ce.getCause();
+        return new IOException(ce.getCause());
+    }
+
+    /**
+     * body of a streamed response, giving back the permit of the request when it is closed
+     */
+    private static class PermitInputStream extends FilterInputStream {
+
+        private final AsyncSemaphore permits;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitInputStream(InputStream body, AsyncSemaphore permits) {
+            super(body);
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true))
+                    permits.release();
+            }
+        }
+    }
+
+    /**
+     * the clients and the request limit of one upstream
+     */
+    private static class Pool {
+
+        private final Upstream upstream;
+
+        private final MeterRegistry meterRegistry;
+
+        // client following redirects
+        private final HttpClient client;
+
+        // client returning redirects to the caller
+        private final HttpClient redirectClient;
+
+        private final AsyncSemaphore permits;
+
+        private final Duration requestTimeout;
+
+        // null for requests to arbitrary hosts
+        private final CircuitBreaker breaker;
+
+        Pool(Upstream upstream, HttpClientProperties.Settings settings, MeterRegistry meterRegistry) {
+            this.upstream = upstream;
+            this.meterRegistry = meterRegistry;
+            Duration connectTimeout = Duration.ofMillis(settings.getConnectTimeout());
+            this.client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .build();
+            this.redirectClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .build();
+            this.permits = new AsyncSemaphore(settings.getMaxConnections());
+            this.requestTimeout = Duration.ofMillis(settings.getRequestTimeout());
+            if (upstream == Upstream.OTHER) {
+                this.breaker = null;
+            } else {
+                this.breaker = new CircuitBreaker(settings);
+                Gauge.builder("libintel.upstream.circuit.state", breaker, b -> b.getState().ordinal())
+                        .description("state of the circuit breaker: 0 closed, 1 open, 2 half open")
+                        .tag("upstream", upstream.getName())
+                        .register(meterRegistry);
+                Gauge.builder("libintel.upstream.timeout", breaker, b -> b.getTimeout().toMillis() / 1000.0)
+                        .description("adaptive request timeout")
+                        .tag("upstream", upstream.getName())
+                        .baseUnit("seconds")
+                        .register(meterRegistry);
+            }
+        }
+
+        Duration getRequestTimeout() {
+            return breaker == null ? requestTimeout : breaker.getTimeout();
+        }
+
+        HttpRequest.Builder request(String url) {
+            return HttpRequest.newBuilder(URI.create(url)).timeout(getRequestTimeout());
+        }
+
+        /**
+         * sends the request once a permit is available, without blocking the calling thread. Fails after the
+         * configured request timeout without a permit, and immediately, if the circuit breaker is open. Connection
+         * errors, timeouts and server errors count as failures of the upstream, rejections because of the own
+         * connection limit do not. The permit is released with the response, unless it is held for a streamed body,
+         * which has to release it when it is closed.
+         */
+        <T> CompletableFuture<HttpResponse<T>> send(HttpClient httpClient, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                    boolean holdPermit) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            if (breaker != null && !breaker.tryAcquire()) {
+                record(sample, request, "short-circuited");
+                return CompletableFuture.failedFuture(new UpstreamUnavailableException(upstream));
+            }
+            return permits.acquire(requestTimeout)
+                    .handle((acquired, throwable) -> throwable == null)
+                    .thenCompose(acquired -> {
+                        if (!acquired) {
+                            if (breaker != null)
+                                breaker.release();
+                            record(sample, request, "rejected");
+                            return CompletableFuture.failedFuture(new IOException("connection limit reached for " + request.uri().getHost()));
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            return httpClient.sendAsync(request, bodyHandler)
+                                    .whenComplete((response, throwable) -> {
+                                        if (throwable != null || !holdPermit)
+                                            permits.release();
+                                        if (throwable != null || response.statusCode() >= 500)
+                                            onFailure();
+                                        else if (breaker != null)
+                                            breaker.onSuccess(System.nanoTime() - start);
+                                        record(sample, request, throwable != null ? "error" : response.statusCode() / 100 + "xx");
+                                    });
+                        } catch (RuntimeException e) {
+                            permits.release();
+                            onFailure();
+                            throw e;
+                        }
+                    });
+        }
+
+        private void onFailure() {
+            if (breaker != null)
+                breaker.onFailure();
+        }
+
+        /**
+         * records the duration of the request until the response is available, i.e. the complete body for buffered
+         * responses and the headers for streamed ones. Requests to arbitrary hosts are recorded as host 'other' to keep
+         * the number of time series bounded.
+         */
+        private void record(Timer.Sample sample, HttpRequest request, String outcome) {
+            String host = upstream == Upstream.OTHER ? "other" : String.valueOf(request.uri().getHost());
+            sample.stop(Timer.builder("libintel.upstream.requests")
+                    .description("duration of the requests to the upstream services")
+                    .tag("upstream", upstream.getName())
+                    .tag("host", host)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+import java.io.IOException;
+
+/**
+ * thrown if an upstream service answers with an error status
+ */
+public class UpstreamStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    private final String url;
+
+    public UpstreamStatusException(int statusCode, String url) {
+        super("HTTP status " + statusCode + " for " + url);
+        this.statusCode = statusCode;
+        this.url = url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
@@ -0,0 +1,22 @@
+package org.unidue.ub.libintel.linksolverwrapper.client;
+
+import java.io.IOException;
+
+/**
+ * thrown instead of sending a request, if the circuit breaker of the upstream service is open
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Upstream upstream;
+
+    public UpstreamUnavailableException(Upstream upstream) {
+        super("circuit breaker open for " + upstream.getName());
+        this.upstream = upstream;
+    }
+
+    public Upstream getUpstream() {
+        return upstream;
+    }
+}
@@ -0,0 +1,48 @@
+package org.unidue.ub.libintel.linksolverwrapper.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.unidue.ub.libintel.linksolverwrapper.service.AccessStatisticsService;
+
+import java.time.LocalDate;
+
+/**
+ * endpoint to query the access statistics of the resolutions
+ */
+@RestController
+public class AccessStatisticsController {
+
+    private final AccessStatisticsService accessStatisticsService;
+
+    @Autowired
+    public AccessStatisticsController(AccessStatisticsService accessStatisticsService) {
+        this.accessStatisticsService = accessStatisticsService;
+    }
+
+    /**
+     * counts the resolutions, the open access rate and the statuses by day and referer
+     *
+     * @param from the first day, e.g. '2019-04-01'. 30 days before the last day if omitted.
+     * @param to   the last day. Today if omitted.
+     * @return the statistics by day and referer, 400 if the range is invalid or no statistics are written
+     */
+    @GetMapping("/statistics/access")
+    public ResponseEntity<?> getAccessStatistics(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to == null)
+            to = LocalDate.now();
+        if (from == null)
+            from = to.minusDays(30);
+        if (from.isAfter(to))
+            return ResponseEntity.badRequest().body("the first day is after the last day");
+        try {
+            return ResponseEntity.ok(accessStatisticsService.aggregate(from, to));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
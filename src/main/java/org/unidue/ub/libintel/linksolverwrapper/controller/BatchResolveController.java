@@ -0,0 +1,182 @@
+package org.unidue.ub.libintel.linksolverwrapper.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.BatchResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionContext;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.service.BatchResolutionService;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.unidue.ub.libintel.linksolverwrapper.utils.Utilities.determineRemoteAddress;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.Utilities.getReferer;
+
+/**
+ * endpoints to resolve many OpenURL requests at once, e.g. the references of a bibliography or a reading list.
+ * Instead of a redirect, the target url, the open access status and the access route are returned for each entry.
+ */
+@RestController
+public class BatchResolveController {
+
+    public final static String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final BatchResolutionService batchResolutionService;
+
+    private final ObjectMapper objectMapper;
+
+    // the maximum number of entries accepted in one batch
+    @Value("${libintel.batch.max-size:500}")
+    private int maximumSize;
+
+    // time in milliseconds between the checks whether the resolution of a streamed batch has ended
+    private final static long POLL_INTERVAL = 100;
+
+    private final static Logger log = LoggerFactory.getLogger(BatchResolveController.class);
+
+    @Autowired
+    public BatchResolveController(BatchResolutionService batchResolutionService, ObjectMapper objectMapper) {
+        this.batchResolutionService = batchResolutionService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * resolves a batch of OpenURL requests. Each entry is either an object with the OpenURL parameters (single values
+     * or lists of values) or an OpenURL query string.
+     *
+     * @param entries            the OpenURL requests
+     * @param httpServletRequest the http request, providing the remote address and the referer for all entries
+     * @return the results in the order of the entries
+     */
+    @PostMapping(value = "/resolve/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<List<BatchResolutionResult>>> resolveBatch(@RequestBody List<Object> entries, HttpServletRequest httpServletRequest) {
+        if (entries.size() > maximumSize)
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+        List<ResolutionContext> contexts = getContexts(entries, httpServletRequest);
+        return batchResolutionService.resolveAll(contexts).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * resolves a batch of OpenURL requests and streams the results as newline delimited JSON as soon as they are
+     * available. The index of each result refers to the position of the entry in the batch. If the resolution of the
+     * batch fails, the entries without result are answered with the access route 'NONE'.
+     *
+     * @param entries            the OpenURL requests
+     * @param httpServletRequest the http request, providing the remote address and the referer for all entries
+     * @return one JSON object per line and entry
+     */
+    @PostMapping(value = "/resolve/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> resolveBatchAsNdjson(@RequestBody List<Object> entries, HttpServletRequest httpServletRequest) {
+        if (entries.size() > maximumSize)
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        List<ResolutionContext> contexts = getContexts(entries, httpServletRequest);
+        BlockingQueue<BatchResolutionResult> results = new LinkedBlockingQueue<>();
+        CompletableFuture<Void> done = batchResolutionService.resolve(contexts, results::add);
+        StreamingResponseBody body = outputStream -> {
+            boolean[] written = new boolean[contexts.size()];
+            int remaining = contexts.size();
+            try {
+                while (remaining > 0) {
+                    BatchResolutionResult result = results.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    // the future completes after the last result was passed, so the queue holds all remaining ones
+                    if (result == null && done.isDone() && (result = results.poll()) == null)
+                        break;
+                    if (result == null)
+                        continue;
+                    write(outputStream, result);
+                    written[result.getIndex()] = true;
+                    remaining--;
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for batch results");
+            }
+            if (remaining > 0) {
+                log.warn("resolution of batch failed, " + remaining + " entries without result", done.handle((value, throwable) -> throwable).join());
+                for (int i = 0; i < written.length; i++)
+                    if (!written[i])
+                        write(outputStream, new BatchResolutionResult(i, new ResolutionResult(contexts.get(i).getDoi(), null, false, AccessRoute.NONE, null)));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    private void write(OutputStream outputStream, BatchResolutionResult result) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(result));
+        outputStream.write('\n');
+        outputStream.flush();
+    }
+
+    private List<ResolutionContext> getContexts(List<Object> entries, HttpServletRequest httpServletRequest) {
+        String referer = getReferer(httpServletRequest);
+        String remoteAddress = determineRemoteAddress(httpServletRequest);
+        List<ResolutionContext> contexts = new ArrayList<>(entries.size());
+        for (Object entry : entries)
+            contexts.add(new ResolutionContext(getRequestParams(entry), referer, remoteAddress));
+        log.debug("received batch of " + contexts.size() + " entries from " + remoteAddress);
+        return contexts;
+    }
+
+    /**
+     * converts an entry of the batch into OpenURL parameters
+     */
+    private MultiValueMap<String, String> getRequestParams(Object entry) {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        if (entry instanceof Map) {
+            for (Map.Entry<?, ?> parameter : ((Map<?, ?>) entry).entrySet()) {
+                String key = String.valueOf(parameter.getKey());
+                if (parameter.getValue() instanceof Collection) {
+                    for (Object value : (Collection<?>) parameter.getValue())
+                        if (value != null)
+                            requestParams.add(key, String.valueOf(value));
+                } else if (parameter.getValue() != null)
+                    requestParams.add(key, String.valueOf(parameter.getValue()));
+            }
+        } else if (entry instanceof String) {
+            String query = (String) entry;
+            if (query.startsWith("?"))
+                query = query.substring(1);
+            // decode the parameters like the request parameters of /resolve
+            UriComponentsBuilder.newInstance().query(query).build().getQueryParams().forEach((key, values) -> {
+                for (String value : values)
+                    requestParams.add(decode(key), value == null ? "" : decode(value));
+            });
+        }
+        return requestParams;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException iae) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.unidue.ub.libintel.linksolverwrapper.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.CacheStatistics;
+import org.unidue.ub.libintel.linksolverwrapper.service.LinksolverHoldingsCache;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+
+import java.util.List;
+
+/**
+ * endpoints to monitor and clear the caches of the linksolver wrapper
+ */
+@RestController
+public class CacheController {
+
+    private final CacheRegistry cacheRegistry;
+
+    private final ResolverService resolverService;
+
+    private final LinksolverHoldingsCache holdingsCache;
+
+    private final SharedCacheService sharedCacheService;
+
+    @Autowired
+    public CacheController(CacheRegistry cacheRegistry, ResolverService resolverService, LinksolverHoldingsCache holdingsCache, SharedCacheService sharedCacheService) {
+        this.cacheRegistry = cacheRegistry;
+        this.resolverService = resolverService;
+        this.holdingsCache = holdingsCache;
+        this.sharedCacheService = sharedCacheService;
+    }
+
+    /**
+     * lists the size and the hit, miss and eviction counts of all caches
+     *
+     * @return the statistics for each cache
+     */
+    @GetMapping("/caches")
+    public List<CacheStatistics> getCacheStatistics() {
+        return cacheRegistry.getStatistics();
+    }
+
+    /**
+     * removes cached resolution decisions, e.g. after the holdings of the library changed
+     *
+     * @param route the access route of the decisions to remove, e.g. 'JOURNAL'. All decisions are removed if omitted.
+     * @return 204 if the decisions are removed
+     */
+    @DeleteMapping("/caches/resolution")
+    public ResponseEntity<?> invalidateDecisions(@RequestParam(value = "route", required = false) AccessRoute route) {
+        resolverService.invalidateDecisions(route);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * removes the cached linksolver answers for the holdings of a journal or book, e.g. after a license was acquired
+     *
+     * @param issn the ISSN or ISBN of the journal or book. All holdings are removed if omitted.
+     * @return 204 if the entries are removed, 400 if the identifier is no valid ISSN or ISBN
+     */
+    @DeleteMapping("/caches/holdings")
+    public ResponseEntity<?> invalidateHoldings(@RequestParam(value = "issn", required = false) String issn) {
+        if (!holdingsCache.invalidate(issn))
+            return ResponseEntity.badRequest().body("no valid ISSN or ISBN: " + issn);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * removes all entries of a cache, including its entries in the shared cache
+     *
+     * @param name the name of the cache as listed at /caches
+     * @return 204 if the entries are removed, 404 if there is no cache with this name
+     */
+    @DeleteMapping("/caches/{name}")
+    public ResponseEntity<?> invalidateCache(@PathVariable("name") String name) {
+        if (!cacheRegistry.invalidateAll(name))
+            return ResponseEntity.notFound().build();
+        sharedCacheService.invalidate(name, null);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,55 @@
+package org.unidue.ub.libintel.linksolverwrapper.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.unidue.ub.libintel.linksolverwrapper.model.PublisherRoute;
+import org.unidue.ub.libintel.linksolverwrapper.service.PublisherRoutingTable;
+
+import java.util.List;
+
+/**
+ * endpoints to query the publisher hosts learned for the DOI prefixes
+ */
+@RestController
+public class PublisherController {
+
+    private final PublisherRoutingTable publisherRoutingTable;
+
+    @Autowired
+    public PublisherController(PublisherRoutingTable publisherRoutingTable) {
+        this.publisherRoutingTable = publisherRoutingTable;
+    }
+
+    /**
+     * lists the most frequent publisher host of each DOI prefix together with the number of observed redirects and the
+     * share pointing to the host
+     *
+     * @return the publisher hosts by prefix
+     */
+    @GetMapping("/publishers")
+    public List<PublisherRoute> getPublisherRoutes() {
+        return publisherRoutingTable.getRoutes();
+    }
+
+    /**
+     * looks up the publisher host for the prefix of a DOI
+     *
+     * @param doi the DOI or only its prefix, e.g. '10.1016/j.heares.2019.01.001' or '10.1016'
+     * @return the publisher host of the prefix, 400 if the DOI has no prefix, 404 if no redirect of the prefix was
+     * observed
+     */
+    @GetMapping("/publishers/lookup")
+    public ResponseEntity<?> getPublisherRoute(@RequestParam("doi") String doi) {
+        // a prefix alone is accepted as well
+        String prefix = PublisherRoutingTable.getPrefix(doi.contains("/") ? doi : doi + "/");
+        if (prefix == null)
+            return ResponseEntity.badRequest().body("no valid DOI: " + doi);
+        PublisherRoute route = publisherRoutingTable.getRoute(prefix);
+        if (route == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(route);
+    }
+}
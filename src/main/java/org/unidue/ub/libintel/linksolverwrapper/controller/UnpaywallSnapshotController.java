@@ -0,0 +1,68 @@
+package org.unidue.ub.libintel.linksolverwrapper.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallSnapshotSegment;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallSnapshotService;
+
+import java.util.List;
+
+/**
+ * endpoints to import the Unpaywall data feed into the local snapshot and to monitor the index files
+ */
+@RestController
+public class UnpaywallSnapshotController {
+
+    private final UnpaywallSnapshotService unpaywallSnapshotService;
+
+    @Autowired
+    public UnpaywallSnapshotController(UnpaywallSnapshotService unpaywallSnapshotService) {
+        this.unpaywallSnapshotService = unpaywallSnapshotService;
+    }
+
+    /**
+     * lists the index files of the local snapshot with their number of DOIs
+     *
+     * @return the index files, oldest first
+     */
+    @GetMapping("/unpaywall/snapshot")
+    public List<UnpaywallSnapshotSegment> getSegments() {
+        return unpaywallSnapshotService.getSegments();
+    }
+
+    /**
+     * starts the import of a full snapshot, replacing the current index files
+     *
+     * @param file the name of the snapshot file in the feed directory
+     * @return 202 if the import is started, 400 if the file is not found
+     */
+    @PostMapping("/unpaywall/snapshot")
+    public ResponseEntity<?> importSnapshot(@RequestParam("file") String file) {
+        try {
+            unpaywallSnapshotService.importSnapshot(file);
+            return ResponseEntity.accepted().build();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * starts the import of a change file, which is applied on top of the current index files
+     *
+     * @param file the name of the change file in the feed directory
+     * @return 202 if the import is started, 400 if the file is not found
+     */
+    @PostMapping("/unpaywall/snapshot/changes")
+    public ResponseEntity<?> importChanges(@RequestParam("file") String file) {
+        try {
+            unpaywallSnapshotService.importChanges(file);
+            return ResponseEntity.accepted().build();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.unidue.ub.libintel.linksolverwrapper.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.UpstreamStatus;
+
+import java.util.List;
+
+/**
+ * endpoint to monitor the circuit breakers of the upstream services
+ */
+@RestController
+public class UpstreamController {
+
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    @Autowired
+    public UpstreamController(UpstreamHttpClient upstreamHttpClient) {
+        this.upstreamHttpClient = upstreamHttpClient;
+    }
+
+    /**
+     * lists the state of the circuit breaker, the failure rate and the current request timeout of each upstream
+     *
+     * @return the status of the upstreams
+     */
+    @GetMapping("/upstreams")
+    public List<UpstreamStatus> getUpstreamStatus() {
+        return upstreamHttpClient.getStatus();
+    }
+}
@@ -0,0 +1,104 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding one entry of the access statistics: the outcome of a resolution together with the remote address and
+ * the referer of the request
+ */
+public class AccessEvent {
+
+    // milliseconds since the epoch
+    private long timestamp;
+
+    private String doi;
+
+    private AccessRoute route;
+
+    private String status;
+
+    private boolean openAccess;
+
+    private String remoteAddress;
+
+    private String referer;
+
+    // how the url of a full text was constructed, null for other access routes
+    private WayflessType wayfless;
+
+    public AccessEvent() {
+    }
+
+    public AccessEvent(long timestamp, ResolutionResult result, ResolutionContext context) {
+        this.timestamp = timestamp;
+        this.doi = result.getDoi();
+        this.route = result.getRoute();
+        this.status = result.getStatus();
+        this.openAccess = result.isOpenAccess();
+        this.remoteAddress = context.getRemoteAddress();
+        this.referer = context.getReferer();
+        this.wayfless = context.getWayflessType();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public void setDoi(String doi) {
+        this.doi = doi;
+    }
+
+    public AccessRoute getRoute() {
+        return route;
+    }
+
+    public void setRoute(AccessRoute route) {
+        this.route = route;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isOpenAccess() {
+        return openAccess;
+    }
+
+    public void setOpenAccess(boolean openAccess) {
+        this.openAccess = openAccess;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public void setRemoteAddress(String remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+    public String getReferer() {
+        return referer;
+    }
+
+    public void setReferer(String referer) {
+        this.referer = referer;
+    }
+
+    public WayflessType getWayfless() {
+        return wayfless;
+    }
+
+    public void setWayfless(WayflessType wayfless) {
+        this.wayfless = wayfless;
+    }
+}
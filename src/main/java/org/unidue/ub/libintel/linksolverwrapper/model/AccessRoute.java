@@ -0,0 +1,31 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * the ways a resource is accessed, as decided by the resolution
+ */
+public enum AccessRoute {
+
+    // free full text found by Unpaywall
+    OPEN_ACCESS,
+
+    // licensed full text, possibly by a WAYFless URL
+    FULLTEXT,
+
+    // order page for Elsevier articles
+    ELSEVIER_ORDER,
+
+    // journals online and print page (JOP)
+    JOURNAL,
+
+    // interlibrary loan form
+    INTERLIBRARY_LOAN,
+
+    // landing page of the DOI
+    DOI,
+
+    // the linksolver itself
+    LINKSOLVER,
+
+    // no target could be determined
+    NONE
+}
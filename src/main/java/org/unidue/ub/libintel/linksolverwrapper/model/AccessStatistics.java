@@ -0,0 +1,82 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * POJO holding the number of resolutions of one day and referer, how many of them led to an open access full text and
+ * the counts of the logged statuses
+ */
+public class AccessStatistics {
+
+    private String day;
+
+    private String referer;
+
+    private long requests;
+
+    private long openAccess;
+
+    private Map<String, Long> statuses = new TreeMap<>();
+
+    public AccessStatistics(String day, String referer) {
+        this.day = day;
+        this.referer = referer;
+    }
+
+    /**
+     * counts a resolution
+     *
+     * @param event the access event of the resolution
+     */
+    public void add(AccessEvent event) {
+        requests++;
+        if (event.isOpenAccess())
+            openAccess++;
+        statuses.merge(event.getStatus() == null ? "none" : event.getStatus(), 1L, Long::sum);
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    public String getReferer() {
+        return referer;
+    }
+
+    public void setReferer(String referer) {
+        this.referer = referer;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getOpenAccess() {
+        return openAccess;
+    }
+
+    public void setOpenAccess(long openAccess) {
+        this.openAccess = openAccess;
+    }
+
+    public double getOpenAccessRate() {
+        return requests == 0 ? 0 : (double) openAccess / requests;
+    }
+
+    public Map<String, Long> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(Map<String, Long> statuses) {
+        this.statuses = statuses;
+    }
+}
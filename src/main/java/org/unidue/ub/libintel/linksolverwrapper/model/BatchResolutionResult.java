@@ -0,0 +1,27 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * POJO holding the result for one entry of a batch, together with the position of the entry in the batch
+ */
+public class BatchResolutionResult {
+
+    private final int index;
+
+    @JsonUnwrapped
+    private final ResolutionResult result;
+
+    public BatchResolutionResult(int index, ResolutionResult result) {
+        this.index = index;
+        this.result = result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public ResolutionResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding the usage counters of a cache
+ */
+public class CacheStatistics {
+
+    private String name;
+
+    private int size;
+
+    private int maximumSize;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+}
@@ -0,0 +1,22 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * the kinds of identifiers recognized in OpenURL parameters
+ */
+public enum IdentifierType {
+
+    DOI,
+
+    // PubMed id
+    PMID,
+
+    // ISBN-10 or ISBN-13
+    ISBN,
+
+    // ISSN or eISSN
+    ISSN,
+
+    ARXIV,
+
+    UNKNOWN
+}
@@ -0,0 +1,31 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding a link from the linksolver response
+ */
+public class LinksolverLink {
+
+    private final LinksolverLinkType type;
+
+    private final String text;
+
+    private final String href;
+
+    public LinksolverLink(LinksolverLinkType type, String text, String href) {
+        this.type = type;
+        this.text = text;
+        this.href = href;
+    }
+
+    public LinksolverLinkType getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getHref() {
+        return href;
+    }
+}
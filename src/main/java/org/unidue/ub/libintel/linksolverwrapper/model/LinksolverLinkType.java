@@ -0,0 +1,55 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * the kinds of links offered by the linksolver, determined by the link text
+ */
+public enum LinksolverLinkType {
+
+    // full text is online available ('Link zum Artikel', 'Volltexte über XXX')
+    FULLTEXT,
+
+    // a target specially designed for Elsevier journals without full text access
+    ELSEVIER_ORDER,
+
+    // printed or online media are available, but no resource url is given
+    JOURNAL,
+
+    // only interlibrary loan is available
+    INTERLIBRARY_LOAN,
+
+    // any other link
+    OTHER;
+
+    /**
+     * determines the type of a link from its text
+     *
+     * @param linkText the whitespace normalized text of the link
+     * @return the type of the link
+     */
+    public static LinksolverLinkType fromLinkText(String linkText) {
+        // the different targets 'Volltexte über XXX' are all full texts
+        if (linkText.equals("Volltexte") || linkText.startsWith("Volltexte "))
+            return FULLTEXT;
+        switch (linkText) {
+            case "Link zum Artikel":
+                return FULLTEXT;
+            case "Elsevier Zeitschriften - Link zum Bestellformular":
+                return ELSEVIER_ORDER;
+            case "Elektronischer und gedruckter Bestand der UB":
+            case "zur Zeitschrift":
+                return JOURNAL;
+            case "Fernleihe":
+            case "Fernleihe Zeitschriften":
+                return INTERLIBRARY_LOAN;
+            default:
+                return OTHER;
+        }
+    }
+
+    /**
+     * @return true, if a link of this type decides the resolution
+     */
+    public boolean isDecisive() {
+        return this != OTHER;
+    }
+}
@@ -0,0 +1,203 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+import org.springframework.util.MultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.utils.IdentifierRecognizer;
+import org.unidue.ub.libintel.linksolverwrapper.utils.Utilities;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable, cleaned up OpenURL parameters of a request. The parameters are cleaned up, completed by the ISSN and
+ * searched for the DOI in a single pass on parsing. The key of the request and the encoded query string are computed
+ * on first use and kept, so that they are built once per request. Variants with further parameters, like the
+ * interlibrary loan request, are derived as new objects.
+ */
+public final class OpenUrl {
+
+    private final Map<String, List<String>> parameters;
+
+    private final String doi;
+
+    // computed on first use. concurrent first uses compute equal strings, so no synchronization is needed.
+    private String key;
+
+    private String queryString;
+
+    private OpenUrl(Map<String, List<String>> parameters, String doi) {
+        this.parameters = parameters;
+        this.doi = doi;
+    }
+
+    /**
+     * reads the OpenURL parameters of a request: curly brackets are removed from the values and line breaks replaced
+     * by '+'. If only an EISSN is given, it is added as ISSN as well.
+     *
+     * @param requestParams the request parameters, not modified
+     * @return the OpenURL
+     */
+    public static OpenUrl parse(MultiValueMap<String, String> requestParams) {
+        Map<String, List<String>> parameters = new LinkedHashMap<>();
+        String doi = "";
+        for (Map.Entry<String, List<String>> entry : requestParams.entrySet()) {
+            List<String> values = new ArrayList<>(entry.getValue().size() + 1);
+            boolean isId = "id".equals(entry.getKey());
+            for (String value : entry.getValue()) {
+                value = Utilities.cleanUpString(value);
+                values.add(value);
+                // the first DOI given as id, without prefix like 'doi:'
+                if (isId && doi.isEmpty() && IdentifierRecognizer.recognize(value) == IdentifierType.DOI)
+                    doi = IdentifierRecognizer.normalize(value);
+            }
+            parameters.put(entry.getKey(), values);
+        }
+        String eissn = getFirst(parameters, "eissn");
+        if (eissn != null && !eissn.isEmpty()) {
+            String issn = getFirst(parameters, "issn");
+            if (issn == null || issn.isEmpty())
+                parameters.computeIfAbsent("issn", name -> new ArrayList<>(1)).add(eissn);
+        }
+        return new OpenUrl(freeze(parameters), doi);
+    }
+
+    /**
+     * derives the OpenURL with the given parameters replacing the ones of this OpenURL, e.g. for the interlibrary loan
+     *
+     * @param replacements the parameters to set, with one value each
+     * @return the new OpenURL, the parameters of this OpenURL are kept in their order
+     */
+    public OpenUrl with(Map<String, String> replacements) {
+        Map<String, List<String>> derived = new LinkedHashMap<>(parameters);
+        replacements.forEach((name, value) -> derived.put(name, List.of(value)));
+        return new OpenUrl(freeze(derived), doi);
+    }
+
+    /**
+     * @param name the name of the parameter
+     * @return the first value of the parameter, or null if the parameter is not given
+     */
+    public String getFirst(String name) {
+        return getFirst(parameters, name);
+    }
+
+    /**
+     * @param name the name of the parameter
+     * @return the values of the parameter, an empty list if the parameter is not given
+     */
+    public List<String> get(String name) {
+        return parameters.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @return the parameters in the order of the request
+     */
+    public Map<String, List<String>> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return the first DOI from the id parameters without prefix like 'doi:', or an empty string if no DOI is given
+     */
+    public String getDoi() {
+        return doi;
+    }
+
+    /**
+     * returns the ISSN of the journal, or the EISSN if the ISSN is empty. The JOP page needs the ISSN with a '-' in
+     * the middle, invalid ISSNs are returned unchanged.
+     *
+     * @return the ISSN, or null if none is given
+     */
+    public String getIssn() {
+        String issn = getFirst("issn");
+        if (issn != null && issn.isEmpty())
+            issn = getFirst("eissn");
+        if (issn == null || issn.isBlank())
+            return null;
+        issn = issn.trim();
+        String normalizedIssn = IdentifierRecognizer.normalizeIssn(issn);
+        return normalizedIssn == null ? issn : normalizedIssn;
+    }
+
+    /**
+     * returns the key under which identical requests are coalesced and cached: the parameters sorted by name, with
+     * trimmed values, without empty values and with the DOI in normalized form. Names and values are url-encoded, so
+     * that a value containing an ampersand or an equals sign cannot be mistaken for further parameters.
+     *
+     * @return the key of the request
+     */
+    public String getKey() {
+        String key = this.key;
+        if (key == null) {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, List<String>> entry : new TreeMap<>(parameters).entrySet()) {
+                String name = URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8);
+                for (String value : entry.getValue()) {
+                    if (value == null || value.isBlank())
+                        continue;
+                    value = value.trim();
+                    if ("id".equals(entry.getKey()) && IdentifierRecognizer.recognize(value) == IdentifierType.DOI)
+                        value = "doi:" + IdentifierRecognizer.normalize(value).toLowerCase();
+                    builder.append('&').append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+                }
+            }
+            key = builder.toString();
+            this.key = key;
+        }
+        return key;
+    }
+
+    /**
+     * @return the url-encoded parameters including the initial '?', an empty string without parameters
+     */
+    public String getQueryString() {
+        String queryString = this.queryString;
+        if (queryString == null) {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, List<String>> entry : parameters.entrySet()) {
+                String name = URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8);
+                for (String value : entry.getValue())
+                    builder.append(builder.length() == 0 ? '?' : '&').append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+            }
+            queryString = builder.toString();
+            this.queryString = queryString;
+        }
+        return queryString;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof OpenUrl))
+            return false;
+        return getKey().equals(((OpenUrl) o).getKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return getKey().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getQueryString();
+    }
+
+    private static String getFirst(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static Map<String, List<String>> freeze(Map<String, List<String>> parameters) {
+        Map<String, List<String>> frozen = new LinkedHashMap<>();
+        parameters.forEach((name, values) -> frozen.put(name, Collections.unmodifiableList(values)));
+        return Collections.unmodifiableMap(frozen);
+    }
+}
@@ -0,0 +1,77 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding the publisher host most DOIs of a prefix were redirected to, and how reliable this assignment is
+ */
+public class PublisherRoute {
+
+    private String prefix;
+
+    private String host;
+
+    private long observations;
+
+    private double confidence;
+
+    private boolean confident;
+
+    public PublisherRoute(String prefix, String host, long observations, double confidence, boolean confident) {
+        this.prefix = prefix;
+        this.host = host;
+        this.observations = observations;
+        this.confidence = confidence;
+        this.confident = confident;
+    }
+
+    /**
+     * @return the DOI prefix, e.g. '10.1016'
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * @return the number of observed redirects of the prefix, older observations are weighted down
+     */
+    public long getObservations() {
+        return observations;
+    }
+
+    public void setObservations(long observations) {
+        this.observations = observations;
+    }
+
+    /**
+     * @return the share of the observed redirects pointing to the host
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(double confidence) {
+        this.confidence = confidence;
+    }
+
+    /**
+     * @return true if the host is used to decide the resolution without waiting for the DOI resolver
+     */
+    public boolean isConfident() {
+        return confident;
+    }
+
+    public void setConfident(boolean confident) {
+        this.confident = confident;
+    }
+}
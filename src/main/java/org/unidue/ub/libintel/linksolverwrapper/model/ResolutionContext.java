@@ -0,0 +1,100 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+import org.springframework.util.MultiValueMap;
+
+/**
+ * POJO holding the state of a single resolution. A new context is created for every request and passed through the
+ * resolution steps, so that no request data are kept in the singleton beans.
+ */
+public class ResolutionContext {
+
+    private final MultiValueMap<String, String> requestParams;
+
+    // the cleaned up OpenURL, set when the resolution starts
+    private OpenUrl openUrl;
+
+    private String referer;
+
+    private String remoteAddress;
+
+    private String doi = "";
+
+    private String urlFromDoi = "";
+
+    private boolean doiUrl = false;
+
+    // set, if an upstream service missed its deadline and the resolution used a fallback
+    private boolean degraded = false;
+
+    // how the WAYFless URL of a full text was constructed for this request
+    private WayflessType wayflessType;
+
+    public ResolutionContext(MultiValueMap<String, String> requestParams, String referer, String remoteAddress) {
+        this.requestParams = requestParams;
+        this.referer = referer;
+        this.remoteAddress = remoteAddress;
+    }
+
+    public MultiValueMap<String, String> getRequestParams() {
+        return requestParams;
+    }
+
+    public OpenUrl getOpenUrl() {
+        return openUrl;
+    }
+
+    public void setOpenUrl(OpenUrl openUrl) {
+        this.openUrl = openUrl;
+    }
+
+    public String getReferer() {
+        return referer;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public void setDoi(String doi) {
+        this.doi = doi;
+    }
+
+    public String getUrlFromDoi() {
+        return urlFromDoi;
+    }
+
+    public void setUrlFromDoi(String urlFromDoi) {
+        this.urlFromDoi = urlFromDoi;
+    }
+
+    /**
+     * @return true, if the doi resolver returned the url of the resource
+     */
+    public boolean isDoiUrl() {
+        return doiUrl;
+    }
+
+    public void setDoiUrl(boolean doiUrl) {
+        this.doiUrl = doiUrl;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
+
+    public WayflessType getWayflessType() {
+        return wayflessType;
+    }
+
+    public void setWayflessType(WayflessType wayflessType) {
+        this.wayflessType = wayflessType;
+    }
+}
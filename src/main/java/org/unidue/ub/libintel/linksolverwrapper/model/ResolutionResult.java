@@ -0,0 +1,54 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding the outcome of a resolution: the target url, whether it is a free full text and the access route
+ */
+public class ResolutionResult {
+
+    private final String doi;
+
+    private final String url;
+
+    private final boolean openAccess;
+
+    private final AccessRoute route;
+
+    // the status written to the access log, null if none is logged
+    private final String status;
+
+    public ResolutionResult(String doi, String url, boolean openAccess, AccessRoute route, String status) {
+        this.doi = doi;
+        this.url = url;
+        this.openAccess = openAccess;
+        this.route = route;
+        this.status = status;
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isOpenAccess() {
+        return openAccess;
+    }
+
+    public AccessRoute getRoute() {
+        return route;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @param url the new target url
+     * @return a copy of this result with the given target url
+     */
+    public ResolutionResult withUrl(String url) {
+        return new ResolutionResult(doi, url, openAccess, route, status);
+    }
+}
@@ -0,0 +1,32 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding the number of resolutions and how many of them shared the result of an identical resolution in flight
+ */
+public class ResolutionStatistics {
+
+    private long requests;
+
+    private long coalesced;
+
+    public ResolutionStatistics(long requests, long coalesced) {
+        this.requests = requests;
+        this.coalesced = coalesced;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public void setCoalesced(long coalesced) {
+        this.coalesced = coalesced;
+    }
+}
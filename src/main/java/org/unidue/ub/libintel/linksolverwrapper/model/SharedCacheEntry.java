@@ -0,0 +1,73 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+/**
+ * an entry of the cache shared by all instances of the linksolver wrapper, holding the value as string
+ */
+@Entity
+@Table(name="shared_cache")
+@IdClass(SharedCacheKey.class)
+public class SharedCacheEntry {
+
+    @Id
+    @Column(name="cache_name")
+    private String cacheName;
+
+    @Id
+    @Column(name="cache_key")
+    private String cacheKey;
+
+    @Column(name="cache_value")
+    private String value;
+
+    // expiry time in milliseconds since the epoch
+    @Column(name="expires_at")
+    private long expiresAt;
+
+    public SharedCacheEntry() {
+    }
+
+    public SharedCacheEntry(String cacheName, String cacheKey, String value, long expiresAt) {
+        this.cacheName = cacheName;
+        this.cacheKey = cacheKey;
+        this.value = value;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
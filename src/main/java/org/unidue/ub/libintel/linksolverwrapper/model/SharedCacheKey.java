@@ -0,0 +1,55 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * the primary key of a {@link SharedCacheEntry}: the name of the cache and the key within the cache
+ */
+public class SharedCacheKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String cacheName;
+
+    private String cacheKey;
+
+    public SharedCacheKey() {
+    }
+
+    public SharedCacheKey(String cacheName, String cacheKey) {
+        this.cacheName = cacheName;
+        this.cacheKey = cacheKey;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof SharedCacheKey))
+            return false;
+        SharedCacheKey that = (SharedCacheKey) o;
+        return Objects.equals(cacheName, that.cacheName) && Objects.equals(cacheKey, that.cacheKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cacheName, cacheKey);
+    }
+}
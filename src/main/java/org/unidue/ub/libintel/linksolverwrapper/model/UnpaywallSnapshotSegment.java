@@ -0,0 +1,32 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO describing one index file of the local Unpaywall snapshot, either the full snapshot or a change file
+ */
+public class UnpaywallSnapshotSegment {
+
+    private String name;
+
+    private long entries;
+
+    public UnpaywallSnapshotSegment(String name, long entries) {
+        this.name = name;
+        this.entries = entries;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public void setEntries(long entries) {
+        this.entries = entries;
+    }
+}
@@ -0,0 +1,71 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding the state of the circuit breaker of an upstream service and its current request timeout
+ */
+public class UpstreamStatus {
+
+    private String upstream;
+
+    private String state;
+
+    private double failureRate;
+
+    private int calls;
+
+    private long timeout;
+
+    public UpstreamStatus(String upstream, String state, double failureRate, int calls, long timeout) {
+        this.upstream = upstream;
+        this.state = state;
+        this.failureRate = failureRate;
+        this.calls = calls;
+        this.timeout = timeout;
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    public void setUpstream(String upstream) {
+        this.upstream = upstream;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * @return the share of failed requests in the window of the circuit breaker in percent
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public int getCalls() {
+        return calls;
+    }
+
+    public void setCalls(int calls) {
+        this.calls = calls;
+    }
+
+    /**
+     * @return the current request timeout in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,22 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * the outcome of the construction of a WAYFless URL
+ */
+public enum WayflessType {
+
+    // the remote address is within the excluded subnets, the original url is used
+    IN_IP_RANGE,
+
+    // WAYFless URL at the service provider
+    SP_SIDE,
+
+    // WAYFless URL at the identity provider
+    IP_SIDE,
+
+    // no Shibboleth data for the host, the original url is used
+    NO_DATA,
+
+    // the url could not be parsed, it is used unchanged
+    INVALID_URL
+}
@@ -0,0 +1,24 @@
+package org.unidue.ub.libintel.linksolverwrapper.model;
+
+/**
+ * POJO holding the url to redirect to and how it was constructed
+ */
+public class WayflessUrl {
+
+    private final String url;
+
+    private final WayflessType type;
+
+    public WayflessUrl(String url, WayflessType type) {
+        this.url = url;
+        this.type = type;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public WayflessType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,40 @@
+package org.unidue.ub.libintel.linksolverwrapper.model.datacite;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * POJO holding the DOI record of a DataCite response, the metadata being given as attributes
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DataciteData {
+
+    private String id;
+
+    private String type;
+
+    private DataciteMetadata attributes;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public DataciteMetadata getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(DataciteMetadata attributes) {
+        this.attributes = attributes;
+    }
+}
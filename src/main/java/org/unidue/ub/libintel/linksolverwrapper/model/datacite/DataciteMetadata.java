@@ -1,12 +1,20 @@
 package org.unidue.ub.libintel.linksolverwrapper.model.datacite;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.util.Date;
 import java.util.List;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class DataciteMetadata {
 
     private String doi;
 
+    // the landing page the DOI is registered for
+    private String url;
+
+    private List<DataciteRights> rightsList;
+
     private String descrioption;
 
     private String licence;
@@ -25,7 +33,7 @@ public class DataciteMetadata {
 
     private DataciteResourceType resourceType;
 
-    private DataciteRelatedIdentifiers relatedIdentifiers;
+    private List<DataciteRelatedIdentifiers> relatedIdentifiers;
 
     public String getDoi() {
         return doi;
@@ -35,6 +43,22 @@ public class DataciteMetadata {
         this.doi = doi;
     }
 
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public List<DataciteRights> getRightsList() {
+        return rightsList;
+    }
+
+    public void setRightsList(List<DataciteRights> rightsList) {
+        this.rightsList = rightsList;
+    }
+
     public String getDescrioption() {
         return descrioption;
     }
@@ -107,11 +131,11 @@ public class DataciteMetadata {
         this.resourceType = resourceType;
     }
 
-    public DataciteRelatedIdentifiers getRelatedIdentifiers() {
+    public List<DataciteRelatedIdentifiers> getRelatedIdentifiers() {
         return relatedIdentifiers;
     }
 
-    public void setRelatedIdentifiers(DataciteRelatedIdentifiers relatedIdentifiers) {
+    public void setRelatedIdentifiers(List<DataciteRelatedIdentifiers> relatedIdentifiers) {
         this.relatedIdentifiers = relatedIdentifiers;
     }
 }
@@ -1,5 +1,8 @@
 package org.unidue.ub.libintel.linksolverwrapper.model.datacite;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class DataciteResourceType {
 
     private String type;
@@ -1,24 +1,20 @@
 package org.unidue.ub.libintel.linksolverwrapper.model.datacite;
 
-public class DataciteResponse {
-
-    private String doi;
-
-    private DataciteMetadata metadata;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-    public String getDoi() {
-        return doi;
-    }
+/**
+ * POJO holding the response of the DataCite REST API for a single DOI
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DataciteResponse {
 
-    public void setDoi(String doi) {
-        this.doi = doi;
-    }
+    private DataciteData data;
 
-    public DataciteMetadata getMetadata() {
-        return metadata;
+    public DataciteData getData() {
+        return data;
     }
 
-    public void setMetadata(DataciteMetadata metadata) {
-        this.metadata = metadata;
+    public void setData(DataciteData data) {
+        this.data = data;
     }
 }
@@ -0,0 +1,33 @@
+package org.unidue.ub.libintel.linksolverwrapper.model.datacite;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * POJO holding an entry of the rights list of a DataCite record, e.g. a license or the access rights
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DataciteRights {
+
+    private String rights;
+
+    private String rightsUri;
+
+    public String getRights() {
+        return rights;
+    }
+
+    public void setRights(String rights) {
+        this.rights = rights;
+    }
+
+    /**
+     * @return the uri of the rights, e.g. 'info:eu-repo/semantics/openAccess' or the url of a Creative Commons license
+     */
+    public String getRightsUri() {
+        return rightsUri;
+    }
+
+    public void setRightsUri(String rightsUri) {
+        this.rightsUri = rightsUri;
+    }
+}
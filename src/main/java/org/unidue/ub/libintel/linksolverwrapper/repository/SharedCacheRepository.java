@@ -0,0 +1,48 @@
+package org.unidue.ub.libintel.linksolverwrapper.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheKey;
+
+/**
+ * repository of the cache entries shared by all instances. Not exported, the entries are managed by the caches.
+ */
+@RepositoryRestResource(exported = false)
+public interface SharedCacheRepository extends CrudRepository<SharedCacheEntry, SharedCacheKey>, SharedCacheRepositoryCustom {
+
+    /**
+     * @param now the current time in milliseconds since the epoch
+     * @return the number of removed entries
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SharedCacheEntry e where e.expiresAt <= :now")
+    int deleteExpired(@Param("now") long now);
+
+    /**
+     * removes the entry of the key and all entries with keys matching the pattern
+     *
+     * @param cacheName the name of the cache
+     * @param key       the key, e.g. 'issn:1234-5678'
+     * @param pattern   the pattern of further keys, with '!' as escape character, e.g. 'issn:1234-5678/%'
+     * @return the number of removed entries
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SharedCacheEntry e where e.cacheName = :cacheName and (e.cacheKey = :key or e.cacheKey like :pattern escape '!')")
+    int deleteByKeyOrPattern(@Param("cacheName") String cacheName, @Param("key") String key, @Param("pattern") String pattern);
+
+    /**
+     * @param cacheName the name of the cache
+     * @return the number of removed entries
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SharedCacheEntry e where e.cacheName = :cacheName")
+    int deleteAllOfCache(@Param("cacheName") String cacheName);
+}
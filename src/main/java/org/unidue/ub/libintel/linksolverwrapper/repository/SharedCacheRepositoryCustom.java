@@ -0,0 +1,20 @@
+package org.unidue.ub.libintel.linksolverwrapper.repository;
+
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+
+import java.util.Collection;
+
+/**
+ * writes the shared cache entries with plain SQL, see {@link SharedCacheRepositoryCustomImpl}
+ */
+public interface SharedCacheRepositoryCustom {
+
+    /**
+     * inserts the entries in one batch, replacing the value and the expiry time of entries already present. Other
+     * instances may write the same keys at the same time, so the entries are not merged by JPA, which reads them first
+     * and would fail the whole batch on a concurrent insert.
+     *
+     * @param entries the entries, with one entry per key
+     */
+    void upsertAll(Collection<SharedCacheEntry> entries);
+}
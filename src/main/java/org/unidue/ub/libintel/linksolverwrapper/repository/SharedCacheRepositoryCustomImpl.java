@@ -0,0 +1,33 @@
+package org.unidue.ub.libintel.linksolverwrapper.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+
+import java.util.Collection;
+
+/**
+ * implementation of the batch upsert of the shared cache repository using the PostgreSQL 'on conflict' clause
+ */
+public class SharedCacheRepositoryCustomImpl implements SharedCacheRepositoryCustom {
+
+    private final static String UPSERT = "insert into shared_cache (cache_name, cache_key, cache_value, expires_at) values (?, ?, ?, ?) "
+            + "on conflict (cache_name, cache_key) do update set cache_value = excluded.cache_value, expires_at = excluded.expires_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SharedCacheRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void upsertAll(Collection<SharedCacheEntry> entries) {
+        jdbcTemplate.batchUpdate(UPSERT, entries, entries.size(), (statement, entry) -> {
+            statement.setString(1, entry.getCacheName());
+            statement.setString(2, entry.getCacheKey());
+            statement.setString(3, entry.getValue());
+            statement.setLong(4, entry.getExpiresAt());
+        });
+    }
+}
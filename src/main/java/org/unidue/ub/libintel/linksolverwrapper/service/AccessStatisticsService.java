@@ -0,0 +1,220 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessEvent;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessStatistics;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RingBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects the access statistics of the resolutions without slowing down the requests. The events are put into a
+ * lock-free ring buffer and written by a background thread in batches to gzipped files with one JSON object per line,
+ * one file per day. Each batch is appended as a gzip member of its own, so that a file can be read while it is still
+ * written to. If the buffer is full, events are dropped and counted.
+ * <p>
+ * If no statistics directory is configured, the events are written to the log by the background thread instead.
+ */
+@Service
+public class AccessStatisticsService {
+
+    private final static String FILE_PREFIX = "access-";
+
+    private final static String FILE_SUFFIX = ".ndjson.gz";
+
+    private final static ObjectMapper mapper = new ObjectMapper();
+
+    private final static ObjectWriter eventWriter = mapper.writerFor(AccessEvent.class);
+
+    private final static ObjectReader eventReader = mapper.readerFor(AccessEvent.class);
+
+    private final RingBuffer<AccessEvent> buffer;
+
+    private final Counter dropped;
+
+    // directory holding the statistics files. the events are logged, if empty
+    @Value("${libintel.statistics.directory:}")
+    private String directory;
+
+    // maximum number of events written at once
+    @Value("${libintel.statistics.batch-size:1000}")
+    private int batchSize;
+
+    // time in milliseconds the writer waits for further events before writing a batch
+    @Value("${libintel.statistics.flush-interval:1000}")
+    private long flushInterval;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private volatile boolean running = false;
+
+    private Thread writerThread;
+
+    private final static Logger log = LoggerFactory.getLogger(AccessStatisticsService.class);
+
+    @Autowired
+    public AccessStatisticsService(MeterRegistry meterRegistry, @Value("${libintel.statistics.buffer-size:65536}") int bufferSize) {
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.dropped = Counter.builder("libintel.statistics.dropped")
+                .description("access events dropped because the buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("libintel.statistics.buffered", buffer, RingBuffer::size)
+                .description("access events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * adds the event to the statistics. Does not block; the event is dropped, if the writer cannot keep up.
+     *
+     * @param event the access event of a resolution
+     */
+    public void record(AccessEvent event) {
+        if (!buffer.offer(event))
+            dropped.increment();
+    }
+
+    /**
+     * starts the background writer
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        writerThread = new Thread(this::writeEvents, "access-statistics");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * stops the background writer after writing the buffered events
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!running)
+            return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * counts the resolutions by day and referer from the statistics files. Events still in the buffer are not
+     * included.
+     *
+     * @param from the first day
+     * @param to   the last day
+     * @return the statistics by day and referer, ordered by day and referer
+     */
+    public List<AccessStatistics> aggregate(LocalDate from, LocalDate to) {
+        if (directory.isEmpty())
+            throw new IllegalStateException("no statistics directory configured");
+        List<AccessStatistics> statistics = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            Path file = getFile(day);
+            if (!Files.exists(file))
+                continue;
+            String dayString = day.toString();
+            Map<String, AccessStatistics> byReferer = new TreeMap<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank())
+                        continue;
+                    AccessEvent event = eventReader.readValue(line);
+                    String referer = event.getReferer() == null ? "" : event.getReferer();
+                    byReferer.computeIfAbsent(referer, key -> new AccessStatistics(dayString, key)).add(event);
+                }
+            } catch (EOFException eof) {
+                // the last batch is still being written
+                log.debug("incomplete batch at the end of " + file);
+            } catch (IOException e) {
+                log.warn("could not read access statistics " + file, e);
+            }
+            statistics.addAll(byReferer.values());
+        }
+        return statistics;
+    }
+
+    private void writeEvents() {
+        List<AccessEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            // read the flag before draining, so that no event offered before the shutdown is lost
+            boolean stopping = !running;
+            buffer.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            } else if (stopping) {
+                return;
+            }
+            // wait for further events, unless the buffer holds another full batch
+            if (running && buffer.size() < batchSize)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval));
+        }
+    }
+
+    private void write(List<AccessEvent> batch) {
+        if (directory.isEmpty()) {
+            for (AccessEvent event : batch)
+                log.info("OA: " + event.isOpenAccess() + ", status: '" + event.getStatus() + "', remote: " + event.getRemoteAddress() + ", referer: " + event.getReferer());
+            return;
+        }
+        // events of a batch belong to the same day except around midnight
+        Map<LocalDate, List<AccessEvent>> byDay = new TreeMap<>();
+        for (AccessEvent event : batch)
+            byDay.computeIfAbsent(Instant.ofEpochMilli(event.getTimestamp()).atZone(zone).toLocalDate(), day -> new ArrayList<>()).add(event);
+        byDay.forEach((day, events) -> {
+            Path file = getFile(day);
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16), StandardCharsets.UTF_8)) {
+                for (AccessEvent event : events) {
+                    writer.write(eventWriter.writeValueAsString(event));
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                log.warn("could not write " + events.size() + " access events to " + file, e);
+            }
+        });
+    }
+
+    private Path getFile(LocalDate day) {
+        return Paths.get(directory, FILE_PREFIX + day + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,110 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.BatchResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.model.OpenUrl;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionContext;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Resolves a batch of OpenURL requests, e.g. the references of a reading list. Entries with the same DOI (or, without
+ * DOI, the same parameters) are resolved only once. The distinct entries are worked off by a fixed number of workers
+ * on the resolve executor, so that a large batch does not flood the upstream services.
+ */
+@Service
+public class BatchResolutionService {
+
+    private final ResolverService resolverService;
+
+    private final Executor resolveExecutor;
+
+    // the number of entries of one batch resolved at the same time
+    @Value("${libintel.batch.parallelism:8}")
+    private int parallelism;
+
+    private final static Logger log = LoggerFactory.getLogger(BatchResolutionService.class);
+
+    @Autowired
+    public BatchResolutionService(ResolverService resolverService, @Qualifier("resolveExecutor") Executor resolveExecutor) {
+        this.resolverService = resolverService;
+        this.resolveExecutor = resolveExecutor;
+    }
+
+    /**
+     * resolves all entries of the batch. The results are passed to the consumer as soon as they are available, i.e.
+     * not in the order of the batch and from different threads.
+     *
+     * @param contexts the resolution contexts of the entries
+     * @param consumer receives the result for every entry
+     * @return a future completing when all entries are resolved
+     */
+    public CompletableFuture<Void> resolve(List<ResolutionContext> contexts, Consumer<BatchResolutionResult> consumer) {
+        // group the entries by DOI or parameters
+        Map<String, List<Integer>> entries = new LinkedHashMap<>();
+        for (int i = 0; i < contexts.size(); i++)
+            entries.computeIfAbsent(getKey(contexts.get(i)), key -> new ArrayList<>()).add(i);
+        log.debug("resolving batch of " + contexts.size() + " entries with " + entries.size() + " distinct entries");
+
+        Queue<List<Integer>> pending = new ConcurrentLinkedQueue<>(entries.values());
+        int workers = Math.min(parallelism, pending.size());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++)
+            futures[i] = CompletableFuture.runAsync(() -> {
+                List<Integer> indices;
+                while ((indices = pending.poll()) != null) {
+                    ResolutionResult result = resolve(contexts.get(indices.get(0)));
+                    for (int index : indices)
+                        consumer.accept(new BatchResolutionResult(index, result));
+                }
+            }, resolveExecutor);
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * resolves all entries of the batch
+     *
+     * @param contexts the resolution contexts of the entries
+     * @return a future of the results in the order of the batch
+     */
+    public CompletableFuture<List<BatchResolutionResult>> resolveAll(List<ResolutionContext> contexts) {
+        BatchResolutionResult[] results = new BatchResolutionResult[contexts.size()];
+        return resolve(contexts, result -> results[result.getIndex()] = result)
+                .thenApply(done -> List.of(results));
+    }
+
+    private ResolutionResult resolve(ResolutionContext context) {
+        try {
+            return resolverService.resolve(context);
+        } catch (RuntimeException e) {
+            // a single failing entry must not fail the whole batch
+            log.warn("could not resolve batch entry", e);
+            return new ResolutionResult(context.getDoi(), null, false, AccessRoute.NONE, null);
+        }
+    }
+
+    private String getKey(ResolutionContext context) {
+        // parsed once, the resolution reuses the OpenURL
+        OpenUrl openUrl = OpenUrl.parse(context.getRequestParams());
+        context.setOpenUrl(openUrl);
+        String doi = openUrl.getDoi();
+        if (doi.isEmpty())
+            return "openurl:" + openUrl.getKey();
+        return "doi:" + doi.toLowerCase();
+    }
+}
@@ -0,0 +1,102 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import feign.FeignException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.client.DataciteClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteMetadata;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteResponse;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteRights;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+import org.unidue.ub.libintel.linksolverwrapper.utils.SingleFlight;
+
+/**
+ * Retrieves the landing page and the access rights of DOIs registered at DataCite, e.g. research data and repository
+ * publications, which are not covered by Unpaywall. The records are cached, including DOIs unknown to DataCite.
+ */
+@Service
+public class DataciteService {
+
+    // marks DOIs unknown to DataCite in the cache
+    private final static DataciteMetadata NOT_FOUND = new DataciteMetadata();
+
+    // time to live in seconds for DOIs found at DataCite
+    @Value("${libintel.cache.datacite.ttl:604800}")
+    private long ttl;
+
+    // time to live in seconds for DOIs unknown to DataCite
+    @Value("${libintel.cache.datacite.negative-ttl:86400}")
+    private long negativeTtl;
+
+    private final DataciteClient dataciteClient;
+
+    private final ExpiringCache<String, DataciteMetadata> cache;
+
+    private final SingleFlight<String, DataciteMetadata> singleFlight = new SingleFlight<>();
+
+    private final static Logger log = LoggerFactory.getLogger(DataciteService.class);
+
+    public DataciteService(DataciteClient dataciteClient,
+                           CacheRegistry cacheRegistry,
+                           @Value("${libintel.cache.datacite.size:10000}") int cacheSize) {
+        this.dataciteClient = dataciteClient;
+        this.cache = cacheRegistry.createCache("datacite", cacheSize);
+    }
+
+    /**
+     * retrieves the DataCite metadata of the DOI, either from the cache or from the DataCite API. Concurrent requests
+     * for the same DOI share one call.
+     *
+     * @param doi the DOI
+     * @return the metadata, or null if the DOI is unknown to DataCite or DataCite could not be reached
+     */
+    public DataciteMetadata getMetadata(String doi) {
+        String key = doi.toLowerCase();
+        DataciteMetadata metadata = cache.get(key);
+        if (metadata == null)
+            metadata = singleFlight.execute(key, () -> loadMetadata(key, doi));
+        return metadata == NOT_FOUND ? null : metadata;
+    }
+
+    /**
+     * returns the landing page of the DOI, if the access rights mark the resource as openly accessible, i.e. as open
+     * access or under a Creative Commons license
+     *
+     * @param metadata the DataCite metadata, may be null
+     * @return the url of the landing page, or null if the resource is not known to be open
+     */
+    public String getFreeUrl(DataciteMetadata metadata) {
+        if (metadata == null || metadata.getUrl() == null || metadata.getUrl().isEmpty() || metadata.getRightsList() == null)
+            return null;
+        for (DataciteRights rights : metadata.getRightsList()) {
+            String uri = rights.getRightsUri() == null ? "" : rights.getRightsUri().toLowerCase();
+            String text = rights.getRights() == null ? "" : rights.getRights().toLowerCase();
+            if (uri.endsWith("/openaccess") || uri.contains("creativecommons.org") || text.equals("open access"))
+                return metadata.getUrl();
+        }
+        return null;
+    }
+
+    private DataciteMetadata loadMetadata(String key, String doi) {
+        try {
+            DataciteResponse response = dataciteClient.getDataciteData(doi);
+            DataciteMetadata metadata = response == null || response.getData() == null ? null : response.getData().getAttributes();
+            if (metadata == null)
+                return null;
+            cache.put(key, metadata, ttl);
+            return metadata;
+        } catch (FeignException fe) {
+            if (fe.status() == 404) {
+                log.debug("no datacite data for " + doi);
+                cache.put(key, NOT_FOUND, negativeTtl);
+                return NOT_FOUND;
+            }
+            // other errors are not cached
+            log.debug("could not retrieve datacite data. ", fe);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * resolves DOIs to the landing pages of the resources and keeps the results in a size-bounded cache. Failed
+ * resolutions are cached as well, but with a shorter time to live. If a cache file is configured, the cache is
+ * written to disk on shutdown and read again on startup. Resolved DOIs are shared with the other instances via the
+ * {@link SharedCacheService}.
+ */
+@Service
+public class DoiRedirectService {
+
+    private final static String DOI_RESOLVER_URL = "https://doi.org/";
+
+    private final static String CACHE_NAME = "doi-redirect";
+
+    // failed resolutions are stored as empty string
+    private final static String FAILED = "";
+
+    private final ExpiringCache<String, String> cache;
+
+    // time to live for resolved DOIs in seconds
+    @Value("${libintel.cache.doi.ttl:86400}")
+    private long ttl;
+
+    // time to live for failed resolutions in seconds
+    @Value("${libintel.cache.doi.negative-ttl:300}")
+    private long negativeTtl;
+
+    // file to persist the cache between restarts. no persistence, if empty
+    @Value("${libintel.cache.doi.file:}")
+    private String cacheFile;
+
+    private final static Logger log = LoggerFactory.getLogger(DoiRedirectService.class);
+
+    private final RedirectLinkRetriever redirectLinkRetriever;
+
+    private final SharedCacheService sharedCacheService;
+
+    public DoiRedirectService(RedirectLinkRetriever redirectLinkRetriever,
+                              CacheRegistry cacheRegistry,
+                              SharedCacheService sharedCacheService,
+                              @Value("${libintel.cache.doi.size:10000}") int cacheSize) {
+        this.redirectLinkRetriever = redirectLinkRetriever;
+        this.sharedCacheService = sharedCacheService;
+        this.cache = cacheRegistry.createCache(CACHE_NAME, cacheSize);
+    }
+
+    /**
+     * takes a DOI and returns the link to the resource, either from the cache, from the shared cache or from the DOI
+     * resolver.
+     * @param doi a DOI
+     * @return the link to the resource, or the link to the DOI resolver if the DOI could not be resolved
+     */
+    public String getLinkForDoi(String doi) {
+        String doiUrl = DOI_RESOLVER_URL + doi;
+        String key = doi.toLowerCase();
+        String location = cache.get(key);
+        if (location == null) {
+            SharedCacheEntry shared = sharedCacheService.get(CACHE_NAME, key);
+            if (shared != null) {
+                cache.putUntil(key, shared.getValue(), shared.getExpiresAt());
+                return shared.getValue();
+            }
+            location = redirectLinkRetriever.getRedirectLocation(Upstream.DOI, doiUrl);
+            if (location == null) {
+                log.debug("could not resolve doi " + doi);
+                cache.put(key, FAILED, negativeTtl);
+                return doiUrl;
+            }
+            long expiresAt = System.currentTimeMillis() + ttl * 1000;
+            cache.putUntil(key, location, expiresAt);
+            // failed resolutions are not shared, they may be caused by this instance
+            sharedCacheService.put(CACHE_NAME, key, location, expiresAt);
+        }
+        return FAILED.equals(location) ? doiUrl : location;
+    }
+
+    @PostConstruct
+    void loadCache() {
+        if (cacheFile.isEmpty())
+            return;
+        Path path = Paths.get(cacheFile);
+        if (!Files.exists(path))
+            return;
+        long now = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // each line holds the doi, the location and the expiry time separated by tabs
+                String[] fields = line.split("\t");
+                if (fields.length != 3)
+                    continue;
+                long expiresAt = Long.parseLong(fields[2]);
+                if (expiresAt > now)
+                    cache.putUntil(fields[0], fields[1], expiresAt);
+            }
+            log.info("loaded " + cache.size() + " doi redirects from " + cacheFile);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("could not read doi redirect cache file " + cacheFile, e);
+        }
+    }
+
+    @PreDestroy
+    void saveCache() {
+        if (cacheFile.isEmpty())
+            return;
+        List<String> lines = new ArrayList<>();
+        cache.forEach((doi, entry) -> {
+            // failed resolutions are not worth persisting
+            if (!FAILED.equals(entry.getValue()))
+                lines.add(doi + "\t" + entry.getValue() + "\t" + entry.getExpiresAt());
+        });
+        try {
+            Files.write(Paths.get(cacheFile), lines, StandardCharsets.UTF_8);
+            log.info("saved " + lines.size() + " doi redirects to " + cacheFile);
+        } catch (IOException ioe) {
+            log.warn("could not write doi redirect cache file " + cacheFile, ioe);
+        }
+    }
+}
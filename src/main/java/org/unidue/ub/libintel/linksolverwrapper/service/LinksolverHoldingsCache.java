@@ -0,0 +1,154 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLinkType;
+import org.unidue.ub.libintel.linksolverwrapper.model.OpenUrl;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+import org.unidue.ub.libintel.linksolverwrapper.utils.IdentifierRecognizer;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers the classification of the linksolver answer per journal or book, i.e. by ISSN (or ISBN) and year. The
+ * answer only depends on the holdings of the library, if it offers no article-specific link: the JOP page, the
+ * interlibrary loan or the Elsevier order page. For such holdings, the linksolver is not asked again until the entry
+ * expires. Full text answers are not cached, as the link points to the single article, and they remove a cached
+ * classification, because the holdings obviously changed.
+ * <p>
+ * Requests giving a volume but no year are not looked up, as the holdings may differ between volumes.
+ * <p>
+ * The classifications are shared with the other instances via the {@link SharedCacheService}.
+ */
+@Component
+public class LinksolverHoldingsCache {
+
+    private final static Set<LinksolverLinkType> HOLDINGS_TYPES = EnumSet.of(LinksolverLinkType.JOURNAL,
+            LinksolverLinkType.INTERLIBRARY_LOAN, LinksolverLinkType.ELSEVIER_ORDER);
+
+    private final static String CACHE_NAME = "holdings";
+
+    private final static Pattern YEAR = Pattern.compile("(?<!\\d)(\\d{4})(?!\\d)");
+
+    private final ExpiringCache<String, LinksolverLinkType> cache;
+
+    // time to live of the classifications in seconds, 0 disables the cache
+    @Value("${libintel.cache.holdings.ttl:86400}")
+    private long ttl;
+
+    private final SharedCacheService sharedCacheService;
+
+    public LinksolverHoldingsCache(CacheRegistry cacheRegistry, SharedCacheService sharedCacheService,
+                                   @Value("${libintel.cache.holdings.size:10000}") int cacheSize) {
+        this.sharedCacheService = sharedCacheService;
+        this.cache = cacheRegistry.createCache(CACHE_NAME, cacheSize);
+    }
+
+    /**
+     * builds the key of the holdings the request refers to: the normalized ISSN (or EISSN, or ISBN-13) and the year
+     *
+     * @param openUrl the OpenURL of the request
+     * @return the key, e.g. 'issn:1234-5678/2018', or null if the request cannot be assigned to holdings
+     */
+    public String getKey(OpenUrl openUrl) {
+        String identifier = getIdentifier(openUrl);
+        if (identifier == null)
+            return null;
+        String year = getYear(openUrl.getFirst("date"));
+        if (year == null)
+            year = getYear(openUrl.getFirst("year"));
+        if (year == null) {
+            String volume = openUrl.getFirst("volume");
+            return volume == null || volume.isBlank() ? identifier : null;
+        }
+        return identifier + "/" + year;
+    }
+
+    /**
+     * @param key the key of the holdings
+     * @return the known classification of the linksolver answer, or null if the linksolver has to be asked
+     */
+    public LinksolverLinkType get(String key) {
+        if (ttl <= 0)
+            return null;
+        LinksolverLinkType type = cache.get(key);
+        if (type == null) {
+            SharedCacheEntry shared = sharedCacheService.get(CACHE_NAME, key);
+            type = shared == null ? null : getType(shared.getValue());
+            if (type != null)
+                cache.putUntil(key, type, shared.getExpiresAt());
+        }
+        return type;
+    }
+
+    /**
+     * remembers the classification of a linksolver answer, if it depends on the holdings only. Other answers remove
+     * the entry. The shared cache is not asked to remove it, as the linksolver is only asked if it held no entry.
+     *
+     * @param key  the key of the holdings
+     * @param type the type of the decisive link of the linksolver answer
+     */
+    public void update(String key, LinksolverLinkType type) {
+        if (ttl > 0 && HOLDINGS_TYPES.contains(type)) {
+            long expiresAt = System.currentTimeMillis() + ttl * 1000;
+            cache.putUntil(key, type, expiresAt);
+            sharedCacheService.put(CACHE_NAME, key, type.name(), expiresAt);
+        } else
+            cache.invalidate(key);
+    }
+
+    /**
+     * removes the classifications of a journal or book, e.g. after a new license was acquired
+     *
+     * @param identifier the ISSN or ISBN, all classifications are removed if null
+     * @return false if the identifier is no valid ISSN or ISBN
+     */
+    public boolean invalidate(String identifier) {
+        if (identifier == null) {
+            cache.invalidateAll();
+            sharedCacheService.invalidate(CACHE_NAME, null);
+            return true;
+        }
+        String issn = IdentifierRecognizer.normalizeIssn(identifier);
+        String isbn = issn == null ? IdentifierRecognizer.normalizeIsbn(identifier) : null;
+        if (issn == null && isbn == null)
+            return false;
+        String prefix = issn != null ? "issn:" + issn : "isbn:" + isbn;
+        cache.invalidateKeysIf(key -> key.equals(prefix) || key.startsWith(prefix + "/"));
+        sharedCacheService.invalidate(CACHE_NAME, prefix);
+        return true;
+    }
+
+    private static LinksolverLinkType getType(String name) {
+        try {
+            return LinksolverLinkType.valueOf(name);
+        } catch (IllegalArgumentException iae) {
+            // written by an instance knowing other link types
+            return null;
+        }
+    }
+
+    private static String getIdentifier(OpenUrl openUrl) {
+        String issn = IdentifierRecognizer.normalizeIssn(openUrl.getFirst("issn"));
+        if (issn == null)
+            issn = IdentifierRecognizer.normalizeIssn(openUrl.getFirst("eissn"));
+        if (issn != null)
+            return "issn:" + issn;
+        String isbn = IdentifierRecognizer.normalizeIsbn(openUrl.getFirst("isbn"));
+        if (isbn == null)
+            isbn = IdentifierRecognizer.normalizeIsbn(openUrl.getFirst("eisbn"));
+        return isbn == null ? null : "isbn:" + isbn;
+    }
+
+    private static String getYear(String value) {
+        if (value == null)
+            return null;
+        Matcher matcher = YEAR.matcher(value);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
@@ -1,23 +1,49 @@
 package org.unidue.ub.libintel.linksolverwrapper.service;
 
-import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+import org.unidue.ub.libintel.linksolverwrapper.utils.IdentifierRecognizer;
 
-import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Looks up the full text links of e-books in Primo. All ISBNs of a request are combined into one query, which is sent
+ * asynchronously. The links are read from the response with precompiled paths and cached per ISBN, including ISBNs
+ * without full text.
+ */
 @Service
 public class PrimoFullTextUrlService {
 
+    // ISBNs without full text are stored as empty string
+    private final static String NONE = "";
+
+    private final static Configuration jsonConfiguration = Configuration.defaultConfiguration()
+            .addOptions(Option.DEFAULT_PATH_LEAF_TO_NULL, Option.SUPPRESS_EXCEPTIONS);
+
+    private final static JsonPath DOCUMENTS = JsonPath.compile("$.docs[*]");
+
+    private final static JsonPath FULLTEXT_URL = JsonPath.compile("$.delivery.availabilityLinksUrl[0]");
+
+    private final static JsonPath ISBNS = JsonPath.compile("$.pnx.addata.isbn");
+
+    private final static JsonPath EISBNS = JsonPath.compile("$.pnx.addata.eisbn");
+
     @Value("${libintel.primo.search.url}")
     private String primoApiUrl;
 
@@ -27,45 +53,125 @@ public class PrimoFullTextUrlService {
     @Value("${libintel.primo.api.key}")
     private String primoApiKey;
 
+    // time to live of found links in seconds
+    @Value("${libintel.cache.primo.ttl:86400}")
+    private long ttl;
+
+    // time to live for ISBNs without full text in seconds
+    @Value("${libintel.cache.primo.negative-ttl:3600}")
+    private long negativeTtl;
+
     private final static Logger log = LoggerFactory.getLogger(PrimoFullTextUrlService.class);
 
-    public PrimoFullTextUrlService() {
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    private final ExpiringCache<String, String> cache;
+
+    public PrimoFullTextUrlService(UpstreamHttpClient upstreamHttpClient,
+                                   CacheRegistry cacheRegistry,
+                                   @Value("${libintel.cache.primo.size:10000}") int cacheSize) {
+        this.upstreamHttpClient = upstreamHttpClient;
+        this.cache = cacheRegistry.createCache("primo", cacheSize);
     }
 
-    public String getPrimoResponse(String identifier) {
-        String response = getResponseForJson(identifier);
-        if (!"".equals(response)) {
-            DocumentContext jsonContext = JsonPath.parse(response);
-            List<Object> documents = jsonContext.read("$['docs'][*]");
-            log.debug("found " + documents.size() + " documents");
-            int numberOfDocs = documents.size();
-            for (int i = 0; i < numberOfDocs; i++) {
-                String basePath = "$['docs'][" + i + "]";
-                try {
-                    String test = jsonContext.read(basePath + "['delivery']['availabilityLinksUrl'][0]");
-                    if (!test.isEmpty())
-                        return test;
-                } catch (PathNotFoundException pnfe) {
-                    log.debug("no url given");
-                }
-            }
+    /**
+     * looks up the full text of an e-book with one of the given ISBNs
+     *
+     * @param isbns the ISBNs and eISBNs of the request, in any notation. Invalid values are ignored.
+     * @return the future of the full text url for the first ISBN having one, completing with null if none is found
+     * or Primo cannot be reached
+     */
+    public CompletableFuture<String> getFullTextUrl(Collection<String> isbns) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String isbn : isbns) {
+            String value = IdentifierRecognizer.normalizeIsbn(isbn);
+            if (value != null)
+                normalized.add(value);
+        }
+        // the cached ISBNs are answered directly, the others are queried together
+        List<String> missing = new ArrayList<>();
+        for (String isbn : normalized) {
+            String url = cache.get(isbn);
+            if (url == null)
+                missing.add(isbn);
+            else if (!url.equals(NONE))
+                return CompletableFuture.completedFuture(url);
         }
-        return null;
+        if (missing.isEmpty())
+            return CompletableFuture.completedFuture(null);
+        return upstreamHttpClient.getAsync(Upstream.PRIMO, getQueryUrl(missing))
+                .thenApply(response -> {
+                    Map<String, String> urls = readFullTextUrls(response, missing);
+                    for (String isbn : missing) {
+                        String url = urls.get(isbn);
+                        if (url == null)
+                            cache.put(isbn, NONE, negativeTtl);
+                        else
+                            cache.put(isbn, url, ttl);
+                    }
+                    // the first ISBN of the request takes precedence
+                    for (String isbn : missing)
+                        if (urls.containsKey(isbn))
+                            return urls.get(isbn);
+                    return null;
+                })
+                .exceptionally(throwable -> {
+                    // errors are not cached
+                    log.debug("could not retrieve primo response", throwable);
+                    return null;
+                });
     }
 
-
-    private String getResponseForJson(String isbn) {
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.getMessageConverters()
-                .add(0, new StringHttpMessageConverter(Charset.forName("UTF-8")));
-        String query = "isbn,contains," + isbn;
-        String resourceUrl = primoApiUrl + "&q=" + query + "&apikey=" + primoApiKey;
-        log.info("querying Primo API with " + resourceUrl);
-        ResponseEntity<String> response = restTemplate.getForEntity(resourceUrl, String.class);
-        if (response.getStatusCode().equals(HttpStatus.OK))
-            return response.getBody();
-        else
-            return "";
+    private String getQueryUrl(List<String> isbns) {
+        // isbn,contains,<isbn>,OR;isbn,contains,<isbn>
+        StringBuilder query = new StringBuilder();
+        for (String isbn : isbns) {
+            if (query.length() > 0)
+                query.append(",OR;");
+            query.append("isbn,contains,").append(isbn);
+        }
+        log.debug("querying Primo API for " + query);
+        return primoApiUrl + "&q=" + query + "&apikey=" + primoApiKey;
     }
 
+    /**
+     * reads the full text urls of the documents in the Primo response and assigns them to the requested ISBNs by the
+     * ISBNs of the documents. If only one ISBN was queried, every document matches it, so that the first url is
+     * assigned to it even without ISBNs in the document.
+     *
+     * @param response the Primo response
+     * @param isbns    the queried ISBNs, normalized
+     * @return the full text urls by ISBN
+     */
+    private static Map<String, String> readFullTextUrls(String response, List<String> isbns) {
+        Map<String, String> urls = new HashMap<>();
+        if (response == null || response.isEmpty())
+            return urls;
+        Object document = jsonConfiguration.jsonProvider().parse(response);
+        List<Object> documents = DOCUMENTS.read(document, jsonConfiguration);
+        if (documents == null)
+            return urls;
+        log.debug("found " + documents.size() + " documents");
+        String firstUrl = null;
+        for (Object doc : documents) {
+            Object url = FULLTEXT_URL.read(doc, jsonConfiguration);
+            if (!(url instanceof String) || ((String) url).isEmpty())
+                continue;
+            if (firstUrl == null)
+                firstUrl = (String) url;
+            for (JsonPath path : List.of(ISBNS, EISBNS)) {
+                Object values = path.read(doc, jsonConfiguration);
+                if (!(values instanceof List))
+                    continue;
+                for (Object value : (List<?>) values) {
+                    String isbn = IdentifierRecognizer.normalizeIsbn(String.valueOf(value));
+                    if (isbn != null && isbns.contains(isbn))
+                        urls.putIfAbsent(isbn, (String) url);
+                }
+            }
+        }
+        if (firstUrl != null && isbns.size() == 1)
+            urls.putIfAbsent(isbns.get(0), firstUrl);
+        return urls;
+    }
 }
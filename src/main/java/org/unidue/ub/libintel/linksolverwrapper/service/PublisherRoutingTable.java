@@ -0,0 +1,211 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.model.PublisherRoute;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Learns the publisher host behind the DOIs of a prefix (e.g. 'sciencedirect.com' for '10.1016') from the redirects
+ * of the DOI resolver. Most prefixes belong to a single publisher platform, so that the host is known before the DOI
+ * resolver answers. The host of a prefix is only used, if enough redirects were observed and nearly all of them point
+ * to the same host. The counts are halved regularly, so that a publisher moving to another platform is followed.
+ * <p>
+ * If a file is configured, the table is written to disk on shutdown and read again on startup.
+ */
+@Service
+public class PublisherRoutingTable {
+
+    // minimum number of observed redirects before the host of a prefix is used
+    @Value("${libintel.publishers.min-observations:5}")
+    private long minObservations;
+
+    // minimum share of the redirects pointing to the host
+    @Value("${libintel.publishers.min-confidence:0.9}")
+    private double minConfidence;
+
+    // number of observations after which the counts of a prefix are halved
+    @Value("${libintel.publishers.max-observations:1000}")
+    private long maxObservations;
+
+    // file to persist the table between restarts. no persistence, if empty
+    @Value("${libintel.publishers.file:}")
+    private String file;
+
+    private final Map<String, HostCounts> table = new ConcurrentHashMap<>();
+
+    private final static Logger log = LoggerFactory.getLogger(PublisherRoutingTable.class);
+
+    /**
+     * records the host a DOI was redirected to
+     *
+     * @param doi      the DOI
+     * @param location the location the DOI resolver redirected to
+     */
+    public void learn(String doi, String location) {
+        String prefix = getPrefix(doi);
+        String host = getHost(location);
+        if (prefix == null || host == null)
+            return;
+        table.computeIfAbsent(prefix, key -> new HostCounts()).add(host, 1, maxObservations);
+    }
+
+    /**
+     * looks up the publisher host of the DOI prefix
+     *
+     * @param doi the DOI
+     * @return the host most redirects of the prefix pointed to, or null if the prefix is unknown or its redirects
+     * point to different hosts
+     */
+    public String findHost(String doi) {
+        String prefix = getPrefix(doi);
+        if (prefix == null)
+            return null;
+        PublisherRoute route = getRoute(prefix);
+        return route != null && route.isConfident() ? route.getHost() : null;
+    }
+
+    /**
+     * @param prefix the DOI prefix, e.g. '10.1016'
+     * @return the most frequent host of the prefix, or null if no redirect of the prefix was observed
+     */
+    public PublisherRoute getRoute(String prefix) {
+        HostCounts counts = table.get(prefix.toLowerCase());
+        return counts == null ? null : counts.toRoute(prefix.toLowerCase());
+    }
+
+    /**
+     * @return the most frequent host of all prefixes, ordered by prefix
+     */
+    public List<PublisherRoute> getRoutes() {
+        List<PublisherRoute> routes = new ArrayList<>();
+        new TreeMap<>(table).forEach((prefix, counts) -> routes.add(counts.toRoute(prefix)));
+        return routes;
+    }
+
+    /**
+     * @param doi a DOI, e.g. '10.1016/j.heares.2019.01.001'
+     * @return the prefix in lower case, e.g. '10.1016', or null if the DOI has no prefix
+     */
+    public static String getPrefix(String doi) {
+        if (doi == null)
+            return null;
+        int slash = doi.indexOf('/');
+        if (slash < 4 || !doi.startsWith("10."))
+            return null;
+        return doi.substring(0, slash).toLowerCase();
+    }
+
+    /**
+     * @param url an absolute url
+     * @return the host of the url in lower case without 'www.', or null if the url has no host
+     */
+    public static String getHost(String url) {
+        if (url == null || url.isEmpty())
+            return null;
+        try {
+            String host = new URI(url).getHost();
+            if (host == null)
+                return null;
+            host = host.toLowerCase();
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        if (file.isEmpty())
+            return;
+        Path path = Paths.get(file);
+        if (!Files.exists(path))
+            return;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // each line holds the prefix, the host and the count separated by tabs
+                String[] fields = line.split("\t");
+                if (fields.length != 3)
+                    continue;
+                table.computeIfAbsent(fields[0], key -> new HostCounts()).add(fields[1], Long.parseLong(fields[2]), maxObservations);
+            }
+            log.info("loaded publisher hosts for " + table.size() + " doi prefixes from " + file);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("could not read publisher routing file " + file, e);
+        }
+    }
+
+    @PreDestroy
+    void save() {
+        if (file.isEmpty())
+            return;
+        List<String> lines = new ArrayList<>();
+        table.forEach((prefix, counts) -> counts.forEach((host, count) -> lines.add(prefix + "\t" + host + "\t" + count)));
+        try {
+            Files.write(Paths.get(file), lines, StandardCharsets.UTF_8);
+            log.info("saved publisher hosts for " + table.size() + " doi prefixes to " + file);
+        } catch (IOException ioe) {
+            log.warn("could not write publisher routing file " + file, ioe);
+        }
+    }
+
+    /**
+     * the observed hosts of one prefix with their counts
+     */
+    private class HostCounts {
+
+        private final Map<String, Long> counts = new HashMap<>();
+
+        private long total = 0;
+
+        synchronized void add(String host, long count, long maxTotal) {
+            counts.merge(host, count, Long::sum);
+            total += count;
+            if (total <= maxTotal)
+                return;
+            // older observations lose weight, rare hosts are dropped
+            total = 0;
+            counts.replaceAll((key, value) -> value / 2);
+            counts.values().removeIf(value -> value == 0);
+            for (long value : counts.values())
+                total += value;
+        }
+
+        synchronized PublisherRoute toRoute(String prefix) {
+            String host = null;
+            long max = 0;
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                if (entry.getValue() > max) {
+                    host = entry.getKey();
+                    max = entry.getValue();
+                }
+            }
+            double confidence = total == 0 ? 0 : (double) max / total;
+            return new PublisherRoute(prefix, host, total, confidence, total >= minObservations && confidence >= minConfidence);
+        }
+
+        synchronized void forEach(BiConsumer<String, Long> action) {
+            counts.forEach(action);
+        }
+    }
+}
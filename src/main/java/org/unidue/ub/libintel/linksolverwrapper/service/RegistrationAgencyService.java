@@ -0,0 +1,124 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows the registration agency (e.g. Crossref or DataCite) of the DOI prefixes. The agency is asked from the DOI
+ * resolver once per prefix and cached. The lookup runs in the background, so that the first DOIs of an unknown prefix
+ * are resolved as if the agency was Crossref.
+ */
+@Service
+public class RegistrationAgencyService {
+
+    public final static String DATACITE = "DataCite";
+
+    private final static ObjectMapper mapper = new ObjectMapper();
+
+    // the registration agency api of the DOI resolver
+    @Value("${libintel.doi.registration-agency.url:https://doi.org/ra/}")
+    private String registrationAgencyUrl;
+
+    // time to live of the agency of a prefix in seconds
+    @Value("${libintel.cache.registration-agency.ttl:2592000}")
+    private long ttl;
+
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    private final ExpiringCache<String, String> cache;
+
+    // the lookups in flight by prefix
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    private final static Logger log = LoggerFactory.getLogger(RegistrationAgencyService.class);
+
+    public RegistrationAgencyService(UpstreamHttpClient upstreamHttpClient,
+                                     CacheRegistry cacheRegistry,
+                                     @Value("${libintel.cache.registration-agency.size:10000}") int cacheSize) {
+        this.upstreamHttpClient = upstreamHttpClient;
+        this.cache = cacheRegistry.createCache("registration-agency", cacheSize);
+    }
+
+    /**
+     * @param doi the DOI
+     * @return true if the prefix of the DOI is known to be registered at DataCite. Unknown prefixes are looked up in
+     * the background.
+     */
+    public boolean isDatacite(String doi) {
+        return DATACITE.equals(getAgency(doi));
+    }
+
+    /**
+     * returns the registration agency of the DOI prefix, if known. Otherwise, the lookup is started.
+     *
+     * @param doi the DOI
+     * @return the name of the registration agency, e.g. 'Crossref' or 'DataCite', or null if not known yet
+     */
+    public String getAgency(String doi) {
+        String prefix = PublisherRoutingTable.getPrefix(doi);
+        if (prefix == null)
+            return null;
+        String agency = cache.get(prefix);
+        if (agency == null && upstreamHttpClient.isAvailable(Upstream.DOI))
+            lookup(prefix);
+        return agency;
+    }
+
+    /**
+     * asks the DOI resolver for the registration agency of the prefix and caches the answer. Concurrent lookups of the
+     * same prefix share one request.
+     *
+     * @param prefix the DOI prefix, e.g. '10.5281'
+     * @return the future of the name of the registration agency, completing with null if it could not be retrieved
+     */
+    public CompletableFuture<String> lookup(String prefix) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> running = pending.putIfAbsent(prefix, created);
+        if (running != null)
+            return running;
+        upstreamHttpClient.getAsync(Upstream.DOI, registrationAgencyUrl + prefix)
+                .thenApply(response -> {
+                    String agency = readAgency(response);
+                    if (agency != null)
+                        cache.put(prefix, agency, ttl);
+                    return agency;
+                })
+                .exceptionally(throwable -> {
+                    // errors are not cached, the next request tries again
+                    log.debug("could not retrieve registration agency of " + prefix, throwable);
+                    return null;
+                })
+                .thenAccept(agency -> {
+                    pending.remove(prefix);
+                    created.complete(agency);
+                });
+        return created;
+    }
+
+    /**
+     * reads the agency from the answer of the DOI resolver, e.g. '[{"DOI": "10.5281", "RA": "DataCite"}]'
+     */
+    private static String readAgency(String response) {
+        try {
+            JsonNode entry = mapper.readTree(response).path(0);
+            String agency = entry.path("RA").asText(null);
+            // unknown prefixes are answered with a status instead of an agency
+            return agency == null || agency.isEmpty() ? null : agency;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
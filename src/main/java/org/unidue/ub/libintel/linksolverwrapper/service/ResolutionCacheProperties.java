@@ -0,0 +1,64 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * settings of the cache for resolution decisions, e.g. 'libintel.cache.resolution.ttl.interlibrary-loan=3600'. The
+ * time to live in seconds is set per access route, a time to live of 0 disables caching for the route.
+ */
+@Component
+@ConfigurationProperties(prefix = "libintel.cache.resolution")
+public class ResolutionCacheProperties {
+
+    private final static Map<AccessRoute, Long> DEFAULT_TTL = new EnumMap<>(AccessRoute.class);
+
+    static {
+        // open access status and licenses change rarely, holdings a bit more often
+        DEFAULT_TTL.put(AccessRoute.OPEN_ACCESS, 86400L);
+        DEFAULT_TTL.put(AccessRoute.FULLTEXT, 21600L);
+        DEFAULT_TTL.put(AccessRoute.ELSEVIER_ORDER, 21600L);
+        DEFAULT_TTL.put(AccessRoute.JOURNAL, 21600L);
+        DEFAULT_TTL.put(AccessRoute.INTERLIBRARY_LOAN, 21600L);
+        // fallbacks are kept only shortly
+        DEFAULT_TTL.put(AccessRoute.DOI, 3600L);
+        DEFAULT_TTL.put(AccessRoute.LINKSOLVER, 900L);
+        DEFAULT_TTL.put(AccessRoute.NONE, 900L);
+    }
+
+    // maximum number of cached decisions
+    private int size = 10000;
+
+    // time to live by access route, in the notation of the property keys, e.g. 'open-access'
+    private Map<String, Long> ttl = new HashMap<>();
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public Map<String, Long> getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Map<String, Long> ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param route the access route
+     * @return the time to live in seconds for decisions with this route
+     */
+    public long getTtl(AccessRoute route) {
+        Long seconds = ttl.get(route.name().toLowerCase().replace('_', '-'));
+        return seconds != null ? seconds : DEFAULT_TTL.get(route);
+    }
+}
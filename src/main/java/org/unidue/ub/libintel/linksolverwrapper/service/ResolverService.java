@@ -0,0 +1,626 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamStatusException;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamUnavailableException;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessEvent;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLink;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLinkType;
+import org.unidue.ub.libintel.linksolverwrapper.model.OpenUrl;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionContext;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionStatistics;
+import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallResponse;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessUrl;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteMetadata;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+import org.unidue.ub.libintel.linksolverwrapper.utils.LinksolverResponseParser;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+import org.unidue.ub.libintel.linksolverwrapper.utils.SingleFlight;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.OUTCOME_ERROR;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.OUTCOME_SUCCESS;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.SOURCE_CACHED;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.SOURCE_COALESCED;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.SOURCE_RESOLVED;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_DATACITE;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_DOI;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_LINKSOLVER_FETCH;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_LINKSOLVER_PARSE;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_PRIMO;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_SHIBBOLETH;
+import static org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics.STAGE_UNPAYWALL;
+
+/**
+ * Decides where an OpenURL request is forwarded to: a free full text found by Unpaywall, the licensed full text
+ * (as WAYFless URL), the JOP page, the interlibrary loan or the linksolver itself. Used by the /resolve redirect as
+ * well as by the batch resolution.
+ * <p>
+ * Identical requests arriving at the same time, e.g. from a course page linking a popular article, share one
+ * resolution. Only the parts depending on the single request, the WAYFless URL for the remote address and the referer
+ * passed to the Elsevier order page, are added to the shared result for each request. For the same reason, the
+ * decisions are cached with a time to live depending on the access route, so that repeated requests skip all upstream
+ * calls. Decisions based on upstream errors or missed deadlines are not cached.
+ * <p>
+ * If the circuit breaker of the DOI resolver or the linksolver is open, the call is skipped and the fallback (the
+ * doi.org url or the linksolver itself) is used right away. The linksolver is not asked either, if its answer for the
+ * journal is already known from the {@link LinksolverHoldingsCache}.
+ * <p>
+ * If the publisher host of the DOI prefix is known from the {@link PublisherRoutingTable}, the decisions depending only
+ * on the publisher (e.g. the Elsevier order page) do not wait for the DOI resolver. It is only awaited, if its url
+ * becomes the target.
+ * <p>
+ * DOIs with a prefix registered at DataCite (research data, repositories) are not covered by Unpaywall. Their landing
+ * page and access rights are taken from DataCite instead of the DOI resolver and Unpaywall.
+ */
+@Service
+public class ResolverService {
+
+    // the ShibbolethBuilder, autowired by the constructor
+    private final ShibbolethBuilder shibbolethBuilder;
+
+    private final UnpaywallService unpaywallService;
+
+    private final PrimoFullTextUrlService primoFullTextUrlService;
+
+    private final DoiRedirectService doiRedirectService;
+
+    private final RedirectLinkRetriever redirectLinkRetriever;
+
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    // runs the upstream calls in parallel
+    private final Executor upstreamExecutor;
+
+    // coalesces identical resolutions in flight, keyed by the normalized OpenURL parameters
+    private final SingleFlight<String, ResolutionResult> singleFlight = new SingleFlight<>();
+
+    private final LongAdder requests = new LongAdder();
+
+    // the decisions by the normalized OpenURL parameters
+    private final ExpiringCache<String, ResolutionResult> decisionCache;
+
+    private final ResolutionCacheProperties resolutionCacheProperties;
+
+    private final ResolutionMetrics resolutionMetrics;
+
+    private final AccessStatisticsService accessStatisticsService;
+
+    private final LinksolverHoldingsCache holdingsCache;
+
+    private final PublisherRoutingTable publisherRoutingTable;
+
+    private final RegistrationAgencyService registrationAgencyService;
+
+    private final DataciteService dataciteService;
+
+    private final static String ELSEVIER_ORDER_URL = "https://www.uni-due.de/ub/elsevierersatz.php";
+
+    // the journals online and print page, followed by the issn and the fixed parameters
+    private final static String JOP_URL = "https://www.uni-due.de/ub/ghbsys/jop?issn=";
+
+    private final static String JOP_PARAMETERS = "&genre=journal&pid=bibid%3DUGHE&sid=bib:ughe";
+
+    private final static String INTERLIBRARY_LOAN_URL = "https://www.digibib.net/openurl";
+
+    // the parameters replaced in the OpenURL for the interlibrary loan
+    private final static Map<String, String> INTERLIBRARY_LOAN_PARAMETERS = Map.of(
+            "sid", "464_465:Zeitschriftenkatalog",
+            "pid", "<location>464_465<%2Flocation>",
+            "genre", "journal");
+
+    private final static String STATUS_HTTP_ERROR = "Http Status Exception";
+
+    private final static String STATUS_IO_ERROR = "IO Exception";
+
+    private final static String STATUS_UNAVAILABLE = "Upstream unavailable";
+
+    private final static Logger log = LoggerFactory.getLogger(ResolverService.class);
+
+    // the address of the linksolver retrieved from the properties (available at the config server)
+    @Value("${libintel.linksolver.url}")
+    private String linksolverUrl;
+
+    // deadlines for the upstream calls in milliseconds
+    @Value("${libintel.timeout.doi:5000}")
+    private long doiTimeout;
+
+    @Value("${libintel.timeout.unpaywall:5000}")
+    private long unpaywallTimeout;
+
+    @Value("${libintel.timeout.linksolver:60000}")
+    private long linksolverTimeout;
+
+    @Value("${libintel.timeout.primo:5000}")
+    private long primoTimeout;
+
+    @Value("${libintel.timeout.datacite:5000}")
+    private long dataciteTimeout;
+
+    @Autowired
+    public ResolverService(ShibbolethBuilder shibbolethBuilder, UnpaywallService unpaywallService, PrimoFullTextUrlService primoFullTextUrlService, DoiRedirectService doiRedirectService, RedirectLinkRetriever redirectLinkRetriever, UpstreamHttpClient upstreamHttpClient, @Qualifier("upstreamExecutor") Executor upstreamExecutor, ResolutionCacheProperties resolutionCacheProperties, CacheRegistry cacheRegistry, ResolutionMetrics resolutionMetrics, AccessStatisticsService accessStatisticsService, LinksolverHoldingsCache holdingsCache, PublisherRoutingTable publisherRoutingTable, RegistrationAgencyService registrationAgencyService, DataciteService dataciteService) {
+        this.shibbolethBuilder = shibbolethBuilder;
+        this.unpaywallService = unpaywallService;
+        this.primoFullTextUrlService = primoFullTextUrlService;
+        this.doiRedirectService = doiRedirectService;
+        this.redirectLinkRetriever = redirectLinkRetriever;
+        this.upstreamHttpClient = upstreamHttpClient;
+        this.upstreamExecutor = upstreamExecutor;
+        this.resolutionCacheProperties = resolutionCacheProperties;
+        this.decisionCache = cacheRegistry.createCache("resolution", resolutionCacheProperties.getSize());
+        this.resolutionMetrics = resolutionMetrics;
+        this.accessStatisticsService = accessStatisticsService;
+        this.holdingsCache = holdingsCache;
+        this.publisherRoutingTable = publisherRoutingTable;
+        this.registrationAgencyService = registrationAgencyService;
+        this.dataciteService = dataciteService;
+    }
+
+    /**
+     * retrieves the resource URL for the OpenURL parameters and adds the outcome to the access statistics
+     *
+     * @param context the resolution context of the request
+     * @return the target url, the open access status and the access route
+     */
+    public ResolutionResult resolve(ResolutionContext context) {
+        Timer.Sample sample = resolutionMetrics.start();
+        // cleaned up in one pass. in case of empty issn and given eissn, the eissn value is added as issn parameter.
+        OpenUrl openUrl = context.getOpenUrl();
+        if (openUrl == null) {
+            openUrl = OpenUrl.parse(context.getRequestParams());
+            context.setOpenUrl(openUrl);
+        }
+        context.setDoi(openUrl.getDoi());
+
+        requests.increment();
+        String key = openUrl.getKey();
+        String source = SOURCE_CACHED;
+        ResolutionResult decision = decisionCache.get(key);
+        if (decision == null) {
+            AtomicBoolean resolved = new AtomicBoolean();
+            decision = singleFlight.execute(key, () -> {
+                resolved.set(true);
+                return decideAndCache(key, context);
+            });
+            source = resolved.get() ? SOURCE_RESOLVED : SOURCE_COALESCED;
+        }
+        ResolutionResult result = completeForRequest(decision, context);
+        resolutionMetrics.recordResolution(sample, result.getRoute(), source);
+        if (result.getStatus() != null)
+            accessStatisticsService.record(new AccessEvent(System.currentTimeMillis(), result, context));
+        return result;
+    }
+
+    /**
+     * @return the number of resolutions and how many of them shared an identical resolution in flight
+     */
+    public ResolutionStatistics getStatistics() {
+        return new ResolutionStatistics(requests.sum(), singleFlight.getCoalesced());
+    }
+
+    /**
+     * removes cached decisions
+     *
+     * @param route the access route of the decisions to remove, all decisions if null
+     */
+    public void invalidateDecisions(AccessRoute route) {
+        if (route == null)
+            decisionCache.invalidateAll();
+        else
+            decisionCache.invalidateIf(decision -> decision.getRoute() == route);
+    }
+
+    private ResolutionResult decideAndCache(String key, ResolutionContext context) {
+        ResolutionResult decision = decide(context);
+        long ttl = resolutionCacheProperties.getTtl(decision.getRoute());
+        boolean failed = STATUS_HTTP_ERROR.equals(decision.getStatus()) || STATUS_IO_ERROR.equals(decision.getStatus());
+        if (ttl > 0 && !failed && !context.isDegraded())
+            decisionCache.put(key, decision, ttl);
+        return decision;
+    }
+
+    /**
+     * decides on the target of the request. The result does not depend on the remote address and the referer, so
+     * that it can be shared by identical requests. Full text urls are returned without WAYFless URL, the url of the
+     * Elsevier order page is left empty.
+     *
+     * @param context the resolution context of the request
+     * @return the shared part of the result
+     */
+    private ResolutionResult decide(ResolutionContext context) {
+
+        OpenUrl openUrl = context.getOpenUrl();
+
+        // prepare and initalize other variables
+        String redirectUrl = null;
+        AccessRoute route = AccessRoute.NONE;
+        String urlFromDoi = "";
+        String urlFromLinksolver;
+        String doi = context.getDoi();
+        String queryParameters = openUrl.getQueryString();
+
+        // start the calls to the doi resolver, Unpaywall and the linksolver at the same time, each with its own deadline.
+        // upstreams with open circuit breaker are skipped, the decision is not cached then.
+        CompletableFuture<String> doiFuture = CompletableFuture.completedFuture("");
+        CompletableFuture<UnpaywallResponse> unpaywallFuture = CompletableFuture.completedFuture(null);
+        CompletableFuture<DataciteMetadata> dataciteFuture = CompletableFuture.completedFuture(null);
+        if (!doi.isEmpty() && registrationAgencyService.isDatacite(doi) && isAvailable(Upstream.DATACITE, context)) {
+            // DataCite knows the landing page and the access rights, neither the DOI resolver nor Unpaywall is asked
+            String doiUrl = "https://doi.org/" + doi;
+            dataciteFuture = withDeadline(CompletableFuture.supplyAsync(() -> timed(STAGE_DATACITE, Upstream.DATACITE, () -> dataciteService.getMetadata(doi)), upstreamExecutor),
+                    STAGE_DATACITE, dataciteTimeout, null, context);
+            doiFuture = dataciteFuture.thenApply(metadata -> metadata == null || metadata.getUrl() == null || metadata.getUrl().isEmpty() ? doiUrl : metadata.getUrl());
+        } else if (!doi.isEmpty()) {
+            String doiUrl = "https://doi.org/" + doi;
+            if (isAvailable(Upstream.DOI, context))
+                doiFuture = withDeadline(CompletableFuture.supplyAsync(() -> timed(STAGE_DOI, Upstream.DOI, () -> doiRedirectService.getLinkForDoi(doi)), upstreamExecutor),
+                        STAGE_DOI, doiTimeout, doiUrl, context);
+            else
+                doiFuture = CompletableFuture.completedFuture(doiUrl);
+            if (isAvailable(Upstream.UNPAYWALL, context))
+                unpaywallFuture = withDeadline(CompletableFuture.supplyAsync(() -> timed(STAGE_UNPAYWALL, Upstream.UNPAYWALL, () -> unpaywallService.getUnpaywallResponse(doi)), upstreamExecutor),
+                        STAGE_UNPAYWALL, unpaywallTimeout, null, context);
+            else
+                // the local snapshot is still asked, if Unpaywall itself is not available
+                unpaywallFuture = CompletableFuture.completedFuture(unpaywallService.getSnapshotResponse(doi));
+        }
+        // all ISBNs of the request are looked up in Primo with one query
+        CompletableFuture<String> primoFuture = CompletableFuture.completedFuture(null);
+        List<String> isbns = new ArrayList<>();
+        for (String name : List.of("isbn", "eisbn"))
+            isbns.addAll(openUrl.get(name));
+        if (!isbns.isEmpty() && isAvailable(Upstream.PRIMO, context))
+            primoFuture = withDeadline(timedAsync(STAGE_PRIMO, Upstream.PRIMO, () -> primoFullTextUrlService.getFullTextUrl(isbns)),
+                    STAGE_PRIMO, primoTimeout, null, context);
+
+        // for journals only available via JOP or interlibrary loan, the answer of the linksolver is already known
+        String holdingsKey = holdingsCache.getKey(openUrl);
+        LinksolverLinkType knownType = holdingsKey == null ? null : holdingsCache.get(holdingsKey);
+        CompletableFuture<LinksolverLink> linksolverFuture;
+        if (knownType != null)
+            linksolverFuture = CompletableFuture.completedFuture(new LinksolverLink(knownType, "known holdings", null));
+        else if (isAvailable(Upstream.LINKSOLVER, context))
+            linksolverFuture = CompletableFuture.supplyAsync(() -> getLinksolverResponse(queryParameters), upstreamExecutor)
+                    .orTimeout(linksolverTimeout, TimeUnit.MILLISECONDS);
+        else
+            linksolverFuture = CompletableFuture.failedFuture(new UpstreamUnavailableException(Upstream.LINKSOLVER));
+
+        // the publisher host decides some branches. if it is known for the DOI prefix, the DOI resolver is not awaited.
+        String publisherHost = doi.isEmpty() ? null : publisherRoutingTable.findHost(doi);
+
+        // first, check for DOI
+        if (!doi.isEmpty()) {
+            log.debug("querying unpaywall for OA status");
+            UnpaywallResponse unpaywallResponse = unpaywallFuture.join();
+
+            // if a free full text url is returned, redirect directly to the resource and drop the other calls.
+            // the copy on the publisher host is preferred. if there is a choice, the DOI resolver is awaited, so
+            // that the cached decision does not depend on which call answered first.
+            String doiUrl = unpaywallService.hasSeveralFreeUrls(unpaywallResponse) ? awaitDoiUrl(doi, doiFuture, context) : doiFuture.getNow("");
+            String freeUrl = unpaywallService.getFreeUrl(unpaywallResponse, doiUrl);
+            if (freeUrl == null)
+                freeUrl = dataciteService.getFreeUrl(dataciteFuture.join());
+            if (freeUrl != null) {
+                doiFuture.cancel(true);
+                linksolverFuture.cancel(true);
+                return new ResolutionResult(doi, freeUrl, true, AccessRoute.OPEN_ACCESS, "Volltext");
+            }
+
+            // if no free full text url is found, the doi url is the redirect link
+            route = AccessRoute.DOI;
+            if (publisherHost == null) {
+                urlFromDoi = awaitDoiUrl(doi, doiFuture, context);
+                redirectUrl = urlFromDoi;
+                publisherHost = PublisherRoutingTable.getHost(urlFromDoi);
+            } else
+                log.debug("publisher host " + publisherHost + " known from doi prefix");
+        }
+
+        // then, check for e-books in Primo
+        String urlFromPrimo = primoFuture.join();
+        if (urlFromPrimo != null) {
+            log.debug("retrieved link from Primo: " + urlFromPrimo);
+            linksolverFuture.cancel(true);
+            return new ResolutionResult(doi, urlFromPrimo, false, AccessRoute.FULLTEXT, "Volltext");
+        }
+
+        // retrieve availability information from linksolver
+        try {
+            // the linksolver response is read only up to the first link deciding the resolution
+            LinksolverLink link = awaitLinksolverResponse(linksolverFuture);
+            if (link != null && holdingsKey != null && knownType == null)
+                holdingsCache.update(holdingsKey, link.getType());
+            if (link != null) {
+                log.debug("linksolver returned option " + link.getText());
+
+                switch (link.getType()) {
+                    // full text is online available, redirect directly to resource, construct WAYFless URL on the fly
+                    // applicable also for ebooks where full-text is available.
+                    case FULLTEXT: {
+                        urlFromDoi = awaitDoiUrl(doi, doiFuture, context);
+                        if (!(urlFromDoi.contains("link.springer.com"))) {
+                            urlFromLinksolver = redirectLinkRetriever.getLinkFromRedirect(Upstream.LINKSOLVER, linksolverUrl + link.getHref());
+                            log.debug("retrieved link from linksolver: " + urlFromLinksolver);
+                        } else {
+                            urlFromLinksolver = "";
+                        }
+                        // if present, the doi link is preferred. the WAYFless URL is constructed for each request.
+                        String url = context.isDoiUrl() ? context.getUrlFromDoi() : urlFromLinksolver;
+                        return new ResolutionResult(doi, url, false, AccessRoute.FULLTEXT, "Volltext");
+                    }
+
+                    // if a target specially designed for Elsevier is present, also direct to the order page
+                    case ELSEVIER_ORDER: {
+                        log.debug("no fulltext available and elsevier journal. redirecting to order page.");
+                        return new ResolutionResult(doi, null, false, AccessRoute.ELSEVIER_ORDER, "Elsevier-Bestellseite");
+                    }
+
+                    // printed or online media are available but linksolver does not return URL.
+                    // In this case redirect to journal online and print page (JOP-Button)
+                    case JOURNAL: {
+                        log.debug("printed or online access without resource url. redirecting to journals online and print page.");
+                        // the jop api needs the issn with a '-' in the middle
+                        String issn = openUrl.getIssn();
+                        if (issn != null) {
+                            String url = JOP_URL + URLEncoder.encode(issn, StandardCharsets.UTF_8) + JOP_PARAMETERS;
+                            return new ResolutionResult(doi, url, false, AccessRoute.JOURNAL, "JOP-Seite");
+                        } else {
+                            // if no issn is given, redirect to the linksolver
+                            return new ResolutionResult(doi, linksolverUrl + queryParameters, false, AccessRoute.LINKSOLVER, "Linksolver (no ISSN)");
+                        }
+                    }
+
+                    // only interlibrary loan is available. check for specific conditions (elsevier).
+                    // If elsevier or science direct is present, redirect to order page and fill doi and source parameters.
+                    // Otherwise redirect to the interlibrary loan page and fill in needed request params for the Fernleihe.
+                    case INTERLIBRARY_LOAN: {
+                        if (publisherHost != null && (publisherHost.contains("sciencedirect") || publisherHost.contains("elsevier"))) {
+                            log.debug("no fulltext available and elsevier journal. redirecting to order page.");
+                            return new ResolutionResult(doi, null, false, AccessRoute.ELSEVIER_ORDER, "Elsevier-Bestellseite");
+                        } else {
+                            log.debug("no fulltext available. redirecting to interlibrary loan page");
+                            String url = INTERLIBRARY_LOAN_URL + openUrl.with(INTERLIBRARY_LOAN_PARAMETERS).getQueryString();
+                            log.debug("redirect url: " + url);
+                            return new ResolutionResult(doi, url, false, AccessRoute.INTERLIBRARY_LOAN, "Fernleihe");
+                        }
+                    }
+                    default: {
+                        redirectUrl = linksolverUrl + queryParameters;
+                        route = AccessRoute.LINKSOLVER;
+                        // log.info("OA: false, status: 'Link-Name unbekannt', remote: " + remoteAddress + ", referer: " + referer);
+                    }
+                }
+            }
+        }
+        // if any errors occur when trying to connect to linkresolver or doi resolver send error.
+        catch (UpstreamStatusException hse) {
+            log.warn("encountered http status exception", hse);
+            urlFromDoi = awaitDoiUrl(doi, doiFuture, context);
+            if (urlFromDoi.contains("link.springer.com/book") || urlFromDoi.contains("link.springer.com/chapter")) {
+                redirectUrl = urlFromDoi;
+                route = AccessRoute.DOI;
+            } else {
+                redirectUrl = linksolverUrl + queryParameters;
+                route = AccessRoute.LINKSOLVER;
+            }
+            log.debug("redirect to " + redirectUrl);
+            return new ResolutionResult(doi, redirectUrl, false, route, STATUS_HTTP_ERROR);
+        }
+        catch (UpstreamUnavailableException uue) {
+            log.debug("linksolver not available, using fallback");
+            urlFromDoi = awaitDoiUrl(doi, doiFuture, context);
+            redirectUrl = urlFromDoi;
+            if (urlFromDoi == null || urlFromDoi.isEmpty()) {
+                redirectUrl = linksolverUrl + queryParameters;
+                route = AccessRoute.LINKSOLVER;
+            }
+            return new ResolutionResult(doi, redirectUrl, false, route, STATUS_UNAVAILABLE);
+        }
+        catch (Exception e) {
+            log.warn("encountered IO exception", e);
+            urlFromDoi = awaitDoiUrl(doi, doiFuture, context);
+            redirectUrl = urlFromDoi;
+            if (urlFromDoi == null || urlFromDoi.isEmpty()) {
+                redirectUrl = linksolverUrl + queryParameters;
+                route = AccessRoute.LINKSOLVER;
+            }
+            log.debug("redirect to " + redirectUrl);
+            return new ResolutionResult(doi, redirectUrl, false, route, STATUS_IO_ERROR);
+        }
+        if (route == AccessRoute.DOI)
+            redirectUrl = awaitDoiUrl(doi, doiFuture, context);
+        return new ResolutionResult(doi, redirectUrl, false, route, null);
+    }
+
+    /**
+     * waits for the DOI resolver and keeps its url in the resolution context
+     *
+     * @param doi       the DOI of the request, may be empty
+     * @param doiFuture the pending call of the DOI resolver
+     * @param context   the resolution context of the request
+     * @return the url of the resource, the doi.org url if the DOI could not be resolved, or an empty string without DOI
+     */
+    private String awaitDoiUrl(String doi, CompletableFuture<String> doiFuture, ResolutionContext context) {
+        if (doi.isEmpty())
+            return "";
+        String urlFromDoi = doiFuture.join();
+        log.debug("retrieved link from DOI: " + urlFromDoi);
+        context.setUrlFromDoi(urlFromDoi);
+        context.setDoiUrl(!urlFromDoi.isEmpty());
+        return urlFromDoi;
+    }
+
+    /**
+     * completes the future with the fallback value, if the upstream call misses its deadline, and marks the
+     * resolution as degraded
+     *
+     * @param future   the pending upstream call
+     * @param stage    the stage of the upstream call, for the metrics
+     * @param timeout  the deadline in milliseconds
+     * @param fallback the value used after the deadline
+     * @param context  the resolution context of the request
+     * @return the future completing with the result of the call or the fallback value
+     */
+    private <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, String stage, long timeout, T fallback, ResolutionContext context) {
+        return future.orTimeout(timeout, TimeUnit.MILLISECONDS).exceptionally(throwable -> {
+            if (throwable instanceof TimeoutException) {
+                resolutionMetrics.countDeadlineMissed(stage);
+                context.setDegraded(true);
+                return fallback;
+            }
+            throw throwable instanceof CompletionException ? (CompletionException) throwable : new CompletionException(throwable);
+        });
+    }
+
+    /**
+     * checks the circuit breaker of the upstream and marks the resolution as degraded, if the upstream is skipped
+     *
+     * @param upstream the upstream
+     * @param context  the resolution context of the request
+     * @return true if the upstream may be called
+     */
+    private boolean isAvailable(Upstream upstream, ResolutionContext context) {
+        if (upstreamHttpClient.isAvailable(upstream))
+            return true;
+        resolutionMetrics.countShortCircuited(upstream.getName());
+        context.setDegraded(true);
+        return false;
+    }
+
+    /**
+     * runs an upstream call and records its duration
+     *
+     * @param stage    the stage of the resolution
+     * @param upstream the upstream called
+     * @param call     the upstream call
+     * @return the result of the call
+     */
+    private <T> T timed(String stage, Upstream upstream, Supplier<T> call) {
+        Timer.Sample sample = resolutionMetrics.start();
+        try {
+            T result = call.get();
+            resolutionMetrics.recordStage(sample, stage, upstream.getName(), OUTCOME_SUCCESS);
+            return result;
+        } catch (RuntimeException e) {
+            resolutionMetrics.recordStage(sample, stage, upstream.getName(), OUTCOME_ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * starts an asynchronous upstream call and records its duration until the result is available
+     *
+     * @param stage    the stage of the resolution
+     * @param upstream the upstream called
+     * @param call     starts the upstream call
+     * @return the future of the result of the call
+     */
+    private <T> CompletableFuture<T> timedAsync(String stage, Upstream upstream, Supplier<CompletableFuture<T>> call) {
+        Timer.Sample sample = resolutionMetrics.start();
+        return call.get().whenComplete((result, throwable) ->
+                resolutionMetrics.recordStage(sample, stage, upstream.getName(), throwable == null ? OUTCOME_SUCCESS : OUTCOME_ERROR));
+    }
+
+    /**
+     * retrieves the linksolver html response and reads it up to the first decisive link. The rest of the response is
+     * discarded. Runs on the upstream executor.
+     *
+     * @param queryParameters the encoded OpenURL parameters
+     * @return the decisive link of the linksolver response, or null if the response contains no links
+     */
+    private LinksolverLink getLinksolverResponse(String queryParameters) {
+        log.debug("getting response from linksolver");
+        String upstream = Upstream.LINKSOLVER.getName();
+        Timer.Sample sample = resolutionMetrics.start();
+        Reader reader;
+        try {
+            reader = upstreamHttpClient.openReader(Upstream.LINKSOLVER, linksolverUrl + queryParameters);
+            resolutionMetrics.recordStage(sample, STAGE_LINKSOLVER_FETCH, upstream, OUTCOME_SUCCESS);
+        } catch (IOException ioe) {
+            resolutionMetrics.recordStage(sample, STAGE_LINKSOLVER_FETCH, upstream, OUTCOME_ERROR);
+            throw new CompletionException(ioe);
+        }
+        // parsing includes reading the body as it arrives
+        sample = resolutionMetrics.start();
+        try (reader) {
+            LinksolverLink link = LinksolverResponseParser.parse(reader);
+            String outcome = link == null ? "none" : link.getType().name().toLowerCase();
+            resolutionMetrics.recordStage(sample, STAGE_LINKSOLVER_PARSE, upstream, outcome);
+            return link;
+        } catch (IOException ioe) {
+            resolutionMetrics.recordStage(sample, STAGE_LINKSOLVER_PARSE, upstream, OUTCOME_ERROR);
+            throw new CompletionException(ioe);
+        }
+    }
+
+    /**
+     * waits for the linksolver response and unwraps IO errors, so that they can be handled like direct calls.
+     *
+     * @param linksolverFuture the pending linksolver call
+     * @return the decisive link of the linksolver response
+     * @throws IOException if the linksolver could not be reached or returned an error status
+     */
+    private LinksolverLink awaitLinksolverResponse(CompletableFuture<LinksolverLink> linksolverFuture) throws IOException {
+        try {
+            return linksolverFuture.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof IOException)
+                throw (IOException) ce.getCause();
+            throw ce;
+        }
+    }
+
+    /**
+     * adds the parts depending on the single request to the shared result: the WAYFless URL for full texts, if the
+     * remote address is outside the excluded subnets, and the referer as source of the Elsevier order page.
+     *
+     * @param result  the shared result
+     * @param context the resolution context of the request
+     * @return the result for this request
+     */
+    private ResolutionResult completeForRequest(ResolutionResult result, ResolutionContext context) {
+        switch (result.getRoute()) {
+            case FULLTEXT: {
+                Timer.Sample sample = resolutionMetrics.start();
+                WayflessUrl wayflessUrl = shibbolethBuilder.buildWayflessUrl(result.getUrl(), context.getRemoteAddress());
+                String url = wayflessUrl.getUrl();
+                String outcome = url == null || url.equals(result.getUrl()) ? "unchanged" : "wayfless";
+                resolutionMetrics.recordStage(sample, STAGE_SHIBBOLETH, "local", outcome);
+                context.setWayflessType(wayflessUrl.getType());
+                return result.withUrl(url);
+            }
+            case ELSEVIER_ORDER:
+                return result.withUrl(ELSEVIER_ORDER_URL + "?doi=" + result.getDoi() + "&source=" + context.getReferer());
+            default:
+                return result;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheKey;
+import org.unidue.ub.libintel.linksolverwrapper.repository.SharedCacheRepository;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RingBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Second level cache in the database, shared by all instances of the linksolver wrapper, so that an instance started
+ * next to running ones does not resolve the popular DOIs again. The in-memory caches ask the shared cache on a miss
+ * and pass their new entries to it. The entries are not written during the request, but put into a lock-free ring
+ * buffer and written by a background thread in batches. If the buffer is full, entries are dropped and counted. The
+ * background thread removes the expired entries from time to time.
+ * <p>
+ * The shared cache is disabled by default, as it needs the table 'shared_cache' (see sql/schema.sql).
+ */
+@Service
+public class SharedCacheService {
+
+    private final SharedCacheRepository sharedCacheRepository;
+
+    private final RingBuffer<SharedCacheEntry> buffer;
+
+    private final Counter dropped;
+
+    @Value("${libintel.cache.shared.enabled:false}")
+    private boolean enabled;
+
+    // maximum number of entries written at once
+    @Value("${libintel.cache.shared.batch-size:500}")
+    private int batchSize;
+
+    // time in milliseconds the writer waits for further entries before writing a batch
+    @Value("${libintel.cache.shared.flush-interval:1000}")
+    private long flushInterval;
+
+    // time in seconds between the removals of expired entries
+    @Value("${libintel.cache.shared.prune-interval:3600}")
+    private long pruneInterval;
+
+    private volatile boolean running = false;
+
+    private Thread writerThread;
+
+    private final static Logger log = LoggerFactory.getLogger(SharedCacheService.class);
+
+    @Autowired
+    public SharedCacheService(SharedCacheRepository sharedCacheRepository, MeterRegistry meterRegistry,
+                              @Value("${libintel.cache.shared.buffer-size:16384}") int bufferSize) {
+        this.sharedCacheRepository = sharedCacheRepository;
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.dropped = Counter.builder("libintel.cache.shared.dropped")
+                .description("shared cache entries dropped because the buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("libintel.cache.shared.buffered", buffer, RingBuffer::size)
+                .description("shared cache entries waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * returns the shared entry for the given key. Errors of the database are treated as a miss.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the key
+     * @return the entry, or null if the shared cache is disabled or holds no entry, or the entry is expired
+     */
+    public SharedCacheEntry get(String cacheName, String key) {
+        if (!enabled)
+            return null;
+        try {
+            SharedCacheEntry entry = sharedCacheRepository.findById(new SharedCacheKey(cacheName, key)).orElse(null);
+            return entry == null || entry.getExpiresAt() <= System.currentTimeMillis() ? null : entry;
+        } catch (DataAccessException dae) {
+            log.debug("could not read shared cache entry " + cacheName + "/" + key, dae);
+            return null;
+        }
+    }
+
+    /**
+     * passes the entry to the shared cache. Does not block; the entry is dropped, if the writer cannot keep up.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the key
+     * @param value     the value
+     * @param expiresAt the expiry time in milliseconds since the epoch
+     */
+    public void put(String cacheName, String key, String value, long expiresAt) {
+        if (enabled && !buffer.offer(new SharedCacheEntry(cacheName, key, value, expiresAt)))
+            dropped.increment();
+    }
+
+    /**
+     * removes the entry of the key and the entries with keys starting with the key followed by a slash, e.g. all years
+     * of a journal
+     *
+     * @param cacheName the name of the cache
+     * @param prefix    the key, all entries of the cache are removed if null
+     */
+    public void invalidate(String cacheName, String prefix) {
+        if (!enabled)
+            return;
+        try {
+            int removed = prefix == null ? sharedCacheRepository.deleteAllOfCache(cacheName) : sharedCacheRepository.deleteByKeyOrPattern(cacheName, prefix, escapeLikePattern(prefix) + "/%");
+            log.debug("removed " + removed + " shared cache entries of " + cacheName);
+        } catch (DataAccessException dae) {
+            log.warn("could not remove shared cache entries of " + cacheName, dae);
+        }
+    }
+
+    /**
+     * starts the background writer
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (running || !enabled)
+            return;
+        running = true;
+        writerThread = new Thread(this::writeEntries, "shared-cache");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * stops the background writer after writing the buffered entries
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!running)
+            return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeEntries() {
+        List<SharedCacheEntry> batch = new ArrayList<>(batchSize);
+        long nextPrune = System.currentTimeMillis();
+        while (true) {
+            // read the flag before draining, so that no entry offered before the shutdown is lost
+            boolean stopping = !running;
+            buffer.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            } else if (stopping) {
+                return;
+            }
+            if (System.currentTimeMillis() >= nextPrune) {
+                prune();
+                nextPrune = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(pruneInterval);
+            }
+            // wait for further entries, unless the buffer holds another full batch
+            if (running && buffer.size() < batchSize)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval));
+        }
+    }
+
+    private void write(List<SharedCacheEntry> batch) {
+        // popular keys are written once per batch, with the latest value
+        Map<SharedCacheKey, SharedCacheEntry> latest = new LinkedHashMap<>();
+        for (SharedCacheEntry entry : batch)
+            latest.put(new SharedCacheKey(entry.getCacheName(), entry.getCacheKey()), entry);
+        try {
+            sharedCacheRepository.upsertAll(latest.values());
+        } catch (DataAccessException dae) {
+            log.warn("could not write " + latest.size() + " shared cache entries", dae);
+        }
+    }
+
+    // the keys may contain the wildcards of 'like', e.g. an underscore in a DOI
+    private static String escapeLikePattern(String key) {
+        return key.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private void prune() {
+        try {
+            int removed = sharedCacheRepository.deleteExpired(System.currentTimeMillis());
+            if (removed > 0)
+                log.debug("removed " + removed + " expired shared cache entries");
+        } catch (DataAccessException dae) {
+            log.warn("could not remove expired shared cache entries", dae);
+        }
+    }
+}
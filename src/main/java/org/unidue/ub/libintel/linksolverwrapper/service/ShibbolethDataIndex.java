@@ -0,0 +1,130 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.model.ShibbolethData;
+import org.unidue.ub.libintel.linksolverwrapper.repository.ShibbolethDataRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of the Shibboleth data by host. The index is loaded at startup and replaced as a whole, whenever
+ * Shibboleth data are created, saved or deleted through the repository endpoint, so that lookups never reach the
+ * database. As changes made through another instance are not seen, and the database may not be reachable at startup,
+ * the index is reloaded periodically as well.
+ */
+@Component
+@RepositoryEventHandler(ShibbolethData.class)
+public class ShibbolethDataIndex {
+
+    private final ShibbolethDataRepository shibbolethDataRepository;
+
+    // immutable map, replaced on every change
+    private volatile Map<String, ShibbolethData> index = Collections.emptyMap();
+
+    // time in seconds between the periodic reloads, 0 disables them
+    @Value("${libintel.shibboleth.reload-interval:300}")
+    private long reloadInterval;
+
+    private ScheduledExecutorService reloader;
+
+    private final static Logger log = LoggerFactory.getLogger(ShibbolethDataIndex.class);
+
+    @Autowired
+    public ShibbolethDataIndex(ShibbolethDataRepository shibbolethDataRepository) {
+        this.shibbolethDataRepository = shibbolethDataRepository;
+    }
+
+    /**
+     * retrieves the Shibboleth data for the given host. If none are stored for the host itself, the parent domains
+     * are checked, e.g. 'sciencedirect.com' for 'www.sciencedirect.com'.
+     *
+     * @param host the host of the requested resource
+     * @return the Shibboleth data, or null if none are found
+     */
+    public ShibbolethData find(String host) {
+        if (host == null)
+            return null;
+        Map<String, ShibbolethData> current = index;
+        String domain = host.toLowerCase();
+        while (true) {
+            ShibbolethData shibbolethData = current.get(domain);
+            if (shibbolethData != null)
+                return shibbolethData;
+            // go to the parent domain, but stop before the top level domain
+            int dot = domain.indexOf('.');
+            if (dot < 0 || domain.indexOf('.', dot + 1) < 0)
+                return null;
+            domain = domain.substring(dot + 1);
+        }
+    }
+
+    /**
+     * loads the index and starts the periodic reload
+     */
+    @PostConstruct
+    public synchronized void start() {
+        reload();
+        if (reloader != null || reloadInterval <= 0)
+            return;
+        reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shibboleth-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reload, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * stops the periodic reload
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    /**
+     * reads all Shibboleth data from the database and replaces the index
+     */
+    public void reload() {
+        try {
+            Map<String, ShibbolethData> newIndex = new HashMap<>();
+            for (ShibbolethData shibbolethData : shibbolethDataRepository.findAll())
+                newIndex.put(shibbolethData.getHost().toLowerCase(), shibbolethData);
+            index = Collections.unmodifiableMap(newIndex);
+            log.info("loaded shibboleth data for " + newIndex.size() + " hosts");
+        } catch (RuntimeException e) {
+            log.warn("could not load shibboleth data, keeping previous index", e);
+        }
+    }
+
+    @HandleAfterCreate
+    @HandleAfterSave
+    public void handleAfterSave(ShibbolethData shibbolethData) {
+        log.debug("shibboleth data for " + shibbolethData.getHost() + " saved");
+        reload();
+    }
+
+    @HandleAfterDelete
+    public void handleAfterDelete(ShibbolethData shibbolethData) {
+        log.debug("shibboleth data for " + shibbolethData.getHost() + " deleted");
+        reload();
+    }
+}
@@ -1,16 +1,26 @@
 package org.unidue.ub.libintel.linksolverwrapper.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.FeignException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.unidue.ub.libintel.linksolverwrapper.client.UnpaywallClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
 import org.unidue.ub.libintel.linksolverwrapper.model.Unpaywall;
 import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallResponse;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ExpiringCache;
+import org.unidue.ub.libintel.linksolverwrapper.utils.SingleFlight;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.Executor;
 
 @Component
 public class UnpaywallService {
@@ -20,52 +30,232 @@ public class UnpaywallService {
     @Value("${libintel.unpaywall.email}")
     private String email;
 
+    // time to live in seconds for DOIs found at unpaywall
+    @Value("${libintel.cache.unpaywall.ttl:604800}")
+    private long ttl;
+
+    // time to live in seconds for DOIs unknown to unpaywall
+    @Value("${libintel.cache.unpaywall.negative-ttl:86400}")
+    private long negativeTtl;
+
+    // period in seconds an outdated entry is still served while it is refreshed
+    @Value("${libintel.cache.unpaywall.stale:604800}")
+    private long stalePeriod;
+
+    // marks DOIs unknown to unpaywall in the cache
+    private final static UnpaywallResponse NOT_FOUND = new UnpaywallResponse();
+
+    private final static String CACHE_NAME = "unpaywall";
+
+    private final static ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
     private UnpaywallClient unpaywallClient;
 
-    private UnpaywallResponse unpaywallResponse;
+    private final UnpaywallSnapshotService unpaywallSnapshotService;
+
+    private final ExpiringCache<String, UnpaywallResponse> cache;
+
+    private final SingleFlight<String, UnpaywallResponse> singleFlight = new SingleFlight<>();
+
+    private final Executor refreshExecutor;
+
+    private final SharedCacheService sharedCacheService;
 
     private static Logger log = LoggerFactory.getLogger(UnpaywallService.class);
 
-    public UnpaywallService(UnpaywallClient unpaywallClient) {
+    public UnpaywallService(UnpaywallClient unpaywallClient,
+                            UnpaywallSnapshotService unpaywallSnapshotService,
+                            CacheRegistry cacheRegistry,
+                            @Qualifier("upstreamExecutor") Executor refreshExecutor,
+                            SharedCacheService sharedCacheService,
+                            @Value("${libintel.cache.unpaywall.size:10000}") int cacheSize) {
         this.unpaywallClient = unpaywallClient;
+        this.unpaywallSnapshotService = unpaywallSnapshotService;
+        this.refreshExecutor = refreshExecutor;
+        this.sharedCacheService = sharedCacheService;
+        this.cache = cacheRegistry.createCache(CACHE_NAME, cacheSize);
     }
 
     /**
      * checks unpaywall for the given doi to check for open access publications
      *
      * @param doi the doi of the requested publication
+     * @param doiUrl the url the doi resolves to, used to prefer full texts on the publisher platform
      * @return the url to the fulltext if present, otherwise null
      */
-    public String checkUnpaywall(String doi, String doiHost) {
+    public String checkUnpaywall(String doi, String doiUrl) {
+        return getFreeUrl(getUnpaywallResponse(doi), doiUrl);
+    }
+
+    /**
+     * retrieves the unpaywall data for the given doi. DOIs contained in the local snapshot of the unpaywall data feed
+     * are answered from the snapshot. Otherwise, the shared cache or unpaywall is queried and the results are cached,
+     * including DOIs unknown to unpaywall. Outdated entries are returned immediately and refreshed in the background. Concurrent
+     * requests for the same doi share one call to unpaywall.
+     *
+     * @param doi the doi of the requested publication
+     * @return the unpaywall response, or null if unpaywall holds no data for this doi
+     */
+    public UnpaywallResponse getUnpaywallResponse(String doi) {
+        String snapshotUrl = unpaywallSnapshotService.find(doi);
+        if (snapshotUrl != null)
+            return snapshotUrl.isEmpty() ? null : fromSnapshot(doi, snapshotUrl);
+        String key = doi.toLowerCase();
+        ExpiringCache.Entry<UnpaywallResponse> entry = cache.getEntry(key);
+        UnpaywallResponse unpaywallResponse;
+        if (entry != null) {
+            if (entry.isStale()) {
+                log.debug("refreshing outdated unpaywall data for " + doi);
+                singleFlight.executeAsync(key, () -> loadUnpaywallResponse(key, doi), refreshExecutor);
+            }
+            unpaywallResponse = entry.getValue();
+        } else
+            unpaywallResponse = singleFlight.execute(key, () -> loadUnpaywallResponse(key, doi));
+        return unpaywallResponse == NOT_FOUND ? null : unpaywallResponse;
+    }
+
+    /**
+     * retrieves the unpaywall data for the given doi from the local snapshot only, e.g. while unpaywall itself is not
+     * available
+     *
+     * @param doi the doi of the requested publication
+     * @return the response with the open access url of the snapshot, or null if the snapshot holds none for this doi
+     */
+    public UnpaywallResponse getSnapshotResponse(String doi) {
+        String snapshotUrl = unpaywallSnapshotService.find(doi);
+        return snapshotUrl == null || snapshotUrl.isEmpty() ? null : fromSnapshot(doi, snapshotUrl);
+    }
+
+    /**
+     * wraps the best open access url of the local snapshot into an unpaywall response
+     */
+    private static UnpaywallResponse fromSnapshot(String doi, String url) {
+        Unpaywall unpaywall = new Unpaywall();
+        unpaywall.setDoi(doi);
+        unpaywall.setFreeToRead(true);
+        unpaywall.setFreeFulltextUrl(url);
+        UnpaywallResponse unpaywallResponse = new UnpaywallResponse();
+        unpaywallResponse.setResults(new Unpaywall[]{unpaywall});
+        return unpaywallResponse;
+    }
+
+    private UnpaywallResponse loadUnpaywallResponse(String key, String doi) {
+        // another instance may have retrieved or refreshed the data already
+        UnpaywallResponse sharedResponse = loadSharedResponse(key);
+        if (sharedResponse != null)
+            return sharedResponse;
         try {
             // execute feign client for unpaywall response. If no data are found, unpaywall returns 404 resulting in
             // a FeignException.
-            this.unpaywallResponse = this.unpaywallClient.getUnpaywallData(doi, email);
-            String url = getPreferredUrlForHost(doiHost);
-            if (url == null)
-                url = getFirstUrl();
-            return url;
+            UnpaywallResponse unpaywallResponse = this.unpaywallClient.getUnpaywallData(doi, email);
+            cache.put(key, unpaywallResponse, ttl, stalePeriod);
+            share(key, unpaywallResponse, ttl);
+            return unpaywallResponse;
         } catch (FeignException fe) {
-            // if no data are found on Unpaywall, return null as well
+            if (fe.status() == 404) {
+                // if no data are found on Unpaywall, remember this as well
+                log.debug("no unpaywall data for " + doi);
+                cache.put(key, NOT_FOUND, negativeTtl, stalePeriod);
+                share(key, NOT_FOUND, negativeTtl);
+                return NOT_FOUND;
+            }
+            // other errors (e.g. rate limits) are not cached, an outdated entry is kept
             log.debug("could not retrieve unpaywall data. ", fe);
             return null;
         }
     }
 
-    private String getPreferredUrlForHost(String host) {
-        if (this.unpaywallResponse.getResults() != null && this.unpaywallResponse.getResults().length > 0) {
-            for (Unpaywall unpaywall : this.unpaywallResponse.getResults()) {
+    /**
+     * reads the unpaywall data from the shared cache and caches them until the shared entry expires. DOIs unknown to
+     * unpaywall are shared as empty string.
+     */
+    private UnpaywallResponse loadSharedResponse(String key) {
+        SharedCacheEntry entry = sharedCacheService.get(CACHE_NAME, key);
+        if (entry == null)
+            return null;
+        UnpaywallResponse unpaywallResponse;
+        try {
+            unpaywallResponse = entry.getValue().isEmpty() ? NOT_FOUND : mapper.readValue(entry.getValue(), UnpaywallResponse.class);
+        } catch (IOException e) {
+            log.debug("could not read shared unpaywall data for " + key, e);
+            return null;
+        }
+        // rounded up, so that the entry does not turn stale before the shared entry expired
+        long remaining = (entry.getExpiresAt() - System.currentTimeMillis() + 999) / 1000;
+        cache.put(key, unpaywallResponse, remaining, stalePeriod);
+        return unpaywallResponse;
+    }
+
+    private void share(String key, UnpaywallResponse unpaywallResponse, long ttlSeconds) {
+        try {
+            String value = unpaywallResponse == NOT_FOUND ? "" : mapper.writeValueAsString(unpaywallResponse);
+            sharedCacheService.put(CACHE_NAME, key, value, System.currentTimeMillis() + ttlSeconds * 1000);
+        } catch (JsonProcessingException e) {
+            log.debug("could not share unpaywall data for " + key, e);
+        }
+    }
+
+    /**
+     * selects the free full text url from an unpaywall response. Urls on the host the doi resolves to are preferred.
+     *
+     * @param unpaywallResponse the unpaywall response, may be null
+     * @param doiUrl the url the doi resolves to, may be null or empty if not (yet) known
+     * @return the url to the fulltext if present, otherwise null
+     */
+    public String getFreeUrl(UnpaywallResponse unpaywallResponse, String doiUrl) {
+        if (unpaywallResponse == null)
+            return null;
+        String url = getPreferredUrlForHost(unpaywallResponse, getHost(doiUrl));
+        if (url == null)
+            url = getFirstUrl(unpaywallResponse);
+        return url;
+    }
+
+    /**
+     * @param unpaywallResponse the unpaywall response, may be null
+     * @return true if the response offers more than one distinct free full text url, so that the host the doi
+     * resolves to decides which one is chosen
+     */
+    public boolean hasSeveralFreeUrls(UnpaywallResponse unpaywallResponse) {
+        if (unpaywallResponse == null || unpaywallResponse.getResults() == null)
+            return false;
+        String first = null;
+        for (Unpaywall unpaywall : unpaywallResponse.getResults()) {
+            String url = unpaywall.getFreeFulltextUrl();
+            if (!unpaywall.isFreeToRead() || url == null || url.isEmpty())
+                continue;
+            if (first == null)
+                first = url;
+            else if (!first.equals(url))
+                return true;
+        }
+        return false;
+    }
+
+    private String getHost(String url) {
+        if (url == null || url.isEmpty())
+            return null;
+        try {
+            return new URI(url).getHost();
+        } catch (URISyntaxException use) {
+            return null;
+        }
+    }
+
+    private String getPreferredUrlForHost(UnpaywallResponse unpaywallResponse, String host) {
+        if (host == null)
+            return null;
+        if (unpaywallResponse.getResults() != null && unpaywallResponse.getResults().length > 0) {
+            for (Unpaywall unpaywall : unpaywallResponse.getResults()) {
                 if (unpaywall.isFreeToRead()) {
                     if (unpaywall.getFreeFulltextUrl() != null && !unpaywall.getFreeFulltextUrl().isEmpty()) {
                         String url = unpaywall.getFreeFulltextUrl();
-                        if (url.isEmpty())
-                            continue;
                         try {
-                            URI uri = new URI(unpaywall.getFreeFulltextUrl());
-                            if (uri.getHost().equals(host))
+                            URI uri = new URI(url);
+                            if (host.equals(uri.getHost()))
                                 return url;
                         } catch (URISyntaxException use) {
-                            use.printStackTrace();
+                            log.debug("could not parse unpaywall url " + url);
                         }
                     }
                 }
@@ -74,8 +264,8 @@ public class UnpaywallService {
         return null;
     }
 
-    private String getFirstUrl() {
-        if (this.unpaywallResponse.getResults() != null && this.unpaywallResponse.getResults().length > 0) {
+    private String getFirstUrl(UnpaywallResponse unpaywallResponse) {
+        if (unpaywallResponse.getResults() != null && unpaywallResponse.getResults().length > 0) {
             // cycle through all results. as soon as a free fulltext url is found, return this value.
             for (Unpaywall unpaywall : unpaywallResponse.getResults()) {
                 if (unpaywall.isFreeToRead()) {
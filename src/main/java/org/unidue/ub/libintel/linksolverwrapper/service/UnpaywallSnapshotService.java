@@ -0,0 +1,240 @@
+package org.unidue.ub.libintel.linksolverwrapper.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallSnapshotSegment;
+import org.unidue.ub.libintel.linksolverwrapper.utils.OpenAccessIndex;
+import org.unidue.ub.libintel.linksolverwrapper.utils.OpenAccessIndexWriter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Answers open access lookups from a local copy of the Unpaywall data feed, so that most DOIs never reach the
+ * Unpaywall API.
+ * <p>
+ * A full snapshot (gzipped JSON lines, one record per DOI) is read as a stream and converted into a memory-mapped
+ * {@link OpenAccessIndex}. The weekly change files of the data feed are converted into additional, smaller indexes,
+ * which take precedence over the snapshot, so that no full rebuild is needed. The list of index files is kept in the
+ * file 'segments' in the snapshot directory. Importing a new full snapshot replaces all index files.
+ */
+@Service
+public class UnpaywallSnapshotService {
+
+    private final static String SEGMENTS_FILE = "segments";
+
+    private final static String INDEX_SUFFIX = ".oaidx";
+
+    private final static JsonFactory jsonFactory = new JsonFactory();
+
+    // directory holding the index files. no local snapshot, if empty
+    @Value("${libintel.unpaywall.snapshot.directory:}")
+    private String directory;
+
+    // directory holding the data feed files to import, by default the folder 'feed' in the snapshot directory
+    @Value("${libintel.unpaywall.snapshot.feed-directory:}")
+    private String feedDirectory;
+
+    // immutable list, newest index first, replaced on every import
+    private volatile List<OpenAccessIndex> indexes = Collections.emptyList();
+
+    // imports are executed one after another
+    private final ExecutorService importExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "unpaywall-snapshot"));
+
+    private final static Logger log = LoggerFactory.getLogger(UnpaywallSnapshotService.class);
+
+    /**
+     * looks up the DOI in the local snapshot
+     *
+     * @param doi the DOI, in any case
+     * @return the best open access url, an empty string if the DOI is known without open access url, or null if the
+     * DOI is not contained in the snapshot
+     */
+    public String find(String doi) {
+        for (OpenAccessIndex index : indexes) {
+            String url = index.find(doi);
+            if (url != null)
+                return url;
+        }
+        return null;
+    }
+
+    /**
+     * @return the index files in use, oldest first
+     */
+    public List<UnpaywallSnapshotSegment> getSegments() {
+        List<UnpaywallSnapshotSegment> segments = new ArrayList<>();
+        for (OpenAccessIndex index : indexes)
+            segments.add(0, new UnpaywallSnapshotSegment(index.getPath().getFileName().toString(), index.size()));
+        return segments;
+    }
+
+    /**
+     * opens the index files listed in the segments file
+     */
+    @PostConstruct
+    public synchronized void load() {
+        if (directory.isEmpty())
+            return;
+        Path segmentsFile = Paths.get(directory, SEGMENTS_FILE);
+        if (!Files.exists(segmentsFile)) {
+            log.info("no unpaywall snapshot present in " + directory);
+            return;
+        }
+        try {
+            List<OpenAccessIndex> newIndexes = new ArrayList<>();
+            for (String name : Files.readAllLines(segmentsFile, StandardCharsets.UTF_8))
+                if (!name.isBlank())
+                    newIndexes.add(0, OpenAccessIndex.open(Paths.get(directory, name.trim())));
+            indexes = Collections.unmodifiableList(newIndexes);
+            log.info("loaded unpaywall snapshot with " + newIndexes.size() + " index files");
+        } catch (IOException e) {
+            log.warn("could not load unpaywall snapshot, keeping previous index", e);
+        }
+    }
+
+    /**
+     * imports a full snapshot of the data feed in the background and replaces all index files
+     *
+     * @param file the name of the snapshot file in the feed directory
+     * @return a future of the number of imported DOIs
+     */
+    public CompletableFuture<Long> importSnapshot(String file) {
+        Path feedFile = resolveFeedFile(file);
+        return CompletableFuture.supplyAsync(() -> importFeedFile(feedFile, "snapshot-", false), importExecutor);
+    }
+
+    /**
+     * imports a change file of the data feed in the background. The changes take precedence over the snapshot and
+     * all earlier change files.
+     *
+     * @param file the name of the change file in the feed directory
+     * @return a future of the number of imported DOIs
+     */
+    public CompletableFuture<Long> importChanges(String file) {
+        Path feedFile = resolveFeedFile(file);
+        return CompletableFuture.supplyAsync(() -> importFeedFile(feedFile, "changes-", true), importExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+
+    private Path resolveFeedFile(String file) {
+        if (directory.isEmpty())
+            throw new IllegalStateException("no unpaywall snapshot directory configured");
+        Path feed = feedDirectory.isEmpty() ? Paths.get(directory, "feed") : Paths.get(feedDirectory);
+        Path feedFile = feed.resolve(file).normalize();
+        // only files from the feed directory may be imported
+        if (!feedFile.startsWith(feed.normalize()) || !Files.isRegularFile(feedFile))
+            throw new IllegalArgumentException("no data feed file " + file);
+        return feedFile;
+    }
+
+    private long importFeedFile(Path feedFile, String prefix, boolean append) {
+        Path indexFile = Paths.get(directory, prefix + System.currentTimeMillis() + INDEX_SUFFIX);
+        log.info("importing unpaywall data feed " + feedFile + " into " + indexFile);
+        try {
+            long size;
+            try (OpenAccessIndexWriter writer = new OpenAccessIndexWriter(indexFile);
+                 InputStream input = open(feedFile)) {
+                readFeed(input, writer);
+                size = writer.finish();
+            }
+            List<String> names = new ArrayList<>();
+            Path segmentsFile = Paths.get(directory, SEGMENTS_FILE);
+            List<String> previousNames = Files.exists(segmentsFile) ? Files.readAllLines(segmentsFile, StandardCharsets.UTF_8) : List.of();
+            if (append)
+                names.addAll(previousNames);
+            names.add(indexFile.getFileName().toString());
+            Path temporarySegmentsFile = Paths.get(directory, SEGMENTS_FILE + ".tmp");
+            Files.write(temporarySegmentsFile, names, StandardCharsets.UTF_8);
+            Files.move(temporarySegmentsFile, segmentsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            load();
+            if (!append)
+                // the old files stay readable through the existing mappings until they are garbage collected
+                for (String name : previousNames)
+                    if (!name.isBlank())
+                        Files.deleteIfExists(Paths.get(directory, name.trim()));
+            log.info("imported " + size + " DOIs from unpaywall data feed " + feedFile);
+            return size;
+        } catch (IOException e) {
+            log.warn("could not import unpaywall data feed " + feedFile, e);
+            try {
+                Files.deleteIfExists(indexFile);
+            } catch (IOException ioe) {
+                log.debug("could not delete incomplete index " + indexFile);
+            }
+            throw new IllegalStateException("could not import unpaywall data feed " + feedFile, e);
+        }
+    }
+
+    private static InputStream open(Path feedFile) throws IOException {
+        InputStream input = new BufferedInputStream(Files.newInputStream(feedFile), 1 << 16);
+        if (feedFile.getFileName().toString().endsWith(".gz"))
+            return new GZIPInputStream(input, 1 << 16);
+        return input;
+    }
+
+    /**
+     * reads the DOI and the url of the best open access location from each record of the data feed. All other fields
+     * are skipped without being parsed into objects.
+     */
+    static void readFeed(InputStream input, OpenAccessIndexWriter writer) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String doi = null;
+                String url = null;
+                boolean openAccess = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("doi".equals(field) && value == JsonToken.VALUE_STRING)
+                        doi = parser.getText();
+                    else if ("is_oa".equals(field))
+                        openAccess = value == JsonToken.VALUE_TRUE;
+                    else if ("best_oa_location".equals(field) && value == JsonToken.START_OBJECT)
+                        url = readLocationUrl(parser);
+                    else
+                        parser.skipChildren();
+                }
+                if (doi != null && !writer.add(doi, openAccess ? url : null))
+                    log.debug("skipping oversized record for " + doi);
+            }
+        }
+    }
+
+    private static String readLocationUrl(JsonParser parser) throws IOException {
+        String url = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("url".equals(field) && value == JsonToken.VALUE_STRING)
+                url = parser.getText();
+            else
+                parser.skipChildren();
+        }
+        return url;
+    }
+}
@@ -0,0 +1,82 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Semaphore handing out its permits as futures instead of blocking the calling thread. If no permit is available, the
+ * caller gets a future which is completed by the next release, or fails with a
+ * {@link java.util.concurrent.TimeoutException} after the given time. Waiting callers are served in order.
+ */
+public class AsyncSemaphore {
+
+    private final static CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+    private final AtomicInteger available;
+
+    private final Queue<CompletableFuture<Void>> waiting = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param permits the number of permits
+     */
+    public AsyncSemaphore(int permits) {
+        this.available = new AtomicInteger(permits);
+    }
+
+    /**
+     * acquires a permit, which has to be given back by {@link #release()} once the future has completed normally
+     *
+     * @param timeout the maximum time to wait for a permit
+     * @return the future completed as soon as the permit is acquired
+     */
+    public CompletableFuture<Void> acquire(Duration timeout) {
+        if (waiting.isEmpty() && tryTake())
+            return ACQUIRED;
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiting.add(waiter);
+        // a permit may have been released before the waiter was added
+        handOver();
+        return waiter.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * gives back a permit, handing it over to the longest waiting caller if there is one
+     */
+    public void release() {
+        available.incrementAndGet();
+        handOver();
+    }
+
+    /**
+     * @return the number of permits currently available
+     */
+    public int availablePermits() {
+        return Math.max(available.get(), 0);
+    }
+
+    private void handOver() {
+        while (!waiting.isEmpty() && tryTake()) {
+            CompletableFuture<Void> waiter = waiting.poll();
+            // the waiter is gone or has timed out in the meantime, the permit is given back
+            if (waiter == null || !waiter.complete(null)) {
+                available.incrementAndGet();
+                if (waiter == null)
+                    return;
+            }
+        }
+    }
+
+    private boolean tryTake() {
+        int permits;
+        do {
+            permits = available.get();
+            if (permits <= 0)
+                return false;
+        } while (!available.compareAndSet(permits, permits - 1));
+        return true;
+    }
+}
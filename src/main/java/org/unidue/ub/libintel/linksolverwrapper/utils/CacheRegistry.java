@@ -0,0 +1,65 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.model.CacheStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * keeps track of all caches of the application, so that their statistics can be exposed in one place
+ */
+@Component
+public class CacheRegistry {
+
+    private final Map<String, ExpiringCache<?, ?>> caches = new ConcurrentSkipListMap<>();
+
+    /**
+     * creates a new cache and registers it under its name
+     *
+     * @param name        the name of the cache
+     * @param maximumSize the maximum number of entries
+     * @param <K>         the type of the keys
+     * @param <V>         the type of the values
+     * @return the new cache
+     */
+    public <K, V> ExpiringCache<K, V> createCache(String name, int maximumSize) {
+        ExpiringCache<K, V> cache = new ExpiringCache<>(name, maximumSize);
+        caches.put(name, cache);
+        return cache;
+    }
+
+    /**
+     * @param name the name of the cache
+     * @return the cache registered under this name, or null if none is present
+     */
+    public ExpiringCache<?, ?> getCache(String name) {
+        return caches.get(name);
+    }
+
+    /**
+     * removes all entries of the cache registered under the given name
+     *
+     * @param name the name of the cache
+     * @return false if no cache is registered under this name
+     */
+    public boolean invalidateAll(String name) {
+        ExpiringCache<?, ?> cache = caches.get(name);
+        if (cache == null)
+            return false;
+        cache.invalidateAll();
+        return true;
+    }
+
+    /**
+     * @return the statistics of all registered caches, ordered by name
+     */
+    public List<CacheStatistics> getStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (ExpiringCache<?, ?> cache : caches.values())
+            statistics.add(cache.getStatistics());
+        return statistics;
+    }
+}
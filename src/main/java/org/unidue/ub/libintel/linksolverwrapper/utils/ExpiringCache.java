@@ -0,0 +1,230 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import org.unidue.ub.libintel.linksolverwrapper.model.CacheStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded in-memory cache with a time to live for each entry. When the maximum size is reached, the least
+ * recently used entry is evicted. Entries may be given an additional stale period, during which they are still
+ * returned but marked for refreshing. Hits, misses and evictions are counted to allow for tuning of size and TTL.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class ExpiringCache<K, V> {
+
+    private final String name;
+
+    private final int maximumSize;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param name        the name of the cache, used for the statistics
+     * @param maximumSize the maximum number of entries held in the cache
+     */
+    public ExpiringCache(String name, int maximumSize) {
+        this.name = name;
+        this.maximumSize = maximumSize;
+        // access order turns the map into a LRU structure
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * returns the cached value for the given key
+     *
+     * @param key the key
+     * @return the cached value, or null if no entry is present or the entry is expired
+     */
+    public V get(K key) {
+        Entry<V> entry = getEntry(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * returns the cache entry for the given key
+     *
+     * @param key the key
+     * @return the cache entry, or null if no entry is present or the entry is expired
+     */
+    public synchronized Entry<V> getEntry(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null)
+            misses.increment();
+        else
+            hits.increment();
+        return entry;
+    }
+
+    /**
+     * stores the value for the given key
+     *
+     * @param key        the key
+     * @param value      the value
+     * @param ttlSeconds the time to live in seconds
+     */
+    public void put(K key, V value, long ttlSeconds) {
+        putUntil(key, value, System.currentTimeMillis() + ttlSeconds * 1000);
+    }
+
+    /**
+     * stores the value for the given key. After the time to live the entry turns stale, but is still returned until
+     * the stale period is over as well.
+     *
+     * @param key          the key
+     * @param value        the value
+     * @param ttlSeconds   the time to live in seconds
+     * @param staleSeconds the period in seconds the entry is kept after the time to live is over
+     */
+    public synchronized void put(K key, V value, long ttlSeconds, long staleSeconds) {
+        long refreshAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        entries.put(key, new Entry<>(value, refreshAt, refreshAt + staleSeconds * 1000));
+    }
+
+    /**
+     * stores the value for the given key until the given point in time
+     *
+     * @param key       the key
+     * @param value     the value
+     * @param expiresAt the expiry time in milliseconds since the epoch
+     */
+    public synchronized void putUntil(K key, V value, long expiresAt) {
+        entries.put(key, new Entry<>(value, expiresAt, expiresAt));
+    }
+
+    /**
+     * removes the entry for the given key
+     *
+     * @param key the key
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * removes all entries whose value matches the predicate
+     *
+     * @param predicate the condition for the values to remove
+     */
+    public synchronized void invalidateIf(Predicate<V> predicate) {
+        entries.values().removeIf(entry -> predicate.test(entry.getValue()));
+    }
+
+    /**
+     * removes all entries whose key matches the predicate
+     *
+     * @param predicate the condition for the keys to remove
+     */
+    public synchronized void invalidateKeysIf(Predicate<K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    /**
+     * removes all entries
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * iterates over a copy of all entries which are not yet expired, e.g. for persisting the cache
+     *
+     * @param consumer the consumer receiving keys and entries
+     */
+    public void forEach(BiConsumer<K, Entry<V>> consumer) {
+        Map<K, Entry<V>> copy;
+        synchronized (this) {
+            copy = new LinkedHashMap<>(entries);
+        }
+        long now = System.currentTimeMillis();
+        copy.forEach((key, entry) -> {
+            if (!entry.isExpired(now))
+                consumer.accept(key, entry);
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the current hit, miss and eviction counts of the cache
+     */
+    public CacheStatistics getStatistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setName(name);
+        statistics.setSize(size());
+        statistics.setMaximumSize(maximumSize);
+        statistics.setHits(hits.sum());
+        statistics.setMisses(misses.sum());
+        statistics.setEvictions(evictions.sum());
+        return statistics;
+    }
+
+    /**
+     * a cached value together with its refresh and expiry time
+     *
+     * @param <V> the type of the cached value
+     */
+    public static class Entry<V> {
+
+        private final V value;
+
+        private final long refreshAt;
+
+        private final long expiresAt;
+
+        Entry(V value, long refreshAt, long expiresAt) {
+            this.value = value;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * @return true, if the time to live is over and the value should be refreshed
+         */
+        public boolean isStale() {
+            return System.currentTimeMillis() >= refreshAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import org.unidue.ub.libintel.linksolverwrapper.model.IdentifierType;
+
+/**
+ * Recognizes and normalizes the identifiers given in OpenURL parameters (DOI, PMID, ISBN-10/13, ISSN and arXiv id).
+ * Identifiers may carry a prefix like 'doi:', 'info:doi/', 'pmid:', 'urn:ISBN:' or 'arxiv:'. Without a prefix, DOIs,
+ * ISBNs and hyphenated ISSNs are recognized by their shape and check digit. The recognition is a single pass over the
+ * characters without any allocation, only the normalization creates the normalized string.
+ */
+public final class IdentifierRecognizer {
+
+    private final static Prefix[] PREFIXES = {
+            new Prefix("doi:", IdentifierType.DOI),
+            new Prefix("info:doi/", IdentifierType.DOI),
+            new Prefix("https://doi.org/", IdentifierType.DOI),
+            new Prefix("http://doi.org/", IdentifierType.DOI),
+            new Prefix("https://dx.doi.org/", IdentifierType.DOI),
+            new Prefix("http://dx.doi.org/", IdentifierType.DOI),
+            new Prefix("pmid:", IdentifierType.PMID),
+            new Prefix("info:pmid/", IdentifierType.PMID),
+            new Prefix("isbn:", IdentifierType.ISBN),
+            new Prefix("urn:isbn:", IdentifierType.ISBN),
+            new Prefix("issn:", IdentifierType.ISSN),
+            new Prefix("urn:issn:", IdentifierType.ISSN),
+            new Prefix("arxiv:", IdentifierType.ARXIV),
+            new Prefix("info:arxiv/", IdentifierType.ARXIV)
+    };
+
+    // the registrant of the old Wiley DOIs, which may contain any non-whitespace character in the suffix
+    private final static String WILEY_DOI_PREFIX = "10.1002/";
+
+    private IdentifierRecognizer() {
+    }
+
+    /**
+     * determines the type of the given identifier
+     *
+     * @param value an identifier, e.g. the value of an 'id' parameter
+     * @return the type of the identifier, UNKNOWN if it is none of the supported identifiers or invalid
+     */
+    public static IdentifierType recognize(String value) {
+        if (value == null)
+            return IdentifierType.UNKNOWN;
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        Prefix prefix = findPrefix(value, start);
+        if (prefix != null)
+            return isValid(prefix.type, value, start + prefix.text.length(), end) ? prefix.type : IdentifierType.UNKNOWN;
+        return recognizeByShape(value, start, end);
+    }
+
+    /**
+     * brings the given identifier into its normalized form: DOIs, PMIDs and arXiv ids without prefix, ISBNs as ISBN-13
+     * without hyphens and ISSNs with a hyphen in the middle and an upper case check digit.
+     *
+     * @param value an identifier, e.g. the value of an 'id' parameter
+     * @return the normalized identifier, or null if the identifier is not recognized
+     */
+    public static String normalize(String value) {
+        if (value == null)
+            return null;
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        Prefix prefix = findPrefix(value, start);
+        IdentifierType type;
+        if (prefix != null) {
+            start += prefix.text.length();
+            type = isValid(prefix.type, value, start, end) ? prefix.type : IdentifierType.UNKNOWN;
+        } else
+            type = recognizeByShape(value, start, end);
+        return normalize(type, value, start, end);
+    }
+
+    /**
+     * normalizes the value of an 'issn' or 'eissn' parameter
+     *
+     * @param value an ISSN with or without hyphen
+     * @return the ISSN with a hyphen in the middle, or null if the value is no valid ISSN
+     */
+    public static String normalizeIssn(String value) {
+        if (value == null)
+            return null;
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        return isIssn(value, start, end, false) ? formatIssn(value, start, end) : null;
+    }
+
+    /**
+     * normalizes the value of an 'isbn' or 'eisbn' parameter
+     *
+     * @param value an ISBN-10 or ISBN-13 with or without hyphens
+     * @return the ISBN-13 without hyphens, or null if the value is no valid ISBN
+     */
+    public static String normalizeIsbn(String value) {
+        if (value == null)
+            return null;
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        return isIsbn(value, start, end) ? formatIsbn13(value, start, end) : null;
+    }
+
+    private static IdentifierType recognizeByShape(String value, int start, int end) {
+        // the first characters decide which identifier is checked, so that the value is read only once
+        if (value.startsWith("10.", start))
+            return isDoi(value, start, end) ? IdentifierType.DOI : IdentifierType.UNKNOWN;
+        if (end - start == 9 && value.charAt(start + 4) == '-')
+            return isIssn(value, start, end, true) ? IdentifierType.ISSN : IdentifierType.UNKNOWN;
+        return isIsbn(value, start, end) ? IdentifierType.ISBN : IdentifierType.UNKNOWN;
+    }
+
+    private static boolean isValid(IdentifierType type, String value, int start, int end) {
+        switch (type) {
+            case DOI:
+                return isDoi(value, start, end);
+            case PMID:
+                return isPmid(value, start, end);
+            case ISBN:
+                return isIsbn(value, start, end);
+            case ISSN:
+                return isIssn(value, start, end, false);
+            case ARXIV:
+                return isArxiv(value, start, end);
+            default:
+                return false;
+        }
+    }
+
+    private static String normalize(IdentifierType type, String value, int start, int end) {
+        switch (type) {
+            case DOI:
+            case PMID:
+            case ARXIV:
+                return value.substring(start, end);
+            case ISBN:
+                return formatIsbn13(value, start, end);
+            case ISSN:
+                return formatIssn(value, start, end);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * '10.' followed by the registrant code of 4 to 9 digits (optionally subdivided by dots), '/' and the suffix
+     */
+    private static boolean isDoi(String value, int start, int end) {
+        if (!value.startsWith("10.", start))
+            return false;
+        boolean wiley = value.startsWith(WILEY_DOI_PREFIX, start);
+        int i = start + 3;
+        int digits = 0;
+        while (i < end && isDigit(value.charAt(i))) {
+            digits++;
+            i++;
+        }
+        if (digits < 4 || digits > 9)
+            return false;
+        // subdivisions of the registrant code, e.g. '10.1000.10/'
+        while (i < end && value.charAt(i) == '.') {
+            i++;
+            int subdivisionStart = i;
+            while (i < end && isDigit(value.charAt(i)))
+                i++;
+            if (i == subdivisionStart)
+                return false;
+        }
+        if (i >= end || value.charAt(i) != '/')
+            return false;
+        i++;
+        if (i == end)
+            return false;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (wiley ? Character.isWhitespace(c) : !isDoiSuffixCharacter(c))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isDoiSuffixCharacter(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == '-' || c == '.' || c == '_' || c == ';' || c == '(' || c == ')' || c == '/' || c == ':';
+    }
+
+    private static boolean isPmid(String value, int start, int end) {
+        if (end - start < 1 || end - start > 9)
+            return false;
+        for (int i = start; i < end; i++)
+            if (!isDigit(value.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * ISBN-10 (mod 11 check digit, may be 'X') or ISBN-13 with prefix 978 or 979 (mod 10 check digit). Hyphens and
+     * blanks between the digits are ignored. Both check digits are computed while reading the characters.
+     */
+    private static boolean isIsbn(String value, int start, int end) {
+        int digits = 0;
+        int sum10 = 0;
+        int sum13 = 0;
+        int prefix = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '-' || c == ' ') {
+                if (i == start || i == end - 1)
+                    return false;
+                continue;
+            }
+            int digit;
+            if (isDigit(c))
+                digit = c - '0';
+            else if ((c == 'X' || c == 'x') && digits == 9 && i == end - 1)
+                digit = 10;
+            else
+                return false;
+            if (digits >= 13)
+                return false;
+            if (digits < 10)
+                sum10 += (10 - digits) * digit;
+            sum13 += digits % 2 == 0 ? digit : 3 * digit;
+            if (digits < 3)
+                prefix = prefix * 10 + digit;
+            digits++;
+        }
+        if (digits == 10)
+            return sum10 % 11 == 0;
+        return digits == 13 && (prefix == 978 || prefix == 979) && sum13 % 10 == 0;
+    }
+
+    /**
+     * eight characters with a mod 11 check digit (may be 'X'), optionally with a hyphen after the fourth one
+     */
+    private static boolean isIssn(String value, int start, int end, boolean hyphenRequired) {
+        int length = end - start;
+        boolean hyphen = length == 9 && value.charAt(start + 4) == '-';
+        if (!(length == 8 && !hyphenRequired) && !hyphen)
+            return false;
+        int position = 0;
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            if (hyphen && i == start + 4)
+                continue;
+            char c = value.charAt(i);
+            int digit;
+            if (isDigit(c))
+                digit = c - '0';
+            else if ((c == 'X' || c == 'x') && position == 7)
+                digit = 10;
+            else
+                return false;
+            sum += (8 - position) * digit;
+            position++;
+        }
+        return sum % 11 == 0;
+    }
+
+    /**
+     * new style ids like '1501.00001v2' or old style ids like 'hep-th/9901001' or 'math.GT/0309136'
+     */
+    private static boolean isArxiv(String value, int start, int end) {
+        int i = start;
+        int digits = 0;
+        while (i < end && isDigit(value.charAt(i))) {
+            digits++;
+            i++;
+        }
+        if (digits == 4 && i < end && value.charAt(i) == '.') {
+            i++;
+            int number = 0;
+            while (i < end && isDigit(value.charAt(i))) {
+                number++;
+                i++;
+            }
+            return (number == 4 || number == 5) && isArxivVersion(value, i, end);
+        }
+        if (digits > 0)
+            return false;
+        // the archive, e.g. 'hep-th' or 'math', with an optional subject class like '.GT'
+        while (i < end && ((value.charAt(i) >= 'a' && value.charAt(i) <= 'z') || value.charAt(i) == '-'))
+            i++;
+        if (i == start)
+            return false;
+        if (i < end && value.charAt(i) == '.') {
+            i++;
+            for (int k = 0; k < 2; k++, i++)
+                if (i >= end || value.charAt(i) < 'A' || value.charAt(i) > 'Z')
+                    return false;
+        }
+        if (i >= end || value.charAt(i) != '/')
+            return false;
+        i++;
+        int number = 0;
+        while (i < end && isDigit(value.charAt(i))) {
+            number++;
+            i++;
+        }
+        return number == 7 && isArxivVersion(value, i, end);
+    }
+
+    private static boolean isArxivVersion(String value, int start, int end) {
+        if (start == end)
+            return true;
+        if (value.charAt(start) != 'v' || start + 1 == end)
+            return false;
+        for (int i = start + 1; i < end; i++)
+            if (!isDigit(value.charAt(i)))
+                return false;
+        return true;
+    }
+
+    private static String formatIssn(String value, int start, int end) {
+        StringBuilder issn = new StringBuilder(9);
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '-')
+                continue;
+            if (issn.length() == 4)
+                issn.append('-');
+            issn.append(Character.toUpperCase(c));
+        }
+        return issn.toString();
+    }
+
+    /**
+     * removes hyphens and blanks and converts ISBN-10 into ISBN-13 by adding the prefix 978 and recomputing the check
+     * digit
+     */
+    private static String formatIsbn13(String value, int start, int end) {
+        StringBuilder isbn = new StringBuilder(13);
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c != '-' && c != ' ')
+                isbn.append(c);
+        }
+        if (isbn.length() == 13)
+            return isbn.toString();
+        isbn.setLength(9);
+        isbn.insert(0, "978");
+        int sum = 0;
+        for (int i = 0; i < 12; i++)
+            sum += (isbn.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        isbn.append((10 - sum % 10) % 10);
+        return isbn.toString();
+    }
+
+    private static Prefix findPrefix(String value, int start) {
+        for (Prefix prefix : PREFIXES)
+            if (value.regionMatches(true, start, prefix.text, 0, prefix.text.length()))
+                return prefix;
+        return null;
+    }
+
+    private static int trimStart(String value) {
+        int start = 0;
+        while (start < value.length() && Character.isWhitespace(value.charAt(start)))
+            start++;
+        return start;
+    }
+
+    private static int trimEnd(String value, int start) {
+        int end = value.length();
+        while (end > start && Character.isWhitespace(value.charAt(end - 1)))
+            end--;
+        return end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * a prefix marking the type of an identifier
+     */
+    private static class Prefix {
+
+        private final String text;
+
+        private final IdentifierType type;
+
+        Prefix(String text, IdentifierType type) {
+            this.text = text;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLink;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLinkType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming parser for the html response of the linksolver. Instead of building a DOM of the whole page, the anchors
+ * are read one after another while the page arrives, and parsing stops at the first anchor which decides the
+ * resolution (e.g. 'Link zum Artikel' or 'Fernleihe'). Comments, scripts and styles are skipped. The link text is
+ * whitespace normalized like the text of a DOM element.
+ */
+public class LinksolverResponseParser {
+
+    private final static int EOF = -1;
+
+    private final Reader reader;
+
+    // one character of look ahead
+    private int next;
+
+    private final StringBuilder tagName = new StringBuilder(16);
+
+    private final StringBuilder attributeName = new StringBuilder(16);
+
+    private final StringBuilder attributeValue = new StringBuilder(128);
+
+    private final StringBuilder text = new StringBuilder(64);
+
+    private final StringBuilder entity = new StringBuilder(8);
+
+    private String href;
+
+    private LinksolverResponseParser(Reader reader) throws IOException {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        this.next = this.reader.read();
+    }
+
+    /**
+     * reads the linksolver response up to the first decisive link. The reader is not read any further, so the caller
+     * may close the connection right away.
+     *
+     * @param reader the linksolver response
+     * @return the first decisive link. If there is none, the last link of type OTHER, or null if the response contains
+     * no links at all.
+     * @throws IOException if the response cannot be read
+     */
+    public static LinksolverLink parse(Reader reader) throws IOException {
+        return new LinksolverResponseParser(reader).findDecisiveLink();
+    }
+
+    private LinksolverLink findDecisiveLink() throws IOException {
+        LinksolverLink lastLink = null;
+        while (next != EOF) {
+            if (read() != '<')
+                continue;
+            if (next == '!') {
+                skipDeclaration();
+            } else if (next == '/') {
+                skipTag();
+            } else if (isLetter(next)) {
+                readTag();
+                if ("a".contentEquals(tagName)) {
+                    LinksolverLink link = readAnchor();
+                    if (link.getType().isDecisive())
+                        return link;
+                    lastLink = link;
+                } else if ("script".contentEquals(tagName))
+                    skipUntilClosingTag("script");
+                else if ("style".contentEquals(tagName))
+                    skipUntilClosingTag("style");
+            }
+        }
+        return lastLink;
+    }
+
+    /**
+     * reads the text of an anchor up to the closing tag. Tags nested into the anchor are skipped.
+     */
+    private LinksolverLink readAnchor() throws IOException {
+        String anchorHref = href == null ? "" : href;
+        text.setLength(0);
+        boolean pendingSpace = false;
+        while (next != EOF) {
+            int c = read();
+            if (c == '<') {
+                if (next == '/') {
+                    read();
+                    readTagName();
+                    skipTag();
+                    if ("a".contentEquals(tagName))
+                        break;
+                } else if (next == '!') {
+                    skipDeclaration();
+                } else if (isLetter(next)) {
+                    readTag();
+                    // a new anchor implicitly closes the current one
+                    if ("a".contentEquals(tagName)) {
+                        String linkText = text.toString();
+                        LinksolverLink link = new LinksolverLink(LinksolverLinkType.fromLinkText(linkText), linkText, anchorHref);
+                        if (link.getType().isDecisive())
+                            return link;
+                        anchorHref = href == null ? "" : href;
+                        text.setLength(0);
+                        pendingSpace = false;
+                    }
+                } else
+                    pendingSpace = appendText(c, pendingSpace);
+            } else if (c == '&') {
+                int decoded = readEntity();
+                if (decoded >= 0)
+                    pendingSpace = appendText(decoded, pendingSpace);
+                else
+                    for (int i = 0; i < entity.length(); i++)
+                        pendingSpace = appendText(entity.charAt(i), pendingSpace);
+            } else
+                pendingSpace = appendText(c, pendingSpace);
+        }
+        String linkText = text.toString();
+        return new LinksolverLink(LinksolverLinkType.fromLinkText(linkText), linkText, anchorHref);
+    }
+
+    /**
+     * appends a character to the link text, collapsing white space into single blanks
+     */
+    private boolean appendText(int c, boolean pendingSpace) {
+        if (isWhitespace(c))
+            return true;
+        if (pendingSpace && text.length() > 0)
+            text.append(' ');
+        text.appendCodePoint(c);
+        return false;
+    }
+
+    /**
+     * reads the tag name and the attributes up to the end of the tag. The href attribute is kept.
+     */
+    private void readTag() throws IOException {
+        readTagName();
+        href = null;
+        while (next != EOF && next != '>') {
+            if (isWhitespace(next) || next == '/') {
+                read();
+                continue;
+            }
+            attributeName.setLength(0);
+            while (next != EOF && next != '=' && next != '>' && !isWhitespace(next) && next != '/')
+                attributeName.append(Character.toLowerCase((char) read()));
+            while (isWhitespace(next))
+                read();
+            attributeValue.setLength(0);
+            if (next == '=') {
+                read();
+                while (isWhitespace(next))
+                    read();
+                if (next == '"' || next == '\'') {
+                    int quote = read();
+                    while (next != EOF && next != quote)
+                        appendAttributeCharacter();
+                    read();
+                } else {
+                    while (next != EOF && next != '>' && !isWhitespace(next))
+                        appendAttributeCharacter();
+                }
+            }
+            if ("href".contentEquals(attributeName))
+                href = attributeValue.toString();
+        }
+        read();
+    }
+
+    private void appendAttributeCharacter() throws IOException {
+        int c = read();
+        if (c != '&')
+            attributeValue.append((char) c);
+        else {
+            int decoded = readEntity();
+            if (decoded >= 0)
+                attributeValue.appendCodePoint(decoded);
+            else
+                attributeValue.append(entity);
+        }
+    }
+
+    private void readTagName() throws IOException {
+        tagName.setLength(0);
+        while (isLetter(next) || (next >= '0' && next <= '9'))
+            tagName.append(Character.toLowerCase((char) read()));
+    }
+
+    /**
+     * reads and decodes an entity or numeric character reference after '&'. A missing ';' is only accepted for
+     * '&amp'.
+     *
+     * @return the decoded code point, or -1 if the reference is unknown or no valid code point. In this case the raw
+     * reference is left in the entity buffer and taken over as text.
+     */
+    private int readEntity() throws IOException {
+        entity.setLength(0);
+        entity.append('&');
+        while (entity.length() < 10 && (isLetter(next) || next == '#' || (next >= '0' && next <= '9')))
+            entity.append((char) read());
+        if (next != ';')
+            return "&amp".contentEquals(entity) ? '&' : -1;
+        read();
+        int decoded = decodeEntity();
+        if (decoded < 0)
+            entity.append(';');
+        return decoded;
+    }
+
+    private int decodeEntity() {
+        if (entity.length() > 2 && entity.charAt(1) == '#') {
+            int value;
+            try {
+                if (entity.charAt(2) == 'x' || entity.charAt(2) == 'X')
+                    value = Integer.parseInt(entity, 3, entity.length(), 16);
+                else
+                    value = Integer.parseInt(entity, 2, entity.length(), 10);
+            } catch (NumberFormatException nfe) {
+                return -1;
+            }
+            // e.g. '&#xFFFFFFF;' is beyond the range of Unicode
+            return Character.isValidCodePoint(value) ? value : -1;
+        }
+        switch (entity.substring(1)) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return ' ';
+            case "auml":
+                return '\u00e4';
+            case "ouml":
+                return '\u00f6';
+            case "uuml":
+                return '\u00fc';
+            case "szlig":
+                return '\u00df';
+            default:
+                return -1;
+        }
+    }
+
+    private void skipDeclaration() throws IOException {
+        read();
+        if (next == '-') {
+            read();
+            if (next == '-') {
+                read();
+                // comment: skip until '-->'
+                int dashes = 0;
+                while (next != EOF) {
+                    int c = read();
+                    if (c == '>' && dashes >= 2)
+                        return;
+                    dashes = c == '-' ? dashes + 1 : 0;
+                }
+                return;
+            }
+        }
+        skipTag();
+    }
+
+    private void skipTag() throws IOException {
+        while (next != EOF && read() != '>') {
+            // skip
+        }
+    }
+
+    private void skipUntilClosingTag(String name) throws IOException {
+        while (next != EOF) {
+            if (read() == '<' && next == '/') {
+                read();
+                readTagName();
+                skipTag();
+                if (name.contentEquals(tagName))
+                    return;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        int c = next;
+        if (c != EOF)
+            next = reader.read();
+        return c;
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
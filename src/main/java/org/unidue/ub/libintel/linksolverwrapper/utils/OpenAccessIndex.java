@@ -0,0 +1,188 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped index of the open access urls by DOI, written by the {@link OpenAccessIndexWriter}.
+ * <p>
+ * The file consists of a header, the sorted 64 bit hashes of the DOIs, the positions of the corresponding records and
+ * the records themselves (DOI and url). A lookup is a binary search on the hashes, followed by a comparison of the DOI
+ * in the record, so that hash collisions do not lead to wrong urls. The pages are loaded by the operating system on
+ * demand, so that the index does not occupy heap space.
+ */
+public class OpenAccessIndex {
+
+    final static int MAGIC = 0x4f41_4958;
+
+    final static int VERSION = 1;
+
+    // magic, version, number of entries
+    final static int HEADER_SIZE = 16;
+
+    private final static long SEGMENT_SIZE = 1L << 30;
+
+    private final Path path;
+
+    private final long size;
+
+    private final Region hashes;
+
+    private final Region positions;
+
+    private final Region records;
+
+    private OpenAccessIndex(Path path, long size, Region hashes, Region positions, Region records) {
+        this.path = path;
+        this.size = size;
+        this.hashes = hashes;
+        this.positions = positions;
+        this.records = records;
+    }
+
+    /**
+     * maps the index file into memory
+     *
+     * @param path the index file
+     * @return the index
+     * @throws IOException if the file cannot be read or is no open access index
+     */
+    public static OpenAccessIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("incomplete header in " + path);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(path + " is no open access index");
+            long size = header.getLong();
+            long recordsStart = HEADER_SIZE + 16 * size;
+            if (recordsStart > channel.size())
+                throw new IOException("truncated open access index " + path);
+            // the mappings stay valid after the channel is closed
+            return new OpenAccessIndex(path, size,
+                    Region.map(channel, HEADER_SIZE, 8 * size),
+                    Region.map(channel, HEADER_SIZE + 8 * size, 8 * size),
+                    Region.map(channel, recordsStart, channel.size() - recordsStart));
+        }
+    }
+
+    /**
+     * looks up the open access url for the given DOI
+     *
+     * @param doi the DOI, in any case
+     * @return the open access url, an empty string if the DOI is listed without open access url, or null if the DOI
+     * is not contained in the index
+     */
+    public String find(String doi) {
+        byte[] key = doi.toLowerCase().getBytes(StandardCharsets.UTF_8);
+        long hash = hash(key);
+        // binary search for the first entry with the hash
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (hashes.getLong(middle * 8) < hash)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        // entries with the same hash are ordered from the latest to the earliest written record
+        for (long i = low; i < size && hashes.getLong(i * 8) == hash; i++) {
+            long position = positions.getLong(i * 8);
+            int doiLength = records.getUnsignedShort(position);
+            if (doiLength == key.length && records.equals(position + 2, key)) {
+                position += 2 + doiLength;
+                int urlLength = records.getUnsignedShort(position);
+                return new String(records.getBytes(position + 2, urlLength), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of DOIs in the index
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the index file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * calculates the 64 bit hash of the lower case DOI (FNV-1a, mixed by the MurmurHash3 finalizer to spread the high
+     * bits used for partitioning)
+     */
+    static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * part of the index file, mapped in segments of 1 GB to overcome the size limit of a single mapping
+     */
+    private static class Region {
+
+        private final MappedByteBuffer[] segments;
+
+        private Region(MappedByteBuffer[] segments) {
+            this.segments = segments;
+        }
+
+        static Region map(FileChannel channel, long start, long length) throws IOException {
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start + offset, Math.min(SEGMENT_SIZE, length - offset));
+            }
+            return new Region(segments);
+        }
+
+        // longs are aligned to 8 bytes relative to the region and never cross a segment boundary
+        long getLong(long position) {
+            return segments[(int) (position / SEGMENT_SIZE)].getLong((int) (position % SEGMENT_SIZE));
+        }
+
+        byte get(long position) {
+            return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+        }
+
+        int getUnsignedShort(long position) {
+            return (get(position) & 0xff) << 8 | get(position + 1) & 0xff;
+        }
+
+        boolean equals(long position, byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++)
+                if (get(position + i) != bytes[i])
+                    return false;
+            return true;
+        }
+
+        byte[] getBytes(long position, int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = get(position + i);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes an {@link OpenAccessIndex} from a stream of DOIs and urls in a single pass. The records are appended to a
+ * temporary file, while the hashes and record positions are partitioned by their highest bits into temporary bucket
+ * files. On {@link #finish()}, the buckets are sorted one by one in memory, so that even a full Unpaywall snapshot can
+ * be indexed with a small heap.
+ * <p>
+ * If a DOI is added several times, the last url wins.
+ */
+public class OpenAccessIndexWriter implements Closeable {
+
+    // 64 buckets by the 6 highest bits of the hash
+    private final static int BUCKET_BITS = 6;
+
+    private final static int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+
+    private final Path recordsFile;
+
+    private final Path positionsFile;
+
+    private final DataOutputStream records;
+
+    private final Path[] bucketFiles = new Path[1 << BUCKET_BITS];
+
+    private final DataOutputStream[] buckets = new DataOutputStream[1 << BUCKET_BITS];
+
+    private final int[] bucketSizes = new int[1 << BUCKET_BITS];
+
+    private long position = 0;
+
+    private long size = 0;
+
+    /**
+     * @param path the index file to write. The temporary files are created in the same directory.
+     * @throws IOException if the temporary files cannot be created
+     */
+    public OpenAccessIndexWriter(Path path) throws IOException {
+        this.path = path;
+        Path directory = path.toAbsolutePath().getParent();
+        this.recordsFile = Files.createTempFile(directory, "records-", ".tmp");
+        this.records = open(recordsFile);
+        this.positionsFile = Files.createTempFile(directory, "positions-", ".tmp");
+        for (int i = 0; i < buckets.length; i++) {
+            bucketFiles[i] = Files.createTempFile(directory, "bucket-", ".tmp");
+            buckets[i] = open(bucketFiles[i]);
+        }
+    }
+
+    /**
+     * adds a DOI to the index
+     *
+     * @param doi the DOI, in any case
+     * @param url the open access url, or null if the DOI has no open access url
+     * @return false if the DOI or the url is too long to be indexed
+     * @throws IOException if the temporary files cannot be written
+     */
+    public boolean add(String doi, String url) throws IOException {
+        byte[] key = doi.toLowerCase().getBytes(StandardCharsets.UTF_8);
+        byte[] value = url == null ? new byte[0] : url.getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xffff || value.length > 0xffff)
+            return false;
+        long hash = OpenAccessIndex.hash(key);
+        // the bucket number follows the signed order of the hashes
+        int bucket = (int) ((hash ^ Long.MIN_VALUE) >>> (64 - BUCKET_BITS));
+        buckets[bucket].writeLong(hash);
+        buckets[bucket].writeLong(position);
+        bucketSizes[bucket]++;
+        records.writeShort(key.length);
+        records.write(key);
+        records.writeShort(value.length);
+        records.write(value);
+        position += 4 + key.length + value.length;
+        size++;
+        return true;
+    }
+
+    /**
+     * writes the index file
+     *
+     * @return the number of entries in the index
+     * @throws IOException if the index cannot be written
+     */
+    public long finish() throws IOException {
+        records.close();
+        for (DataOutputStream bucket : buckets)
+            bucket.close();
+        try (DataOutputStream index = open(path)) {
+            index.writeInt(OpenAccessIndex.MAGIC);
+            index.writeInt(OpenAccessIndex.VERSION);
+            index.writeLong(size);
+            // the sorted hashes go to the index, the positions in the same order to the positions file
+            try (DataOutputStream positions = open(positionsFile)) {
+                for (int i = 0; i < buckets.length; i++)
+                    sortBucket(i, index, positions);
+            }
+            append(positionsFile, index);
+            append(recordsFile, index);
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+        for (DataOutputStream bucket : buckets)
+            bucket.close();
+        Files.deleteIfExists(recordsFile);
+        Files.deleteIfExists(positionsFile);
+        for (Path bucketFile : bucketFiles)
+            Files.deleteIfExists(bucketFile);
+    }
+
+    private void sortBucket(int bucket, DataOutputStream index, DataOutputStream positionsOutput) throws IOException {
+        long[] hashes = new long[bucketSizes[bucket]];
+        long[] positions = new long[bucketSizes[bucket]];
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(bucketFiles[bucket]), BUFFER_SIZE))) {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = input.readLong();
+                positions[i] = input.readLong();
+            }
+        }
+        // the bucket is no longer needed
+        Files.delete(bucketFiles[bucket]);
+        sort(hashes, positions, 0, hashes.length - 1);
+        for (int i = 0; i < hashes.length; i++) {
+            index.writeLong(hashes[i]);
+            positionsOutput.writeLong(positions[i]);
+        }
+    }
+
+    private static void append(Path file, OutputStream output) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            input.transferTo(output);
+        }
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        OutputStream output = Files.newOutputStream(file);
+        return new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+    }
+
+    /**
+     * sorts the entries by hash ascending and, for equal hashes, by position descending, so that the latest record of a
+     * DOI is found first
+     */
+    private static void sort(long[] hashes, long[] positions, int low, int high) {
+        while (high - low > 16) {
+            int middle = (low + high) >>> 1;
+            long pivotHash = hashes[middle];
+            long pivotPosition = positions[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(hashes[i], positions[i], pivotHash, pivotPosition) < 0)
+                    i++;
+                while (compare(hashes[j], positions[j], pivotHash, pivotPosition) > 0)
+                    j--;
+                if (i <= j)
+                    swap(hashes, positions, i++, j--);
+            }
+            // recurse into the smaller part to limit the stack depth
+            if (j - low < high - i) {
+                sort(hashes, positions, low, j);
+                low = i;
+            } else {
+                sort(hashes, positions, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++)
+            for (int j = i; j > low && compare(hashes[j - 1], positions[j - 1], hashes[j], positions[j]) > 0; j--)
+                swap(hashes, positions, j - 1, j);
+    }
+
+    private static int compare(long hash, long position, long otherHash, long otherPosition) {
+        int comparison = Long.compare(hash, otherHash);
+        return comparison != 0 ? comparison : Long.compare(otherPosition, position);
+    }
+
+    private static void swap(long[] hashes, long[] positions, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        long position = positions[i];
+        positions[i] = positions[j];
+        positions[j] = position;
+    }
+}
@@ -1,48 +1,156 @@
 package org.unidue.ub.libintel.linksolverwrapper.utils;
 
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.service.PublisherRoutingTable;
+import org.unidue.ub.libintel.linksolverwrapper.service.ShibbolethDataIndex;
 
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the redirects of resolver links (doi.org, the linksolver) to the resource, e.g. doi.org to
+ * linkinghub.elsevier.com to sciencedirect.com, so that the WAYFless URL can be built for the host of the resource.
+ * Each hop is requested with HEAD (or GET, if the server refuses HEAD requests) without reading a body. The number of
+ * hops and the total time are limited. The target of each hop is cached on its own, so that hops shared by many
+ * links, like linkinghub.elsevier.com, are requested only once. The chain ends at hosts with Shibboleth data, as the
+ * WAYFless URL can be built for them.
+ */
+@Component
 public class RedirectLinkRetriever {
 
+    private final static String DOI_RESOLVER_URL = "https://doi.org/";
+
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    private final PublisherRoutingTable publisherRoutingTable;
+
+    private final ShibbolethDataIndex shibbolethDataIndex;
+
+    // the target of each requested url. urls not redirecting map to themselves.
+    private final ExpiringCache<String, String> hopCache;
+
+    // maximum number of redirects followed
+    @Value("${libintel.redirect.max-hops:5}")
+    private int maxHops;
+
+    // time in milliseconds after which no further hop is requested
+    @Value("${libintel.redirect.max-time:5000}")
+    private long maxTime;
+
+    // time to live of a hop in seconds
+    @Value("${libintel.cache.redirect.ttl:86400}")
+    private long ttl;
+
+    private final static Logger log = LoggerFactory.getLogger(RedirectLinkRetriever.class);
+
+    @Autowired
+    public RedirectLinkRetriever(UpstreamHttpClient upstreamHttpClient,
+                                 PublisherRoutingTable publisherRoutingTable,
+                                 ShibbolethDataIndex shibbolethDataIndex,
+                                 CacheRegistry cacheRegistry,
+                                 @Value("${libintel.cache.redirect.size:10000}") int cacheSize) {
+        this.upstreamHttpClient = upstreamHttpClient;
+        this.publisherRoutingTable = publisherRoutingTable;
+        this.shibbolethDataIndex = shibbolethDataIndex;
+        this.hopCache = cacheRegistry.createCache("redirect", cacheSize);
+    }
+
     /**
-     * takes a DOI and tries to get the corresponding resource link by reading the location header from the redirect.
+     * takes a DOI and tries to get the corresponding resource link by following the redirects.
      * @param doi a DOI
      * @return the link to the resource as string
      */
-    public static String getLinkForDoi(String doi) {
-            String url = "https://doi.org/" + doi;
-            return getLinkFromRedirect(url);
+    public String getLinkForDoi(String doi) {
+            String url = DOI_RESOLVER_URL + doi;
+            return getLinkFromRedirect(Upstream.DOI, url);
     }
 
     /**
-     * takes a Link and tries to get the corresponding resource link by reading the location header from the redirect.
+     * takes a Link and tries to get the corresponding resource link by following the redirects.
+     * @param upstream the service the link points to
      * @param link a a link to a resolver
      * @return the link to the resource as string
      */
-    public static String getLinkFromRedirect(String link) {
-        try {
-            URL url = new URL(link);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-            // do not follow the redirect, just obtain the resource url
-            connection.setInstanceFollowRedirects(false);
-            int responseCode = connection.getResponseCode();
-
-            //check whether it is a redirect and return the location
-            if (responseCode == HttpURLConnection.HTTP_SEE_OTHER
-                    || responseCode == HttpURLConnection.HTTP_MOVED_PERM
-                    || responseCode == HttpURLConnection.HTTP_MOVED_TEMP) {
-                return connection.getHeaderField("Location");
-            } else {
-                // return the link to doi.org
-                return link;
+    public String getLinkFromRedirect(Upstream upstream, String link) {
+        String location = getRedirectLocation(upstream, link);
+        // if no redirect could be obtained, return the original link and let them handle problems.
+        return location == null ? link : location;
+    }
+
+    /**
+     * takes a Link and follows the redirects up to the resource. The publisher hosts of DOIs are passed to the
+     * {@link PublisherRoutingTable}.
+     * @param upstream the service the link points to
+     * @param link a a link to a resolver
+     * @return the link to the resource as string, or null if the link could not be resolved or does not redirect
+     */
+    public String getRedirectLocation(Upstream upstream, String link) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxTime);
+        Set<String> visited = new HashSet<>();
+        String url = link;
+        for (int hop = 0; hop < maxHops && visited.add(url); hop++) {
+            // the WAYFless URL can be built for hosts with Shibboleth data, there is no need to go further
+            if (hop > 0 && shibbolethDataIndex.find(PublisherRoutingTable.getHost(url)) != null)
+                break;
+            String target = hopCache.get(url);
+            if (target == null) {
+                if (hop > 0 && System.nanoTime() > deadline) {
+                    log.debug("time for redirects of " + link + " exceeded after " + hop + " hops");
+                    break;
+                }
+                target = requestHop(hop == 0 ? upstream : Upstream.forHost(URI.create(url).getHost()), url);
+                if (target == null)
+                    break;
             }
-        } catch (IOException ioe) {
-            // return the link to doi.org and let them handle problems.
-            return link;
+            if (target.equals(url))
+                break;
+            url = target;
         }
+        if (url.equals(link))
+            return null;
+        if (upstream == Upstream.DOI && link.startsWith(DOI_RESOLVER_URL))
+            publisherRoutingTable.learn(link.substring(DOI_RESOLVER_URL.length()), url);
+        return url;
     }
 
+    /**
+     * requests a single hop and caches its target. Errors are not cached.
+     *
+     * @return the absolute location of the redirect, the url itself if it does not redirect, or null if the url could
+     * not be requested
+     */
+    private String requestHop(Upstream upstream, String url) {
+        HttpResponse<Void> response = upstreamHttpClient.head(upstream, url);
+        if (response == null)
+            return null;
+        int responseCode = response.statusCode();
+        //check whether it is a redirect and return the location
+        if (responseCode == 301 || responseCode == 302 || responseCode == 303 || responseCode == 307 || responseCode == 308) {
+            String location = response.headers().firstValue("Location").orElse(null);
+            if (location == null)
+                return null;
+            try {
+                // relative locations refer to the requested url
+                String target = URI.create(url).resolve(location.trim()).toString();
+                hopCache.put(url, target, ttl);
+                return target;
+            } catch (IllegalArgumentException iae) {
+                log.debug("invalid redirect location " + location + " for " + url);
+                return null;
+            }
+        }
+        // the end of the chain. error pages are not cached, they may be temporary.
+        if (responseCode < 400)
+            hopCache.put(url, url, ttl);
+        return url;
+    }
 }
@@ -0,0 +1,117 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+
+/**
+ * Timers and counters of the resolution, exposed at the Prometheus endpoint of the actuator. Each stage of the
+ * resolution (DOI redirect, Unpaywall, DataCite, Primo, linksolver fetch and parse, Shibboleth lookup) is timed by upstream and
+ * outcome, the complete resolution by access route and by the source of the decision. All timers publish histograms,
+ * so that percentiles can be aggregated across instances.
+ */
+@Component
+public class ResolutionMetrics {
+
+    public final static String STAGE_DOI = "doi";
+
+    public final static String STAGE_UNPAYWALL = "unpaywall";
+
+    public final static String STAGE_DATACITE = "datacite";
+
+    public final static String STAGE_LINKSOLVER_FETCH = "linksolver-fetch";
+
+    public final static String STAGE_LINKSOLVER_PARSE = "linksolver-parse";
+
+    public final static String STAGE_PRIMO = "primo";
+
+    public final static String STAGE_SHIBBOLETH = "shibboleth";
+
+    public final static String OUTCOME_SUCCESS = "success";
+
+    public final static String OUTCOME_ERROR = "error";
+
+    // the decision was taken by this request, taken from the decision cache or shared with an identical request
+    public final static String SOURCE_RESOLVED = "resolved";
+
+    public final static String SOURCE_CACHED = "cached";
+
+    public final static String SOURCE_COALESCED = "coalesced";
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ResolutionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return a sample measuring the time until it is recorded
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * records the duration of a stage of the resolution
+     *
+     * @param sample   the sample started with the stage
+     * @param stage    the stage, e.g. {@link #STAGE_DOI}
+     * @param upstream the name of the upstream called in this stage, 'local' for stages without upstream call
+     * @param outcome  the outcome of the stage, e.g. {@link #OUTCOME_SUCCESS}
+     */
+    public void recordStage(Timer.Sample sample, String stage, String upstream, String outcome) {
+        sample.stop(Timer.builder("libintel.resolve.stage")
+                .description("duration of the stages of the resolution")
+                .tag("stage", stage)
+                .tag("upstream", upstream)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * counts an upstream call which missed its deadline and was replaced by the fallback value
+     *
+     * @param stage the stage of the upstream call
+     */
+    public void countDeadlineMissed(String stage) {
+        Counter.builder("libintel.resolve.deadline.missed")
+                .description("upstream calls which missed their deadline")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * counts an upstream call which was skipped, because the circuit breaker of the upstream was open
+     *
+     * @param upstream the name of the upstream
+     */
+    public void countShortCircuited(String upstream) {
+        Counter.builder("libintel.resolve.short.circuited")
+                .description("upstream calls skipped because of an open circuit breaker")
+                .tag("upstream", upstream)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * records the duration of a complete resolution
+     *
+     * @param sample the sample started with the resolution
+     * @param route  the access route decided on
+     * @param source the source of the decision, e.g. {@link #SOURCE_CACHED}
+     */
+    public void recordResolution(Timer.Sample sample, AccessRoute route, String source) {
+        sample.stop(Timer.builder("libintel.resolve")
+                .description("duration of the resolution of OpenURL requests")
+                .tag("route", route.name().toLowerCase())
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,106 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer. Each slot carries a sequence number telling
+ * whether it is free for the producer of a position or filled for the consumer, so that producers only contend on the
+ * position counter and never block. If the buffer is full, {@link #offer(Object)} fails instead of waiting.
+ *
+ * @param <T> the type of the elements
+ */
+public class RingBuffer<T> {
+
+    private final int mask;
+
+    private final AtomicReferenceArray<T> elements;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong head = new AtomicLong();
+
+    // only moved by the consumer
+    private volatile long tail = 0;
+
+    /**
+     * @param capacity the minimum number of elements, rounded up to the next power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        // at least two slots, so that the sequence of a filled slot differs from the one of a free slot
+        int size = capacity < 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * adds an element, if there is space left. May be called from any thread.
+     *
+     * @param element the element, not null
+     * @return false if the buffer is full
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // the slot still holds the element of the previous round
+                return false;
+            }
+        }
+    }
+
+    /**
+     * moves the available elements into the given collection. Must only be called by the single consumer.
+     *
+     * @param target      the collection to add the elements to
+     * @param maxElements the maximum number of elements to move
+     * @return the number of moved elements
+     */
+    public int drainTo(Collection<? super T> target, int maxElements) {
+        long position = tail;
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1)
+                break;
+            target.add(elements.get(index));
+            elements.lazySet(index, null);
+            // frees the slot for the producer of the next round
+            sequences.set(index, position + mask + 1);
+            position++;
+            drained++;
+        }
+        tail = position;
+        return drained;
+    }
+
+    /**
+     * @return the approximate number of elements in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, head.get() - tail);
+    }
+
+    /**
+     * @return the number of elements the buffer can hold
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -4,21 +4,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 import org.unidue.ub.libintel.linksolverwrapper.model.ShibbolethData;
-import org.unidue.ub.libintel.linksolverwrapper.repository.ShibbolethDataRepository;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessType;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessUrl;
+import org.unidue.ub.libintel.linksolverwrapper.service.ShibbolethDataIndex;
 
+import javax.annotation.PostConstruct;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 @Component
 public class ShibbolethBuilder {
 
-    private final ShibbolethDataRepository shibbolethDataRepository;
+    private final ShibbolethDataIndex shibbolethDataIndex;
 
     // address of the identity provider shibboleth endpoint
     @Value("${libintel.shibboleth.idp.url}")
@@ -28,89 +33,122 @@ public class ShibbolethBuilder {
     @Value("${libintel.shibboleth.entity.id}")
     private String entityId;
 
+    private final static String EXCLUSION_PROPERTY = "libintel.shibboleth.exclusion";
+
     // the addresses to be excluded from the shibboleth builder
     @Value("${libintel.shibboleth.exclusion}")
     private String[] shiboblethFreeSubnet;
 
+    // the compiled excluded subnets, replaced when the configuration is refreshed
+    private volatile SubnetMatcher exclusionMatcher;
+
+    private final Environment environment;
+
     private Logger log = LoggerFactory.getLogger(ShibbolethBuilder.class);
 
     @Autowired
-    public ShibbolethBuilder(ShibbolethDataRepository shibbolethDataRepository) {
-        this.shibbolethDataRepository = shibbolethDataRepository;
+    public ShibbolethBuilder(ShibbolethDataIndex shibbolethDataIndex, Environment environment) {
+        this.shibbolethDataIndex = shibbolethDataIndex;
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    void compileExclusions() {
+        this.exclusionMatcher = SubnetMatcher.compile(shiboblethFreeSubnet);
+    }
+
+    /**
+     * recompiles the excluded subnets when the config server pushes new ranges. Invalid ranges are logged and the
+     * previous ones are kept.
+     * @param event the event listing the changed properties
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith(EXCLUSION_PROPERTY))) {
+            String[] subnets = Binder.get(environment).bind(EXCLUSION_PROPERTY, String[].class).orElse(new String[0]);
+            try {
+                this.exclusionMatcher = SubnetMatcher.compile(subnets);
+            } catch (IllegalArgumentException iae) {
+                log.warn("could not reload the excluded subnets, keeping the previous ones", iae);
+                return;
+            }
+            this.shiboblethFreeSubnet = subnets;
+            log.info("reloaded " + subnets.length + " excluded subnets");
+        }
     }
 
     /**
-     * Takes an URL and checks the database to build the corresponding WAYFless URL. If the IP address of the requestor
+     * Takes an URL and checks the Shibboleth data to build the corresponding WAYFless URL. If the IP address of the requestor
      * is within the excluded IP range or no Shibboleth data are found, the original URL is returned.
      * @param urlString The string for the desired resource
      * @return the WAYFless URL to the resource
      */
     public String constructWayflessUrl(String urlString, String ipAddress) {
-        if (!matches(ipAddress)) {
-            log.debug("constructing wayfless url");
-            try {
+        return buildWayflessUrl(urlString, ipAddress).getUrl();
+    }
 
-                // get host for database checking
-                URL url = new URL(urlString);
-                String host = url.getHost();
-                log.debug("retrieving data for host \"" + host + "\"");
-                Optional<ShibbolethData> shibbolethDataMayBe = shibbolethDataRepository.findById(host);
-
-                // if shibboleth data are found in the database, try to build the corresponding wayfless URL
-                if (shibbolethDataMayBe.isPresent()) {
-                    log.debug("found shibboleth data");
-                    ShibbolethData shibbolethData = shibbolethDataMayBe.get();
-                    Map<String, String> parameters = new HashMap<>();
-                    String shibboleth_url = "";
-                    // building the URL for SP-side WAYFless
-                    if (shibbolethData.isSpSideWayfless()) {
-                        parameters.put(shibbolethData.getEntityIdString(), entityId);
-                        parameters.put(shibbolethData.getTargetString(), urlString);
-                        log.debug("generated SP-side WAYFLESS-URL");
-                        log.debug(shibbolethData.getServiceproviderSibbolethUrl() + Utilities.mapToString(parameters));
-                        log.info("In IP-Range: false, Shibboleth-Daten: true, type: SP-side");
-                        shibboleth_url = shibbolethData.getServiceproviderSibbolethUrl() + Utilities.mapToString(parameters);
-
-
-                    }
-                    // building the URL for IP-side WAYFless
-                    else {
-                        parameters.put("target", urlString);
-                        parameters.put("shire", shibbolethData.getShire());
-                        parameters.put("providerId", shibbolethData.getProviderId());
-                        log.debug("generated IP-side WAYFLESS-URL");
-                        log.debug(idpUrl + Utilities.mapToString(parameters));
-                        log.info("In IP-Range: false, Shibboleth-Daten: true, type: IP-side");
-                        shibboleth_url = idpUrl + Utilities.mapToString(parameters);
-
-                    }
-                    if (shibbolethData.getAdditionalUrlParameters() != null) {
-                        shibboleth_url += shibbolethData.getAdditionalUrlParameters();
-                    }
-                    return shibboleth_url;
-
-                } else {
-                    log.info("In IP-Range: false, Shibboleth-Daten: false, type: none");
-                    return urlString;
-                }
-            } catch (MalformedURLException mue) {
-                log.info("In IP-Range: false, Shibboleth-Daten: false, type: error");
-                log.debug("given url is malformed, returning original URL");
-                log.debug(urlString);
-                return urlString;
+    /**
+     * Takes an URL and checks the Shibboleth data to build the corresponding WAYFless URL, see
+     * {@link #constructWayflessUrl(String, String)}.
+     * @param urlString The string for the desired resource
+     * @param ipAddress the remote address of the requestor
+     * @return the WAYFless URL to the resource together with the way it was constructed, e.g. for the access statistics
+     */
+    public WayflessUrl buildWayflessUrl(String urlString, String ipAddress) {
+        if (matches(ipAddress)) {
+            log.debug("remote address in excluded ip range");
+            return new WayflessUrl(urlString, WayflessType.IN_IP_RANGE);
+        }
+        log.debug("constructing wayfless url");
+        try {
+
+            // get host for database checking
+            URL url = new URL(urlString);
+            String host = url.getHost();
+            log.debug("retrieving data for host \"" + host + "\"");
+            ShibbolethData shibbolethData = shibbolethDataIndex.find(host);
+
+            // if no shibboleth data are found for the host, the original url is used
+            if (shibbolethData == null) {
+                log.debug("no shibboleth data found");
+                return new WayflessUrl(urlString, WayflessType.NO_DATA);
             }
+
+            // if shibboleth data are found for the host, try to build the corresponding wayfless URL
+            log.debug("found shibboleth data");
+            Map<String, String> parameters = new HashMap<>();
+            String shibboleth_url;
+            WayflessType type;
+            // building the URL for SP-side WAYFless
+            if (shibbolethData.isSpSideWayfless()) {
+                parameters.put(shibbolethData.getEntityIdString(), entityId);
+                parameters.put(shibbolethData.getTargetString(), urlString);
+                shibboleth_url = shibbolethData.getServiceproviderSibbolethUrl() + Utilities.mapToString(parameters);
+                type = WayflessType.SP_SIDE;
+                log.debug("generated SP-side WAYFLESS-URL");
+            }
+            // building the URL for IP-side WAYFless
+            else {
+                parameters.put("target", urlString);
+                parameters.put("shire", shibbolethData.getShire());
+                parameters.put("providerId", shibbolethData.getProviderId());
+                shibboleth_url = idpUrl + Utilities.mapToString(parameters);
+                type = WayflessType.IP_SIDE;
+                log.debug("generated IP-side WAYFLESS-URL");
+            }
+            if (shibbolethData.getAdditionalUrlParameters() != null) {
+                shibboleth_url += shibbolethData.getAdditionalUrlParameters();
+            }
+            log.debug(shibboleth_url);
+            return new WayflessUrl(shibboleth_url, type);
+        } catch (MalformedURLException mue) {
+            log.debug("given url is malformed, returning original URL");
+            log.debug(urlString);
+            return new WayflessUrl(urlString, WayflessType.INVALID_URL);
         }
-        else
-            log.info("In IP-Range: true, Shibboleth-Daten: none, type: none");
-        return urlString;
     }
 
     private boolean matches(String ip) {
-        for (String exclusion: shiboblethFreeSubnet) {
-            IpAddressMatcher ipAddressMatcher = new IpAddressMatcher(exclusion);
-            if (ipAddressMatcher.matches(ip))
-                return true;
-        }
-        return false;
+        return exclusionMatcher.matches(ip);
     }
 }
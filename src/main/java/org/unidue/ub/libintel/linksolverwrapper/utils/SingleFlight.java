@@ -0,0 +1,103 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: while a call for a key is in flight, further calls for this key do
+ * not start their own computation but wait for the result of the running one.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * computes the value for the given key in the calling thread, or waits for the computation already in flight.
+     *
+     * @param key    the key
+     * @param loader computes the value
+     * @return the computed value
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // errors as well, otherwise the waiting calls would block forever
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * starts the computation for the given key on the executor, unless a computation for this key is already in
+     * flight.
+     *
+     * @param key      the key
+     * @param loader   computes the value
+     * @param executor the executor running the computation
+     * @return the future of the running computation
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<V> loader, Executor executor) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(loader.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(key, future);
+                }
+            });
+        } catch (RuntimeException e) {
+            // the executor rejected the task
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * @return the number of calls which did not start their own computation
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ce.getCause();
+            if (ce.getCause() instanceof Error)
+                throw (Error) ce.getCause();
+            throw ce;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.unidue.ub.libintel.linksolverwrapper.utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable matcher for a set of IPv4 and IPv6 subnets in CIDR notation (e.g. '132.252.0.0/16'). The subnets are
+ * compiled once into sorted, merged address ranges, so that a membership check is a binary search without any
+ * allocation for IPv4 addresses.
+ */
+public class SubnetMatcher {
+
+    // start and end of the IPv4 ranges, sorted and non-overlapping
+    private final long[] ipv4Starts;
+
+    private final long[] ipv4Ends;
+
+    // start and end of the IPv6 ranges as pairs of (high, low) bits, sorted and non-overlapping
+    private final long[] ipv6Starts;
+
+    private final long[] ipv6Ends;
+
+    private SubnetMatcher(long[] ipv4Starts, long[] ipv4Ends, long[] ipv6Starts, long[] ipv6Ends) {
+        this.ipv4Starts = ipv4Starts;
+        this.ipv4Ends = ipv4Ends;
+        this.ipv6Starts = ipv6Starts;
+        this.ipv6Ends = ipv6Ends;
+    }
+
+    /**
+     * compiles the given subnets into a matcher
+     *
+     * @param subnets the subnets in CIDR notation. Single addresses without prefix length are allowed as well.
+     * @return the matcher for the subnets
+     * @throws IllegalArgumentException if one of the subnets cannot be parsed
+     */
+    public static SubnetMatcher compile(String... subnets) {
+        List<long[]> ipv4Ranges = new ArrayList<>();
+        List<long[]> ipv6Ranges = new ArrayList<>();
+        if (subnets != null) {
+            for (String subnet : subnets) {
+                if (subnet == null || subnet.trim().isEmpty())
+                    continue;
+                subnet = subnet.trim();
+                String address = subnet;
+                int prefixLength = -1;
+                int slash = subnet.indexOf('/');
+                if (slash >= 0) {
+                    address = subnet.substring(0, slash);
+                    try {
+                        prefixLength = Integer.parseInt(subnet.substring(slash + 1));
+                    } catch (NumberFormatException nfe) {
+                        throw new IllegalArgumentException("invalid prefix length in subnet " + subnet);
+                    }
+                    if (prefixLength < 0)
+                        throw new IllegalArgumentException("invalid prefix length in subnet " + subnet);
+                }
+                byte[] bytes = parseLiteral(address);
+                if (bytes == null)
+                    throw new IllegalArgumentException("invalid address in subnet " + subnet);
+                int bits = bytes.length * 8;
+                if (prefixLength < 0)
+                    prefixLength = bits;
+                if (prefixLength > bits)
+                    throw new IllegalArgumentException("invalid prefix length in subnet " + subnet);
+                if (bytes.length == 4) {
+                    long value = toLong(bytes, 0, 4);
+                    long mask = prefixLength == 0 ? 0 : (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
+                    ipv4Ranges.add(new long[]{value & mask, (value & mask) | (~mask & 0xFFFFFFFFL)});
+                } else {
+                    long high = toLong(bytes, 0, 8);
+                    long low = toLong(bytes, 8, 8);
+                    long highMask = mask64(Math.min(prefixLength, 64));
+                    long lowMask = mask64(Math.max(prefixLength - 64, 0));
+                    ipv6Ranges.add(new long[]{high & highMask, low & lowMask, high | ~highMask, low | ~lowMask});
+                }
+            }
+        }
+
+        // sort and merge the IPv4 ranges
+        ipv4Ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> mergedIpv4 = new ArrayList<>();
+        for (long[] range : ipv4Ranges) {
+            long[] last = mergedIpv4.isEmpty() ? null : mergedIpv4.get(mergedIpv4.size() - 1);
+            if (last != null && range[0] <= last[1] + 1)
+                last[1] = Math.max(last[1], range[1]);
+            else
+                mergedIpv4.add(range);
+        }
+        long[] ipv4Starts = new long[mergedIpv4.size()];
+        long[] ipv4Ends = new long[mergedIpv4.size()];
+        for (int i = 0; i < mergedIpv4.size(); i++) {
+            ipv4Starts[i] = mergedIpv4.get(i)[0];
+            ipv4Ends[i] = mergedIpv4.get(i)[1];
+        }
+
+        // sort and merge the IPv6 ranges. As CIDR ranges are either nested or disjoint, no partial overlaps occur.
+        ipv6Ranges.sort((a, b) -> compare(a[0], a[1], b[0], b[1]));
+        List<long[]> mergedIpv6 = new ArrayList<>();
+        for (long[] range : ipv6Ranges) {
+            long[] last = mergedIpv6.isEmpty() ? null : mergedIpv6.get(mergedIpv6.size() - 1);
+            if (last != null && compare(range[0], range[1], last[2], last[3]) <= 0) {
+                if (compare(range[2], range[3], last[2], last[3]) > 0) {
+                    last[2] = range[2];
+                    last[3] = range[3];
+                }
+            } else
+                mergedIpv6.add(range);
+        }
+        long[] ipv6Starts = new long[mergedIpv6.size() * 2];
+        long[] ipv6Ends = new long[mergedIpv6.size() * 2];
+        for (int i = 0; i < mergedIpv6.size(); i++) {
+            long[] range = mergedIpv6.get(i);
+            ipv6Starts[2 * i] = range[0];
+            ipv6Starts[2 * i + 1] = range[1];
+            ipv6Ends[2 * i] = range[2];
+            ipv6Ends[2 * i + 1] = range[3];
+        }
+        return new SubnetMatcher(ipv4Starts, ipv4Ends, ipv6Starts, ipv6Ends);
+    }
+
+    /**
+     * checks whether the given address lies within one of the subnets
+     *
+     * @param ipAddress the IPv4 or IPv6 address as string
+     * @return true, if the address is part of one of the subnets. false, if not or if the address is invalid.
+     */
+    public boolean matches(String ipAddress) {
+        if (ipAddress == null || ipAddress.isEmpty())
+            return false;
+        if (ipAddress.indexOf(':') < 0) {
+            long value = parseIpv4(ipAddress);
+            return value >= 0 && matchesIpv4(value);
+        }
+        byte[] bytes = parseLiteral(ipAddress);
+        if (bytes == null)
+            return false;
+        if (bytes.length == 4)
+            return matchesIpv4(toLong(bytes, 0, 4));
+        return matchesIpv6(toLong(bytes, 0, 8), toLong(bytes, 8, 8));
+    }
+
+    private boolean matchesIpv4(long value) {
+        // find the last range starting at or before the address
+        int low = 0;
+        int high = ipv4Starts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (ipv4Starts[middle] <= value)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return high >= 0 && value <= ipv4Ends[high];
+    }
+
+    private boolean matchesIpv6(long valueHigh, long valueLow) {
+        int low = 0;
+        int high = ipv6Starts.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(ipv6Starts[2 * middle], ipv6Starts[2 * middle + 1], valueHigh, valueLow) <= 0)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return high >= 0 && compare(valueHigh, valueLow, ipv6Ends[2 * high], ipv6Ends[2 * high + 1]) <= 0;
+    }
+
+    /**
+     * parses a dotted IPv4 address without allocating
+     *
+     * @param ipAddress the address
+     * @return the address as unsigned value, or -1 if the address is not a valid IPv4 address
+     */
+    private static long parseIpv4(String ipAddress) {
+        long value = 0;
+        int octet = -1;
+        int octets = 0;
+        for (int i = 0; i < ipAddress.length(); i++) {
+            char c = ipAddress.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255)
+                    return -1;
+            } else if (c == '.' && octet >= 0 && octets < 3) {
+                value = (value << 8) | octet;
+                octet = -1;
+                octets++;
+            } else
+                return -1;
+        }
+        if (octet < 0 || octets != 3)
+            return -1;
+        return (value << 8) | octet;
+    }
+
+    /**
+     * parses an IPv4 or IPv6 literal. Host names are rejected, so no name lookup is triggered.
+     *
+     * @param address the address
+     * @return the address bytes, or null if the address is not a valid literal
+     */
+    private static byte[] parseLiteral(String address) {
+        if (address.indexOf(':') < 0) {
+            long value = parseIpv4(address);
+            if (value < 0)
+                return null;
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.' && c != '[' && c != ']')
+                return null;
+        }
+        try {
+            return InetAddress.getByName(address).getAddress();
+        } catch (UnknownHostException uhe) {
+            return null;
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++)
+            value = (value << 8) | (bytes[i] & 0xFF);
+        return value;
+    }
+
+    private static long mask64(int prefixLength) {
+        return prefixLength == 0 ? 0 : -1L << (64 - prefixLength);
+    }
+
+    private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+        int result = Long.compareUnsigned(aHigh, bHigh);
+        return result != 0 ? result : Long.compareUnsigned(aLow, bLow);
+    }
+}
@@ -1,20 +1,27 @@
 package org.unidue.ub.libintel.linksolverwrapper.utils;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.MultiValueMap;
 
-import java.io.UnsupportedEncodingException;
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class Utilities {
+
+    private final static Logger log = LoggerFactory.getLogger(Utilities.class);
+
     /**
      * Converst a map of parameters into an url-encoded string to be added to the server.
      * Thanks to StackOverflow question https://stackoverflow.com/questions/2809877/how-to-convert-map-to-url-query-string
      * @param map a map of parameters
      * @return a string with parameters including the initial '?'
      */
-    public static String mapListToString(MultiValueMap<String, String> map) throws UnsupportedEncodingException {
+    public static String mapListToString(MultiValueMap<String, String> map) {
         StringBuilder stringBuilder = new StringBuilder();
         // go through all paramter lists
         for (String key : map.keySet()) {
@@ -26,7 +33,7 @@ public class Utilities {
                 } else
                     stringBuilder.append("&");
                 // append the key-value-pair
-                stringBuilder.append(URLEncoder.encode(key, StandardCharsets.UTF_8.toString())).append("=").append(URLEncoder.encode(value, StandardCharsets.UTF_8.toString()));
+                stringBuilder.append(URLEncoder.encode(key, StandardCharsets.UTF_8)).append("=").append(URLEncoder.encode(value, StandardCharsets.UTF_8));
             }
         }
         return stringBuilder.toString();
@@ -50,4 +57,72 @@ public class Utilities {
         }
         return stringBuilder.toString();
     }
+
+    /**
+     * removes curly brackets and replaces line breaks by '+' in a request parameter
+     * @param queryString the value of a request parameter
+     * @return the cleaned value
+     */
+    public static String cleanUpString(String queryString) {
+        if (queryString != null && needsCleanUp(queryString)) {
+            if (queryString.contains("{"))
+                queryString = queryString.replace("{", "");
+            if (queryString.contains("%0A"))
+                queryString = queryString.replace("%0A", "+");
+            if (queryString.contains("%0D"))
+                queryString = queryString.replace("%0D", "+");
+            if (queryString.contains("\n"))
+                queryString = queryString.replace("\n", "+");
+            if (queryString.contains("\r"))
+                queryString = queryString.replace("\r", "+");
+        }
+        return queryString;
+    }
+
+    /**
+     * checks in one pass whether a value contains any of the characters replaced by {@link #cleanUpString(String)},
+     * as most values do not
+     */
+    private static boolean needsCleanUp(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '{' || c == '%' || c == '\n' || c == '\r')
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * reads the address of the user from the 'remoteAddress' header set by the gateway
+     * @param httpServletRequest the http request
+     * @return the remote address, 127.0.0.1 if none is given
+     */
+    public static String determineRemoteAddress(HttpServletRequest httpServletRequest) {
+        String remoteAddress = "127.0.0.1";
+        if (httpServletRequest.getHeader("remoteAddress") != null)
+            remoteAddress = httpServletRequest.getHeader("remoteAddress");
+        log.debug("call from " + remoteAddress);
+        return remoteAddress;
+    }
+
+    /**
+     * reads the host of the referring page from the referer header
+     * @param httpServletRequest the http request
+     * @return the url encoded host of the referer, 'linksolver' if none is given
+     */
+    public static String getReferer(HttpServletRequest httpServletRequest) {
+        String referer = "linksolver";
+        if (httpServletRequest.getHeader("referer") != null && !httpServletRequest.getHeader("referer").isEmpty()) {
+            referer = httpServletRequest.getHeader("referer");
+            log.debug("referer request header: " + referer);
+            try {
+                URI uri = new URI(referer);
+                referer = URLEncoder.encode(uri.getHost(), StandardCharsets.UTF_8);
+            } catch (URISyntaxException e) {
+                log.warn("could not decode uri from referrer", e);
+            }
+
+        }
+        return referer;
+    }
 }
@@ -17,3 +17,21 @@ CREATE TABLE shibboleth_data
     OIDS=FALSE
   );
 -- ALTER TABLE shibboleth_data OWNER TO "services";
+
+-- Table: shared_cache
+
+-- DROP TABLE shared_cache;
+
+CREATE TABLE shared_cache
+(
+  cache_name character varying NOT NULL,
+  cache_key character varying NOT NULL,
+  cache_value text,
+  expires_at bigint NOT NULL,
+  CONSTRAINT shared_cache_pkey PRIMARY KEY (cache_name, cache_key)
+)
+  WITH (
+    OIDS=FALSE
+  );
+CREATE INDEX shared_cache_expires_at_idx ON shared_cache (expires_at);
+-- ALTER TABLE shared_cache OWNER TO "services";
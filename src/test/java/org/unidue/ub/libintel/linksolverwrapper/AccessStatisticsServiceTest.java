@@ -0,0 +1,109 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessEvent;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessStatistics;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionContext;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.service.AccessStatisticsService;
+
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records access events from several threads on two days and checks the files written and the aggregated counts.
+ */
+public class AccessStatisticsServiceTest {
+
+    private final static int THREADS = 8;
+
+    private final static int EVENTS_PER_THREAD = 500;
+
+    private final static LocalDate DAY = LocalDate.of(2019, 4, 1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aggregatesEventsByDayAndReferer() throws Exception {
+        AccessStatisticsService accessStatisticsService = createService(1 << 14);
+        accessStatisticsService.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String referer = t % 2 == 0 ? "primo" : null;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    boolean openAccess = i % 4 == 0;
+                    ResolutionResult result = openAccess
+                            ? new ResolutionResult("10.1234/" + i, "https://oa.example/" + i, true, AccessRoute.OPEN_ACCESS, "Volltext")
+                            : new ResolutionResult("10.1234/" + i, null, false, AccessRoute.ELSEVIER_ORDER, "Elsevier-Bestellseite");
+                    accessStatisticsService.record(new AccessEvent(timestamp(DAY.plusDays(i % 2)), result, context(referer)));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        accessStatisticsService.shutdown();
+
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("access-2019-04-01.ndjson.gz")));
+        List<AccessStatistics> statistics = accessStatisticsService.aggregate(DAY, DAY.plusDays(2));
+        assertEquals(4, statistics.size());
+        // ordered by day, requests without referer first
+        assertEquals("2019-04-01", statistics.get(0).getDay());
+        assertEquals("", statistics.get(0).getReferer());
+        assertEquals("primo", statistics.get(1).getReferer());
+        assertEquals("2019-04-02", statistics.get(2).getDay());
+        for (AccessStatistics entry : statistics) {
+            long requests = THREADS / 2 * EVENTS_PER_THREAD / 2;
+            assertEquals(requests, entry.getRequests());
+            // all open access events fall on the first day
+            long openAccess = entry.getDay().equals("2019-04-01") ? requests / 2 : 0;
+            assertEquals(openAccess, entry.getOpenAccess());
+            assertEquals((long) entry.getStatuses().getOrDefault("Volltext", 0L), openAccess);
+            assertEquals((long) entry.getStatuses().get("Elsevier-Bestellseite"), requests - openAccess);
+        }
+        assertEquals(0.5, statistics.get(0).getOpenAccessRate(), 1e-9);
+    }
+
+    @Test
+    public void dropsEventsIfTheBufferIsFull() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AccessStatisticsService accessStatisticsService = new AccessStatisticsService(meterRegistry, 16);
+        ResolutionResult result = new ResolutionResult("", "https://linksolver.example", false, AccessRoute.LINKSOLVER, "Linksolver (no ISSN)");
+        // the writer is not started
+        for (int i = 0; i < 20; i++)
+            accessStatisticsService.record(new AccessEvent(timestamp(DAY), result, context("primo")));
+        assertEquals(4.0, meterRegistry.get("libintel.statistics.dropped").counter().count(), 0);
+        assertEquals(16.0, meterRegistry.get("libintel.statistics.buffered").gauge().value(), 0);
+    }
+
+    private AccessStatisticsService createService(int bufferSize) {
+        AccessStatisticsService accessStatisticsService = new AccessStatisticsService(new SimpleMeterRegistry(), bufferSize);
+        ReflectionTestUtils.setField(accessStatisticsService, "directory", folder.getRoot().toString());
+        ReflectionTestUtils.setField(accessStatisticsService, "batchSize", 100);
+        ReflectionTestUtils.setField(accessStatisticsService, "flushInterval", 10L);
+        return accessStatisticsService;
+    }
+
+    private static ResolutionContext context(String referer) {
+        return new ResolutionContext(new LinkedMultiValueMap<>(), referer, "10.0.0.1");
+    }
+
+    private static long timestamp(LocalDate day) {
+        return day.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,135 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.controller.BatchResolveController;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.BatchResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionContext;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.service.BatchResolutionService;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a batch is returned in order, duplicate DOIs are resolved once and the number of concurrent
+ * resolutions stays within the configured parallelism. A streamed batch ends even if a worker dies.
+ */
+public class BatchResolutionServiceTest {
+
+    private final static int PARALLELISM = 4;
+
+    private ThreadPoolTaskExecutor resolveExecutor;
+
+    private ResolverService resolverService;
+
+    private BatchResolutionService batchResolutionService;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maximumRunning = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        resolverService = mock(ResolverService.class);
+        when(resolverService.resolve(any())).thenAnswer(invocation -> {
+            maximumRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            ResolutionContext context = invocation.getArgument(0);
+            String title = context.getRequestParams().getFirst("atitle");
+            return new ResolutionResult("", "https://target.example/" + title, false, AccessRoute.FULLTEXT, null);
+        });
+        resolveExecutor = new LinksolverWrapperConfiguration().resolveExecutor(32);
+        batchResolutionService = new BatchResolutionService(resolverService, resolveExecutor);
+        ReflectionTestUtils.setField(batchResolutionService, "parallelism", PARALLELISM);
+    }
+
+    @After
+    public void tearDown() {
+        resolveExecutor.shutdown();
+    }
+
+    @Test
+    public void resolvesDuplicateDoisOnce() throws Exception {
+        List<ResolutionContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            contexts.add(context("doi:10.1234/article-" + (i % 10), "title-" + (i % 10)));
+        // same DOI in other notation
+        contexts.add(context("info:doi/10.1234/ARTICLE-3", "other-title"));
+        contexts.add(context(null, "no-doi"));
+
+        List<BatchResolutionResult> results = batchResolutionService.resolveAll(contexts).get();
+
+        assertEquals(contexts.size(), results.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, results.get(i).getIndex());
+            assertEquals("https://target.example/title-" + (i % 10), results.get(i).getResult().getUrl());
+        }
+        assertEquals("https://target.example/title-3", results.get(20).getResult().getUrl());
+        assertEquals("https://target.example/no-doi", results.get(21).getResult().getUrl());
+        verify(resolverService, times(11)).resolve(any());
+        assertTrue(maximumRunning.get() <= PARALLELISM);
+    }
+
+    @Test
+    public void streamedBatchEndsIfAWorkerDies() throws Exception {
+        doAnswer(invocation -> {
+            ResolutionContext context = invocation.getArgument(0);
+            String title = context.getRequestParams().getFirst("atitle");
+            if ("fatal".equals(title))
+                throw new StackOverflowError();
+            return new ResolutionResult("", "https://target.example/" + title, false, AccessRoute.FULLTEXT, null);
+        }).when(resolverService).resolve(any());
+        ObjectMapper objectMapper = new ObjectMapper();
+        BatchResolveController controller = new BatchResolveController(batchResolutionService, objectMapper);
+        ReflectionTestUtils.setField(controller, "maximumSize", 10);
+        List<Object> entries = List.of(Map.of("atitle", "first"), Map.of("atitle", "fatal"), "atitle=last");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        long start = System.currentTimeMillis();
+        controller.resolveBatchAsNdjson(entries, new MockHttpServletRequest()).getBody().writeTo(outputStream);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        Map<Integer, String> routes = new HashMap<>();
+        for (String line : lines) {
+            JsonNode result = objectMapper.readTree(line);
+            routes.put(result.get("index").asInt(), result.get("route").asText());
+        }
+        assertEquals(Map.of(0, "FULLTEXT", 1, "NONE", 2, "FULLTEXT"), routes);
+    }
+
+    private static ResolutionContext context(String id, String title) {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        if (id != null)
+            requestParams.add("id", id);
+        requestParams.add("atitle", title);
+        return new ResolutionContext(requestParams, "linksolver", "127.0.0.1");
+    }
+}
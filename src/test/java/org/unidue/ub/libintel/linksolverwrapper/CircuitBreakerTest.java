@@ -0,0 +1,85 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Test;
+import org.unidue.ub.libintel.linksolverwrapper.client.CircuitBreaker;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the transitions of the circuit breaker and the adaptive timeout on a manual clock.
+ */
+public class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void opensOnFailuresAndClosesAfterSuccessfulProbe() {
+        CircuitBreaker breaker = new CircuitBreaker(settings(), clock::get);
+        for (int i = 0; i < 9; i++) {
+            assertTrue(breaker.tryAcquire());
+            if (i % 3 == 0)
+                breaker.onSuccess(millis(100));
+            else
+                breaker.onFailure();
+        }
+        // 6 of 9 requests failed, but the minimum number of requests is not reached
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        assertFalse(breaker.tryAcquire());
+
+        // after the open period, a single probe is let through
+        clock.addAndGet(millis(30000));
+        assertTrue(breaker.isAvailable());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.addAndGet(millis(30000));
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(millis(100));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getCalls());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void timeoutFollowsTheObservedLatency() {
+        CircuitBreaker breaker = new CircuitBreaker(settings(), clock::get);
+        assertEquals(Duration.ofSeconds(60), breaker.getTimeout());
+        for (int i = 0; i < 100; i++)
+            breaker.onSuccess(millis(i < 99 ? 200 : 900));
+        // three times the 99th percentile
+        assertEquals(Duration.ofMillis(600), breaker.getTimeout());
+        for (int i = 0; i < 100; i++)
+            breaker.onSuccess(millis(50));
+        // not below the minimum
+        assertEquals(Duration.ofMillis(500), breaker.getTimeout());
+        for (int i = 0; i < 100; i++)
+            breaker.onSuccess(millis(40000));
+        // not above the configured request timeout
+        assertEquals(Duration.ofSeconds(60), breaker.getTimeout());
+    }
+
+    private static HttpClientProperties.Settings settings() {
+        HttpClientProperties.Settings settings = new HttpClientProperties.Settings();
+        settings.setMinimumCalls(10);
+        settings.setMinRequestTimeout(500);
+        return settings;
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
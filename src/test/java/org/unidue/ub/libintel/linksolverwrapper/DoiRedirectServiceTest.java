@@ -0,0 +1,79 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.repository.SharedCacheRepository;
+import org.unidue.ub.libintel.linksolverwrapper.service.DoiRedirectService;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the time to live of resolved DOIs and of failed resolutions, which are cached for a shorter time and answered
+ * with the link to the DOI resolver.
+ */
+public class DoiRedirectServiceTest {
+
+    private final static String DOI_URL = "https://doi.org/10.1016/j.test.2018.01.001";
+
+    private RedirectLinkRetriever redirectLinkRetriever;
+
+    private DoiRedirectService doiRedirectService;
+
+    @Before
+    public void setUp() {
+        redirectLinkRetriever = mock(RedirectLinkRetriever.class);
+        // the shared cache is disabled by default
+        SharedCacheService sharedCacheService = new SharedCacheService(mock(SharedCacheRepository.class), new SimpleMeterRegistry(), 16);
+        doiRedirectService = new DoiRedirectService(redirectLinkRetriever, new CacheRegistry(), sharedCacheService, 100);
+        ReflectionTestUtils.setField(doiRedirectService, "ttl", 3600L);
+        ReflectionTestUtils.setField(doiRedirectService, "negativeTtl", 600L);
+    }
+
+    @Test
+    public void cachesResolvedDois() {
+        when(redirectLinkRetriever.getRedirectLocation(Upstream.DOI, DOI_URL)).thenReturn("https://www.sciencedirect.com/science/article/pii/1");
+
+        assertEquals("https://www.sciencedirect.com/science/article/pii/1", doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.001"));
+        // DOIs are case insensitive
+        assertEquals("https://www.sciencedirect.com/science/article/pii/1", doiRedirectService.getLinkForDoi("10.1016/J.TEST.2018.01.001"));
+        verify(redirectLinkRetriever, times(1)).getRedirectLocation(Upstream.DOI, DOI_URL);
+    }
+
+    @Test
+    public void resolvesAgainAfterTheTimeToLive() {
+        ReflectionTestUtils.setField(doiRedirectService, "ttl", 0L);
+        when(redirectLinkRetriever.getRedirectLocation(Upstream.DOI, DOI_URL))
+                .thenReturn("https://linkinghub.elsevier.com/retrieve/pii/1")
+                .thenReturn("https://www.sciencedirect.com/science/article/pii/1");
+
+        assertEquals("https://linkinghub.elsevier.com/retrieve/pii/1", doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.001"));
+        assertEquals("https://www.sciencedirect.com/science/article/pii/1", doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.001"));
+        verify(redirectLinkRetriever, times(2)).getRedirectLocation(Upstream.DOI, DOI_URL);
+    }
+
+    @Test
+    public void cachesFailedResolutionsForTheNegativeTimeToLive() {
+        when(redirectLinkRetriever.getRedirectLocation(Upstream.DOI, DOI_URL)).thenReturn(null);
+
+        assertEquals(DOI_URL, doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.001"));
+        assertEquals(DOI_URL, doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.001"));
+        verify(redirectLinkRetriever, times(1)).getRedirectLocation(Upstream.DOI, DOI_URL);
+
+        // once the failure has expired, the DOI is resolved again
+        ReflectionTestUtils.setField(doiRedirectService, "negativeTtl", 0L);
+        doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.002");
+        when(redirectLinkRetriever.getRedirectLocation(Upstream.DOI, "https://doi.org/10.1016/j.test.2018.01.002"))
+                .thenReturn("https://www.sciencedirect.com/science/article/pii/2");
+        assertEquals("https://www.sciencedirect.com/science/article/pii/2", doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.002"));
+    }
+}
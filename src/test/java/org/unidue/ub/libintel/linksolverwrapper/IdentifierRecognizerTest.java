@@ -0,0 +1,58 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Test;
+import org.unidue.ub.libintel.linksolverwrapper.model.IdentifierType;
+import org.unidue.ub.libintel.linksolverwrapper.utils.IdentifierRecognizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IdentifierRecognizerTest {
+
+    @Test
+    public void recognizesDois() {
+        assertEquals(IdentifierType.DOI, IdentifierRecognizer.recognize("doi:10.1016/j.joi.2018.09.004"));
+        assertEquals(IdentifierType.DOI, IdentifierRecognizer.recognize("info:doi/10.1108/JD-05-2018-0073"));
+        assertEquals(IdentifierType.DOI, IdentifierRecognizer.recognize("10.1007/978-3-658-21346-5"));
+        // old Wiley DOIs may contain any non-whitespace character
+        assertEquals(IdentifierType.DOI, IdentifierRecognizer.recognize("doi:10.1002/(SICI)1097-4571(199806)49:8<693::AID-ASI4>3.0.CO;2-0"));
+        assertEquals(IdentifierType.UNKNOWN, IdentifierRecognizer.recognize("doi:10.1016/<invalid>"));
+        assertEquals(IdentifierType.UNKNOWN, IdentifierRecognizer.recognize("doi:10.12/short-registrant"));
+        assertEquals("10.1016/j.joi.2018.09.004", IdentifierRecognizer.normalize(" doi:10.1016/j.joi.2018.09.004 "));
+    }
+
+    @Test
+    public void recognizesPmidsAndArxivIds() {
+        assertEquals(IdentifierType.PMID, IdentifierRecognizer.recognize("pmid:30218057"));
+        assertEquals(IdentifierType.PMID, IdentifierRecognizer.recognize("info:pmid/30218057"));
+        assertEquals(IdentifierType.UNKNOWN, IdentifierRecognizer.recognize("30218057"));
+        assertEquals("30218057", IdentifierRecognizer.normalize("pmid:30218057"));
+
+        assertEquals(IdentifierType.ARXIV, IdentifierRecognizer.recognize("arxiv:1501.00001v2"));
+        assertEquals(IdentifierType.ARXIV, IdentifierRecognizer.recognize("arXiv:hep-th/9901001"));
+        assertEquals(IdentifierType.ARXIV, IdentifierRecognizer.recognize("info:arxiv/math.GT/0309136"));
+        assertEquals(IdentifierType.UNKNOWN, IdentifierRecognizer.recognize("arxiv:1501.001"));
+    }
+
+    @Test
+    public void normalizesIsbns() {
+        assertEquals(IdentifierType.ISBN, IdentifierRecognizer.recognize("978-3-658-21345-9"));
+        assertEquals(IdentifierType.ISBN, IdentifierRecognizer.recognize("urn:ISBN:0-306-40615-2"));
+        assertEquals(IdentifierType.UNKNOWN, IdentifierRecognizer.recognize("0-306-40615-3"));
+        assertEquals("9780306406157", IdentifierRecognizer.normalize("isbn:0-306-40615-2"));
+        assertEquals("9780306406157", IdentifierRecognizer.normalizeIsbn("0306406152"));
+        assertEquals("9783658213459", IdentifierRecognizer.normalizeIsbn("978 3 658 21345 9"));
+        assertNull(IdentifierRecognizer.normalizeIsbn("9783658213458"));
+    }
+
+    @Test
+    public void normalizesIssns() {
+        assertEquals(IdentifierType.ISSN, IdentifierRecognizer.recognize("0022-0418"));
+        assertEquals(IdentifierType.ISSN, IdentifierRecognizer.recognize("issn:1050124x"));
+        assertEquals("1050-124X", IdentifierRecognizer.normalize("issn:1050124x"));
+        assertEquals("1751-1577", IdentifierRecognizer.normalizeIssn("17511577"));
+        assertEquals("0006-1972", IdentifierRecognizer.normalizeIssn(" 0006-1972 "));
+        assertNull(IdentifierRecognizer.normalizeIssn("17511578"));
+        assertNull(IdentifierRecognizer.normalizeIssn("175115770"));
+    }
+}
@@ -0,0 +1,58 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Test;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLink;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLinkType;
+import org.unidue.ub.libintel.linksolverwrapper.utils.LinksolverResponseParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.unidue.ub.libintel.linksolverwrapper.benchmark.LinksolverParserBenchmark.readFixture;
+
+public class LinksolverResponseParserTest {
+
+    @Test
+    public void findsTheFirstDecisiveLink() throws IOException {
+        LinksolverLink link = parse(readFixture("fulltext"));
+        assertEquals(LinksolverLinkType.FULLTEXT, link.getType());
+        assertEquals("/openurl/link?target=emerald&issn=0022-0418&volume=75&issue=3&spage=512", link.getHref());
+
+        assertEquals(LinksolverLinkType.JOURNAL, parse(readFixture("journal")).getType());
+        assertEquals(LinksolverLinkType.INTERLIBRARY_LOAN, parse(readFixture("interlibrary-loan")).getType());
+    }
+
+    @Test
+    public void normalizesTheLinkText() throws IOException {
+        LinksolverLink link = parse("<p><a href='/x'><b>Volltexte</b>&nbsp;&uuml;ber\n   Springer</a></p>");
+        assertEquals("Volltexte über Springer", link.getText());
+        assertEquals(LinksolverLinkType.FULLTEXT, link.getType());
+    }
+
+    @Test
+    public void keepsInvalidCharacterReferences() throws IOException {
+        LinksolverLink link = parse("<a href='/x?a=1&#xFFFFFFF;&amp;b=&#65;'>Volltexte &#xFFFFFFF; &#1114112;&#x41;</a>");
+        assertEquals("Volltexte &#xFFFFFFF; &#1114112;A", link.getText());
+        assertEquals("/x?a=1&#xFFFFFFF;&b=A", link.getHref());
+        assertEquals(LinksolverLinkType.FULLTEXT, link.getType());
+    }
+
+    @Test
+    public void skipsCommentsAndScripts() throws IOException {
+        LinksolverLink link = parse("<!-- <a href='/a'>Fernleihe</a> --><script>var a = '<a href=\"/b\">Fernleihe</a>';</script>"
+                + "<a href=/c>Impressum</a>");
+        assertEquals(LinksolverLinkType.OTHER, link.getType());
+        assertEquals("/c", link.getHref());
+    }
+
+    @Test
+    public void returnsNullWithoutLinks() throws IOException {
+        assertNull(parse("<html><body>Keine Treffer</body></html>"));
+    }
+
+    private static LinksolverLink parse(String html) throws IOException {
+        return LinksolverResponseParser.parse(new StringReader(html));
+    }
+}
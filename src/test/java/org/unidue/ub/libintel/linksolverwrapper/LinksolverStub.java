@@ -0,0 +1,52 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * local HTTP server standing in for the linksolver. Answers every request with the given html page after the given
+ * delay.
+ */
+public class LinksolverStub {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    public LinksolverStub(String html, int delay) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @return the OpenURL endpoint of the stub
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/openurl";
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+}
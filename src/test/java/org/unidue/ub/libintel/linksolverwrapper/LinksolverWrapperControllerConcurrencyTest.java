@@ -0,0 +1,180 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.controller.LinksolverWrapperController;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessType;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessUrl;
+import org.unidue.ub.libintel.linksolverwrapper.service.DoiRedirectService;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends many DOI and non-DOI requests from parallel threads through the controller and checks that every request
+ * is redirected with its own DOI and remote address. Identical requests in flight at the same time share one
+ * resolution.
+ */
+public class LinksolverWrapperControllerConcurrencyTest {
+
+    private final static int THREADS = 32;
+
+    private final static int REQUESTS = 1000;
+
+    private LinksolverStub linksolver;
+
+    private ThreadPoolTaskExecutor upstreamExecutor;
+
+    private ThreadPoolTaskExecutor resolveExecutor;
+
+    private DoiRedirectService doiRedirectService;
+
+    private ResolverService resolverService;
+
+    private LinksolverWrapperController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        linksolver = new LinksolverStub("<html><body><a href=\"/fulltext\">Link zum Artikel</a></body></html>", 0);
+
+        // the upstream services answer after a random delay, so that the requests interleave
+        doiRedirectService = mock(DoiRedirectService.class);
+        when(doiRedirectService.getLinkForDoi(anyString())).thenAnswer(invocation -> {
+            pause();
+            return "https://publisher.example/" + invocation.getArgument(0);
+        });
+        UnpaywallService unpaywallService = mock(UnpaywallService.class);
+        when(unpaywallService.getUnpaywallResponse(anyString())).thenAnswer(invocation -> {
+            pause();
+            return null;
+        });
+        RedirectLinkRetriever redirectLinkRetriever = mock(RedirectLinkRetriever.class);
+        when(redirectLinkRetriever.getLinkFromRedirect(eq(Upstream.LINKSOLVER), anyString())).thenAnswer(invocation -> {
+            pause();
+            return "https://linksolver.example/fulltext";
+        });
+        // mark the redirect with the remote address it was built for
+        ShibbolethBuilder shibbolethBuilder = mock(ShibbolethBuilder.class);
+        when(shibbolethBuilder.buildWayflessUrl(anyString(), anyString()))
+                .thenAnswer(invocation -> new WayflessUrl(invocation.getArgument(0) + "#" + invocation.getArgument(1), WayflessType.SP_SIDE));
+
+        HttpClientProperties.Settings settings = new HttpClientProperties.Settings();
+        settings.setMaxConnections(THREADS);
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setUpstreams(Collections.singletonMap("linksolver", settings));
+
+        LinksolverWrapperConfiguration configuration = new LinksolverWrapperConfiguration();
+        upstreamExecutor = configuration.upstreamExecutor(3 * THREADS);
+        resolveExecutor = configuration.resolveExecutor(THREADS);
+
+        resolverService = new ResolverServiceBuilder(linksolver.getUrl(), upstreamExecutor)
+                .shibbolethBuilder(shibbolethBuilder)
+                .unpaywallService(unpaywallService)
+                .doiRedirectService(doiRedirectService)
+                .redirectLinkRetriever(redirectLinkRetriever)
+                .httpClientProperties(properties)
+                .build();
+
+        controller = new LinksolverWrapperController(shibbolethBuilder, resolverService, resolveExecutor);
+        ReflectionTestUtils.setField(controller, "executionMode", "blocking");
+    }
+
+    @After
+    public void tearDown() {
+        linksolver.stop();
+        upstreamExecutor.shutdown();
+        resolveExecutor.shutdown();
+    }
+
+    @Test
+    public void parallelRequestsKeepTheirOwnState() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> redirects = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                String remoteAddress = "10.0." + (i / 256) + "." + (i % 256);
+                MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+                requestParams.add("issn", "1234-5678");
+                // every second request carries a DOI
+                if (i % 2 == 0) {
+                    String doi = "10.1234/article-" + i;
+                    requestParams.add("id", "doi:" + doi);
+                    expected.add("https://publisher.example/" + doi + "#" + remoteAddress);
+                } else
+                    expected.add("https://linksolver.example/fulltext#" + remoteAddress);
+                MockHttpServletRequest request = new MockHttpServletRequest();
+                request.addHeader("remoteAddress", remoteAddress);
+                Callable<String> call = () -> controller.resolve(requestParams, request).get().getUrl();
+                redirects.add(workers.submit(call));
+            }
+            for (int i = 0; i < REQUESTS; i++)
+                assertEquals(expected.get(i), redirects.get(i).get());
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void identicalRequestsShareOneResolution() throws Exception {
+        String doi = "10.1234/popular-article";
+        // the first resolution waits until all other requests joined it
+        when(doiRedirectService.getLinkForDoi(doi)).thenAnswer(invocation -> {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (resolverService.getStatistics().getCoalesced() < THREADS - 1 && System.currentTimeMillis() < deadline)
+                Thread.sleep(1);
+            return "https://publisher.example/" + doi;
+        });
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> redirects = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+                // the same DOI in different notations
+                requestParams.add("id", i % 2 == 0 ? "doi:" + doi : "info:doi/" + doi);
+                requestParams.add("issn", "1234-5678");
+                MockHttpServletRequest request = new MockHttpServletRequest();
+                request.addHeader("remoteAddress", "10.1.0." + i);
+                redirects.add(workers.submit(() -> controller.resolve(requestParams, request).get().getUrl()));
+            }
+            // every request gets the WAYFless URL for its own remote address
+            for (int i = 0; i < THREADS; i++)
+                assertEquals("https://publisher.example/" + doi + "#10.1.0." + i, redirects.get(i).get());
+            verify(doiRedirectService, times(1)).getLinkForDoi(doi);
+            assertEquals(THREADS, resolverService.getStatistics().getRequests());
+            assertEquals(THREADS - 1, resolverService.getStatistics().getCoalesced());
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static void pause() throws InterruptedException {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+    }
+}
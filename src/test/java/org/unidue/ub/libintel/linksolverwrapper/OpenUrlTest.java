@@ -0,0 +1,95 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.model.OpenUrl;
+import org.unidue.ub.libintel.linksolverwrapper.utils.Utilities;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class OpenUrlTest {
+
+    @Test
+    public void parsesInOnePass() {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        requestParams.add("id", "pmid:30218057");
+        requestParams.add("id", "info:doi/10.1016/J.JOI.2018.09.004");
+        requestParams.add("atitle", "{Citation} analysis\nof books");
+        requestParams.add("eissn", "1751-1577");
+        OpenUrl openUrl = OpenUrl.parse(requestParams);
+
+        assertEquals("10.1016/J.JOI.2018.09.004", openUrl.getDoi());
+        assertEquals("Citation} analysis+of books", openUrl.getFirst("atitle"));
+        assertEquals("1751-1577", openUrl.getFirst("issn"));
+        assertEquals("1751-1577", openUrl.getIssn());
+        assertEquals(List.of(), openUrl.get("isbn"));
+        // the request parameters are not modified
+        assertEquals("{Citation} analysis\nof books", requestParams.getFirst("atitle"));
+        assertNull(requestParams.getFirst("issn"));
+    }
+
+    @Test
+    public void encodesLikeTheRequest() {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        requestParams.add("genre", "article");
+        requestParams.add("atitle", "Über Bücher & Zeitschriften");
+        requestParams.add("issn", "");
+        requestParams.add("eissn", "1751-1577");
+        OpenUrl openUrl = OpenUrl.parse(requestParams);
+        requestParams.add("issn", "1751-1577");
+
+        assertEquals(Utilities.mapListToString(requestParams), openUrl.getQueryString());
+        assertSame(openUrl.getQueryString(), openUrl.getQueryString());
+        assertEquals("1751-1577", openUrl.getIssn());
+    }
+
+    @Test
+    public void keysIgnoreOrderAndNotation() {
+        MultiValueMap<String, String> first = new LinkedMultiValueMap<>();
+        first.add("id", "doi:10.1108/JD-05-2018-0073");
+        first.add("volume", " 75 ");
+        first.add("issue", "");
+        MultiValueMap<String, String> second = new LinkedMultiValueMap<>();
+        second.add("volume", "75");
+        second.add("id", "info:doi/10.1108/jd-05-2018-0073");
+
+        assertEquals("&id=doi%3A10.1108%2Fjd-05-2018-0073&volume=75", OpenUrl.parse(first).getKey());
+        assertEquals(OpenUrl.parse(first), OpenUrl.parse(second));
+        assertEquals(OpenUrl.parse(first).hashCode(), OpenUrl.parse(second).hashCode());
+    }
+
+    @Test
+    public void keysDoNotMixUpValuesAndParameters() {
+        MultiValueMap<String, String> single = new LinkedMultiValueMap<>();
+        single.add("atitle", "a&b=c");
+        MultiValueMap<String, String> split = new LinkedMultiValueMap<>();
+        split.add("atitle", "a");
+        split.add("b", "c");
+
+        assertNotEquals(OpenUrl.parse(single).getKey(), OpenUrl.parse(split).getKey());
+        assertNotEquals(OpenUrl.parse(single), OpenUrl.parse(split));
+    }
+
+    @Test
+    public void derivesVariants() {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        requestParams.add("sid", "google");
+        requestParams.add("issn", "00061972");
+        requestParams.add("genre", "article");
+        OpenUrl openUrl = OpenUrl.parse(requestParams);
+        OpenUrl interlibraryLoan = openUrl.with(Map.of("sid", "464_465:Zeitschriftenkatalog", "genre", "journal"));
+
+        assertEquals("?sid=464_465%3AZeitschriftenkatalog&issn=00061972&genre=journal", interlibraryLoan.getQueryString());
+        assertEquals("?sid=google&issn=00061972&genre=article", openUrl.getQueryString());
+        assertNotEquals(openUrl, interlibraryLoan);
+        // the JOP page needs the ISSN with a '-' in the middle
+        assertEquals("0006-1972", openUrl.getIssn());
+    }
+}
@@ -0,0 +1,59 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.service.PrimoFullTextUrlService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Looks up the full texts of several ISBNs with one Primo query and checks that the answers are cached per ISBN.
+ */
+public class PrimoFullTextUrlServiceTest {
+
+    // one document without full text, one found by its ISBN-10
+    private final static String RESPONSE = "{\"info\": {\"total\": 2}, \"docs\": ["
+            + "{\"pnx\": {\"addata\": {\"isbn\": [\"9783658213459\"]}}, \"delivery\": {\"availabilityLinksUrl\": []}},"
+            + "{\"pnx\": {\"addata\": {\"isbn\": [\"3-540-40334-5\"], \"eisbn\": [\"9783540403340\"]}}, "
+            + "\"delivery\": {\"availabilityLinksUrl\": [\"https://ebooks.example/978-3-540-40334-0\"]}}]}";
+
+    private LinksolverStub primo;
+
+    private PrimoFullTextUrlService primoFullTextUrlService;
+
+    @Before
+    public void setUp() throws Exception {
+        primo = new LinksolverStub(RESPONSE, 0);
+        primoFullTextUrlService = new PrimoFullTextUrlService(new UpstreamHttpClient(new HttpClientProperties()), new CacheRegistry(), 100);
+        ReflectionTestUtils.setField(primoFullTextUrlService, "primoApiUrl", primo.getUrl() + "?vid=TEST");
+        ReflectionTestUtils.setField(primoFullTextUrlService, "primoApiKey", "key");
+        ReflectionTestUtils.setField(primoFullTextUrlService, "ttl", 3600L);
+        ReflectionTestUtils.setField(primoFullTextUrlService, "negativeTtl", 3600L);
+    }
+
+    @After
+    public void tearDown() {
+        primo.stop();
+    }
+
+    @Test
+    public void combinesIsbnsAndCachesPerIsbn() throws Exception {
+        assertEquals("https://ebooks.example/978-3-540-40334-0",
+                primoFullTextUrlService.getFullTextUrl(List.of("978-3-658-21345-9", "3540403345", "no isbn")).get());
+
+        // answered from the cache
+        primo.stop();
+        assertEquals("https://ebooks.example/978-3-540-40334-0", primoFullTextUrlService.getFullTextUrl(List.of("9783540403340")).get());
+        assertNull(primoFullTextUrlService.getFullTextUrl(List.of("9783658213459")).get());
+        // errors are not cached
+        assertNull(primoFullTextUrlService.getFullTextUrl(List.of("9780306406157")).get());
+    }
+}
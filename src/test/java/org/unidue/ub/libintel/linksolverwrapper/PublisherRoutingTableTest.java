@@ -0,0 +1,86 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.model.PublisherRoute;
+import org.unidue.ub.libintel.linksolverwrapper.service.PublisherRoutingTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Learns publisher hosts from redirects and checks that only prefixes with enough consistent observations are used,
+ * that the table follows a publisher moving to another host and that it survives a restart.
+ */
+public class PublisherRoutingTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PublisherRoutingTable publisherRoutingTable;
+
+    @Before
+    public void setUp() {
+        publisherRoutingTable = createTable();
+    }
+
+    @Test
+    public void usesOnlyConsistentPrefixes() {
+        for (int i = 0; i < 4; i++)
+            publisherRoutingTable.learn("10.1016/j.heares.2019.0" + i, "https://linkinghub.elsevier.com/retrieve/pii/" + i);
+        // not enough observations yet
+        assertNull(publisherRoutingTable.findHost("10.1016/j.heares.2019.10"));
+        publisherRoutingTable.learn("10.1016/J.HEARES.2019.04", "https://linkinghub.elsevier.com/retrieve/pii/4");
+        assertEquals("linkinghub.elsevier.com", publisherRoutingTable.findHost("10.1016/j.heares.2019.10"));
+
+        // a prefix shared by two platforms is not used
+        for (int i = 0; i < 10; i++)
+            publisherRoutingTable.learn("10.1007/" + i, i % 3 == 0 ? "https://www.springer.com/" + i : "https://link.springer.com/article/" + i);
+        assertNull(publisherRoutingTable.findHost("10.1007/s00000-019-0001"));
+        PublisherRoute route = publisherRoutingTable.getRoute("10.1007");
+        assertEquals("link.springer.com", route.getHost());
+        assertEquals(10, route.getObservations());
+        assertEquals(0.6, route.getConfidence(), 1e-9);
+        assertFalse(route.isConfident());
+
+        assertNull(publisherRoutingTable.findHost("no-doi"));
+        assertEquals(2, publisherRoutingTable.getRoutes().size());
+    }
+
+    @Test
+    public void followsPublisherMovingToAnotherHost() {
+        for (int i = 0; i < 100; i++)
+            publisherRoutingTable.learn("10.1234/" + i, "https://old.publisher.example/" + i);
+        for (int i = 0; i < 300; i++)
+            publisherRoutingTable.learn("10.1234/" + i, "https://new.publisher.example/" + i);
+        assertEquals("new.publisher.example", publisherRoutingTable.findHost("10.1234/next"));
+    }
+
+    @Test
+    public void survivesRestart() {
+        String file = folder.getRoot().toPath().resolve("publishers.tsv").toString();
+        ReflectionTestUtils.setField(publisherRoutingTable, "file", file);
+        for (int i = 0; i < 5; i++)
+            publisherRoutingTable.learn("10.1016/" + i, "https://linkinghub.elsevier.com/retrieve/pii/" + i);
+        ReflectionTestUtils.invokeMethod(publisherRoutingTable, "save");
+
+        PublisherRoutingTable restarted = createTable();
+        ReflectionTestUtils.setField(restarted, "file", file);
+        ReflectionTestUtils.invokeMethod(restarted, "load");
+        assertEquals("linkinghub.elsevier.com", restarted.findHost("10.1016/j.heares.2019.01.001"));
+        assertEquals(5, restarted.getRoute("10.1016").getObservations());
+    }
+
+    private static PublisherRoutingTable createTable() {
+        PublisherRoutingTable publisherRoutingTable = new PublisherRoutingTable();
+        ReflectionTestUtils.setField(publisherRoutingTable, "minObservations", 5L);
+        ReflectionTestUtils.setField(publisherRoutingTable, "minConfidence", 0.9);
+        ReflectionTestUtils.setField(publisherRoutingTable, "maxObservations", 100L);
+        ReflectionTestUtils.setField(publisherRoutingTable, "file", "");
+        return publisherRoutingTable;
+    }
+}
@@ -0,0 +1,138 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.ShibbolethData;
+import org.unidue.ub.libintel.linksolverwrapper.service.PublisherRoutingTable;
+import org.unidue.ub.libintel.linksolverwrapper.service.ShibbolethDataIndex;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Follows redirect chains served by a local server and checks that HEAD requests are used where possible, that each
+ * hop is cached on its own and that the chain ends at hosts with Shibboleth data and after the maximum number of hops.
+ */
+public class RedirectLinkRetrieverTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    // the requests by method and path
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    private ShibbolethDataIndex shibbolethDataIndex;
+
+    private RedirectLinkRetriever redirectLinkRetriever;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        // two resolver links sharing the intermediate hop, like doi.org and linkinghub.elsevier.com
+        redirect("/doi/1", baseUrl + "/hub/1", false);
+        redirect("/doi/2", baseUrl + "/hub/1", false);
+        redirect("/hub/1", "/article/1", false);
+        redirect("/nohead", baseUrl + "/article/1", true);
+        redirect("/licensed", "http://localhost:" + server.getAddress().getPort() + "/login", false);
+        redirect("/loop", "/loop", false);
+        server.createContext("/article", exchange -> {
+            record(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        shibbolethDataIndex = mock(ShibbolethDataIndex.class);
+        redirectLinkRetriever = new RedirectLinkRetriever(new UpstreamHttpClient(new HttpClientProperties()),
+                new PublisherRoutingTable(), shibbolethDataIndex, new CacheRegistry(), 100);
+        ReflectionTestUtils.setField(redirectLinkRetriever, "maxHops", 5);
+        ReflectionTestUtils.setField(redirectLinkRetriever, "maxTime", 5000L);
+        ReflectionTestUtils.setField(redirectLinkRetriever, "ttl", 3600L);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void followsChainsAndCachesEachHop() {
+        assertEquals(baseUrl + "/article/1", redirectLinkRetriever.getRedirectLocation(Upstream.OTHER, baseUrl + "/doi/1"));
+        assertEquals(baseUrl + "/article/1", redirectLinkRetriever.getRedirectLocation(Upstream.OTHER, baseUrl + "/doi/2"));
+        assertEquals(baseUrl + "/article/1", redirectLinkRetriever.getRedirectLocation(Upstream.OTHER, baseUrl + "/doi/1"));
+
+        // the shared hops were requested once, all with HEAD
+        assertEquals(1, count("HEAD", "/doi/1"));
+        assertEquals(1, count("HEAD", "/doi/2"));
+        assertEquals(1, count("HEAD", "/hub/1"));
+        assertEquals(1, count("HEAD", "/article/1"));
+        assertEquals(0, count("GET", "/hub/1"));
+    }
+
+    @Test
+    public void fallsBackToGet() {
+        assertEquals(baseUrl + "/article/1", redirectLinkRetriever.getLinkFromRedirect(Upstream.OTHER, baseUrl + "/nohead"));
+        assertEquals(1, count("HEAD", "/nohead"));
+        assertEquals(1, count("GET", "/nohead"));
+    }
+
+    @Test
+    public void stopsAtShibbolethHostsAndLoops() {
+        when(shibbolethDataIndex.find("localhost")).thenReturn(new ShibbolethData());
+        String licensed = "http://localhost:" + server.getAddress().getPort() + "/login";
+        assertEquals(licensed, redirectLinkRetriever.getRedirectLocation(Upstream.OTHER, baseUrl + "/licensed"));
+
+        assertNull(redirectLinkRetriever.getRedirectLocation(Upstream.OTHER, baseUrl + "/loop"));
+        assertEquals(1, count("HEAD", "/loop"));
+        // links without redirect are returned unchanged
+        assertEquals(baseUrl + "/article/2", redirectLinkRetriever.getLinkFromRedirect(Upstream.OTHER, baseUrl + "/article/2"));
+    }
+
+    @Test
+    public void limitsTheNumberOfHops() {
+        ReflectionTestUtils.setField(redirectLinkRetriever, "maxHops", 2);
+        assertEquals(baseUrl + "/article/1", redirectLinkRetriever.getRedirectLocation(Upstream.OTHER, baseUrl + "/doi/1"));
+        // the end of the chain was not requested
+        assertEquals(0, count("HEAD", "/article/1"));
+    }
+
+    private void redirect(String path, String location, boolean refuseHead) {
+        server.createContext(path, exchange -> {
+            record(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+            if (refuseHead && exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+            } else {
+                exchange.getResponseHeaders().put("Location", List.of(location));
+                exchange.sendResponseHeaders(302, -1);
+            }
+            exchange.close();
+        });
+    }
+
+    private void record(String method, String path) {
+        requests.computeIfAbsent(method + " " + path, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private int count(String method, String path) {
+        AtomicInteger counter = requests.get(method + " " + path);
+        return counter == null ? 0 : counter.get();
+    }
+}
@@ -0,0 +1,58 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.service.RegistrationAgencyService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Looks up the registration agency of a DOI prefix from a local stub of the DOI resolver and checks that unknown
+ * prefixes are answered without waiting for the lookup.
+ */
+public class RegistrationAgencyServiceTest {
+
+    private LinksolverStub doiResolver;
+
+    private RegistrationAgencyService registrationAgencyService;
+
+    @Before
+    public void setUp() throws Exception {
+        doiResolver = new LinksolverStub("[\n  {\n    \"DOI\": \"10.5281\",\n    \"RA\": \"DataCite\"\n  }\n]", 0);
+        registrationAgencyService = new RegistrationAgencyService(new UpstreamHttpClient(new HttpClientProperties()), new CacheRegistry(), 100);
+        ReflectionTestUtils.setField(registrationAgencyService, "registrationAgencyUrl", doiResolver.getUrl() + "/");
+        ReflectionTestUtils.setField(registrationAgencyService, "ttl", 3600L);
+    }
+
+    @After
+    public void tearDown() {
+        doiResolver.stop();
+    }
+
+    @Test
+    public void learnsAgencyOfPrefix() {
+        // the first DOI of the prefix is not delayed by the lookup
+        assertFalse(registrationAgencyService.isDatacite("10.5281/zenodo.1234"));
+        assertEquals(RegistrationAgencyService.DATACITE, registrationAgencyService.lookup("10.5281").join());
+
+        doiResolver.stop();
+        assertTrue(registrationAgencyService.isDatacite("10.5281/zenodo.5678"));
+        assertEquals("DataCite", registrationAgencyService.getAgency("10.5281/ZENODO.1"));
+        assertNull(registrationAgencyService.getAgency("no-doi"));
+    }
+
+    @Test
+    public void errorsAreNotCached() {
+        doiResolver.stop();
+        assertNull(registrationAgencyService.lookup("10.5281").join());
+        assertNull(registrationAgencyService.getAgency("10.5281/zenodo.1234"));
+    }
+}
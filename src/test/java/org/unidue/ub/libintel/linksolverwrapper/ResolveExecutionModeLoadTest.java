@@ -0,0 +1,130 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.servlet.view.RedirectView;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.controller.LinksolverWrapperController;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares the 'blocking' and the 'async' execution mode of /resolve under load. A small pool of worker threads
+ * stands in for the servlet container, the linksolver is a local server answering after a fixed delay. The resolve
+ * pool gets as many threads as the workers, as the async mode still holds a pool thread per request: it releases the
+ * servlet threads, but does not resolve faster with the same number of threads.
+ */
+public class ResolveExecutionModeLoadTest {
+
+    private final static int WORKER_THREADS = 10;
+
+    private final static int REQUESTS = 100;
+
+    private final static int LINKSOLVER_DELAY = 200;
+
+    private final static Logger log = LoggerFactory.getLogger(ResolveExecutionModeLoadTest.class);
+
+    private LinksolverStub linksolver;
+
+    private ThreadPoolTaskExecutor upstreamExecutor;
+
+    private ThreadPoolTaskExecutor resolveExecutor;
+
+    private LinksolverWrapperController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        linksolver = new LinksolverStub("<html><body><a href=\"/order\">Fernleihe</a></body></html>", LINKSOLVER_DELAY);
+
+        HttpClientProperties.Settings settings = new HttpClientProperties.Settings();
+        settings.setMaxConnections(REQUESTS);
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setUpstreams(Collections.singletonMap("linksolver", settings));
+
+        LinksolverWrapperConfiguration configuration = new LinksolverWrapperConfiguration();
+        upstreamExecutor = configuration.upstreamExecutor(REQUESTS);
+        resolveExecutor = configuration.resolveExecutor(WORKER_THREADS);
+
+        ResolverService resolverService = new ResolverServiceBuilder(linksolver.getUrl(), upstreamExecutor)
+                .httpClientProperties(properties)
+                .build();
+
+        controller = new LinksolverWrapperController(mock(ShibbolethBuilder.class), resolverService, resolveExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        linksolver.stop();
+        upstreamExecutor.shutdown();
+        resolveExecutor.shutdown();
+    }
+
+    @Test
+    public void asyncModeReleasesWorkerThreads() throws Exception {
+        long[] blocking = runLoad("blocking");
+        long[] async = runLoad("async");
+        log.info(REQUESTS + " requests with " + WORKER_THREADS + " worker and resolve threads and " + LINKSOLVER_DELAY
+                + " ms linksolver latency: blocking " + blocking[0] + " ms until the workers are free, " + blocking[1]
+                + " ms until resolved, async " + async[0] + " ms until the workers are free, " + async[1] + " ms until resolved");
+
+        // both modes need REQUESTS / WORKER_THREADS rounds of linksolver latency with the same number of threads
+        long minimum = (long) REQUESTS / WORKER_THREADS * LINKSOLVER_DELAY;
+        assertTrue(blocking[1] >= minimum);
+        assertTrue(async[1] >= minimum);
+        // but only the blocking mode holds the workers for that time
+        assertTrue(blocking[0] >= minimum);
+        assertTrue(async[0] < minimum / 2);
+    }
+
+    /**
+     * sends the requests through the worker pool and waits for all redirects
+     *
+     * @param executionMode the execution mode of the controller
+     * @return the time in milliseconds until all workers have returned and until all requests are resolved
+     */
+    private long[] runLoad(String executionMode) throws Exception {
+        ReflectionTestUtils.setField(controller, "executionMode", executionMode);
+        ExecutorService workers = Executors.newFixedThreadPool(WORKER_THREADS);
+        try {
+            long start = System.currentTimeMillis();
+            List<Future<CompletableFuture<RedirectView>>> submitted = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+                requestParams.add("issn", "1234-567" + (i % 10));
+                // distinct requests, so that none of them is answered by the resolution of another one
+                requestParams.add("atitle", executionMode + "-article-" + i);
+                submitted.add(workers.submit(() -> controller.resolve(requestParams, new MockHttpServletRequest())));
+            }
+            List<CompletableFuture<RedirectView>> pending = new ArrayList<>();
+            for (Future<CompletableFuture<RedirectView>> future : submitted)
+                pending.add(future.get());
+            long dispatched = System.currentTimeMillis() - start;
+            for (CompletableFuture<RedirectView> future : pending) {
+                RedirectView redirectView = future.get();
+                assertTrue(redirectView.getUrl().startsWith("https://www.digibib.net/openurl"));
+            }
+            return new long[]{dispatched, System.currentTimeMillis() - start};
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.service.AccessStatisticsService;
+import org.unidue.ub.libintel.linksolverwrapper.service.DataciteService;
+import org.unidue.ub.libintel.linksolverwrapper.service.DoiRedirectService;
+import org.unidue.ub.libintel.linksolverwrapper.service.LinksolverHoldingsCache;
+import org.unidue.ub.libintel.linksolverwrapper.service.PrimoFullTextUrlService;
+import org.unidue.ub.libintel.linksolverwrapper.service.PublisherRoutingTable;
+import org.unidue.ub.libintel.linksolverwrapper.service.RegistrationAgencyService;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolutionCacheProperties;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ResolutionMetrics;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+
+import java.util.concurrent.Executor;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * builds a {@link ResolverService} for the tests against the given linksolver, with the default timeouts of the
+ * properties. Collaborators not given are mocks, the caches are empty and the HTTP client uses the default settings.
+ */
+public class ResolverServiceBuilder {
+
+    private final String linksolverUrl;
+
+    private final Executor upstreamExecutor;
+
+    private ShibbolethBuilder shibbolethBuilder = mock(ShibbolethBuilder.class);
+
+    private UnpaywallService unpaywallService = mock(UnpaywallService.class);
+
+    private DoiRedirectService doiRedirectService = mock(DoiRedirectService.class);
+
+    private RedirectLinkRetriever redirectLinkRetriever = mock(RedirectLinkRetriever.class);
+
+    private HttpClientProperties httpClientProperties = new HttpClientProperties();
+
+    private ResolutionCacheProperties resolutionCacheProperties = new ResolutionCacheProperties();
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LinksolverHoldingsCache holdingsCache = new LinksolverHoldingsCache(new CacheRegistry(), mock(SharedCacheService.class), 100);
+
+    private PublisherRoutingTable publisherRoutingTable = new PublisherRoutingTable();
+
+    private RegistrationAgencyService registrationAgencyService = mock(RegistrationAgencyService.class);
+
+    private DataciteService dataciteService = mock(DataciteService.class);
+
+    /**
+     * @param linksolverUrl    the url of the linksolver, e.g. of a {@link LinksolverStub}
+     * @param upstreamExecutor the executor of the upstream calls
+     */
+    public ResolverServiceBuilder(String linksolverUrl, Executor upstreamExecutor) {
+        this.linksolverUrl = linksolverUrl;
+        this.upstreamExecutor = upstreamExecutor;
+    }
+
+    public ResolverServiceBuilder shibbolethBuilder(ShibbolethBuilder shibbolethBuilder) {
+        this.shibbolethBuilder = shibbolethBuilder;
+        return this;
+    }
+
+    public ResolverServiceBuilder unpaywallService(UnpaywallService unpaywallService) {
+        this.unpaywallService = unpaywallService;
+        return this;
+    }
+
+    public ResolverServiceBuilder doiRedirectService(DoiRedirectService doiRedirectService) {
+        this.doiRedirectService = doiRedirectService;
+        return this;
+    }
+
+    public ResolverServiceBuilder redirectLinkRetriever(RedirectLinkRetriever redirectLinkRetriever) {
+        this.redirectLinkRetriever = redirectLinkRetriever;
+        return this;
+    }
+
+    public ResolverServiceBuilder httpClientProperties(HttpClientProperties httpClientProperties) {
+        this.httpClientProperties = httpClientProperties;
+        return this;
+    }
+
+    public ResolverServiceBuilder resolutionCacheProperties(ResolutionCacheProperties resolutionCacheProperties) {
+        this.resolutionCacheProperties = resolutionCacheProperties;
+        return this;
+    }
+
+    public ResolverServiceBuilder meterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        return this;
+    }
+
+    public ResolverServiceBuilder holdingsCache(LinksolverHoldingsCache holdingsCache) {
+        this.holdingsCache = holdingsCache;
+        return this;
+    }
+
+    public ResolverServiceBuilder publisherRoutingTable(PublisherRoutingTable publisherRoutingTable) {
+        this.publisherRoutingTable = publisherRoutingTable;
+        return this;
+    }
+
+    public ResolverServiceBuilder registrationAgencyService(RegistrationAgencyService registrationAgencyService) {
+        this.registrationAgencyService = registrationAgencyService;
+        return this;
+    }
+
+    public ResolverServiceBuilder dataciteService(DataciteService dataciteService) {
+        this.dataciteService = dataciteService;
+        return this;
+    }
+
+    public ResolverService build() {
+        ResolverService resolverService = new ResolverService(
+                shibbolethBuilder,
+                unpaywallService,
+                mock(PrimoFullTextUrlService.class),
+                doiRedirectService,
+                redirectLinkRetriever,
+                new UpstreamHttpClient(httpClientProperties),
+                upstreamExecutor,
+                resolutionCacheProperties,
+                new CacheRegistry(),
+                new ResolutionMetrics(meterRegistry),
+                mock(AccessStatisticsService.class),
+                holdingsCache,
+                publisherRoutingTable,
+                registrationAgencyService,
+                dataciteService);
+        ReflectionTestUtils.setField(resolverService, "linksolverUrl", linksolverUrl);
+        ReflectionTestUtils.setField(resolverService, "doiTimeout", 5000L);
+        ReflectionTestUtils.setField(resolverService, "unpaywallTimeout", 5000L);
+        ReflectionTestUtils.setField(resolverService, "linksolverTimeout", 60000L);
+        ReflectionTestUtils.setField(resolverService, "primoTimeout", 5000L);
+        ReflectionTestUtils.setField(resolverService, "dataciteTimeout", 5000L);
+        return resolverService;
+    }
+}
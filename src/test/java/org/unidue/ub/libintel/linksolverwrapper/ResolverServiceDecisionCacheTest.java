@@ -0,0 +1,351 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.client.DataciteClient;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.AccessRoute;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionContext;
+import org.unidue.ub.libintel.linksolverwrapper.model.ResolutionResult;
+import org.unidue.ub.libintel.linksolverwrapper.model.Unpaywall;
+import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallResponse;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessType;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessUrl;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteData;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteMetadata;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteResponse;
+import org.unidue.ub.libintel.linksolverwrapper.model.datacite.DataciteRights;
+import org.unidue.ub.libintel.linksolverwrapper.service.DataciteService;
+import org.unidue.ub.libintel.linksolverwrapper.service.DoiRedirectService;
+import org.unidue.ub.libintel.linksolverwrapper.service.LinksolverHoldingsCache;
+import org.unidue.ub.libintel.linksolverwrapper.service.PublisherRoutingTable;
+import org.unidue.ub.libintel.linksolverwrapper.service.RegistrationAgencyService;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolutionCacheProperties;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that repeated requests are answered from the decision cache, while the WAYFless URL is still built for each
+ * remote address, and that degraded decisions are not cached. A linksolver with open circuit breaker is skipped, as
+ * well as the linksolver for journals with known holdings. If the publisher of the DOI prefix is known, the Elsevier
+ * order page does not wait for the DOI resolver. DataCite DOIs are answered by DataCite instead of Unpaywall, and
+ * while Unpaywall is not available only its local snapshot is asked.
+ */
+public class ResolverServiceDecisionCacheTest {
+
+    private final static String DOI = "10.1234/cached-article";
+
+    private LinksolverStub linksolver;
+
+    private ThreadPoolTaskExecutor upstreamExecutor;
+
+    private DoiRedirectService doiRedirectService;
+
+    private RedirectLinkRetriever redirectLinkRetriever;
+
+    private ResolutionCacheProperties resolutionCacheProperties;
+
+    private ResolverService resolverService;
+
+    private LinksolverHoldingsCache holdingsCache;
+
+    private PublisherRoutingTable publisherRoutingTable;
+
+    private UnpaywallService unpaywallService;
+
+    private RegistrationAgencyService registrationAgencyService;
+
+    private DataciteClient dataciteClient;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        linksolver = new LinksolverStub("<html><body><a href=\"/fulltext\">Link zum Artikel</a></body></html>", 0);
+        doiRedirectService = mock(DoiRedirectService.class);
+        when(doiRedirectService.getLinkForDoi(anyString())).thenAnswer(invocation -> "https://publisher.example/" + invocation.getArgument(0));
+        redirectLinkRetriever = mock(RedirectLinkRetriever.class);
+        when(redirectLinkRetriever.getLinkFromRedirect(eq(Upstream.LINKSOLVER), anyString())).thenReturn("https://linksolver.example/fulltext");
+        // mark the redirect with the remote address it was built for
+        ShibbolethBuilder shibbolethBuilder = mock(ShibbolethBuilder.class);
+        when(shibbolethBuilder.buildWayflessUrl(anyString(), anyString()))
+                .thenAnswer(invocation -> new WayflessUrl(invocation.getArgument(0) + "#" + invocation.getArgument(1), WayflessType.SP_SIDE));
+
+        // the circuit breakers of the linksolver and of Unpaywall open on the first failure
+        HttpClientProperties.Settings settings = new HttpClientProperties.Settings();
+        settings.setMinimumCalls(1);
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setUpstreams(Map.of("linksolver", settings, "unpaywall", settings));
+
+        upstreamExecutor = new LinksolverWrapperConfiguration().upstreamExecutor(8);
+        resolutionCacheProperties = new ResolutionCacheProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        holdingsCache = new LinksolverHoldingsCache(new CacheRegistry(), mock(SharedCacheService.class), 100);
+        publisherRoutingTable = new PublisherRoutingTable();
+        ReflectionTestUtils.setField(publisherRoutingTable, "minObservations", 5L);
+        ReflectionTestUtils.setField(publisherRoutingTable, "minConfidence", 0.9);
+        ReflectionTestUtils.setField(publisherRoutingTable, "maxObservations", 1000L);
+        unpaywallService = mock(UnpaywallService.class);
+        registrationAgencyService = mock(RegistrationAgencyService.class);
+        dataciteClient = mock(DataciteClient.class);
+        DataciteService dataciteService = new DataciteService(dataciteClient, new CacheRegistry(), 100);
+        ReflectionTestUtils.setField(dataciteService, "ttl", 3600L);
+        resolverService = new ResolverServiceBuilder(linksolver.getUrl(), upstreamExecutor)
+                .shibbolethBuilder(shibbolethBuilder)
+                .unpaywallService(unpaywallService)
+                .doiRedirectService(doiRedirectService)
+                .redirectLinkRetriever(redirectLinkRetriever)
+                .httpClientProperties(properties)
+                .resolutionCacheProperties(resolutionCacheProperties)
+                .meterRegistry(meterRegistry)
+                .holdingsCache(holdingsCache)
+                .publisherRoutingTable(publisherRoutingTable)
+                .registrationAgencyService(registrationAgencyService)
+                .dataciteService(dataciteService)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        linksolver.stop();
+        upstreamExecutor.shutdown();
+    }
+
+    @Test
+    public void repeatedRequestsSkipTheUpstreams() {
+        assertEquals("https://publisher.example/" + DOI + "#10.0.0.1", resolve("doi:" + DOI, "10.0.0.1").getUrl());
+        // the same parameters in another notation and order
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        requestParams.add("issn", " 1234-5678 ");
+        requestParams.add("id", "info:doi/" + DOI.toUpperCase());
+        ResolutionResult result = resolverService.resolve(new ResolutionContext(requestParams, "linksolver", "10.0.0.2"));
+
+        assertEquals(AccessRoute.FULLTEXT, result.getRoute());
+        assertEquals("https://publisher.example/" + DOI + "#10.0.0.2", result.getUrl());
+        verify(doiRedirectService, times(1)).getLinkForDoi(anyString());
+        verify(redirectLinkRetriever, times(1)).getLinkFromRedirect(eq(Upstream.LINKSOLVER), anyString());
+
+        // both resolutions are timed, only the first one called the upstreams
+        assertEquals(1, meterRegistry.get("libintel.resolve").tags("route", "fulltext", "source", "resolved").timer().count());
+        assertEquals(1, meterRegistry.get("libintel.resolve").tags("route", "fulltext", "source", "cached").timer().count());
+        assertEquals(1, meterRegistry.get("libintel.resolve.stage").tags("stage", "doi", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("libintel.resolve.stage").tags("stage", "linksolver-parse", "outcome", "fulltext").timer().count());
+        assertEquals(2, meterRegistry.get("libintel.resolve.stage").tags("stage", "shibboleth", "outcome", "wayfless").timer().count());
+    }
+
+    @Test
+    public void decisionsAreInvalidatedByRoute() {
+        resolve("doi:" + DOI, "10.0.0.1");
+        resolverService.invalidateDecisions(AccessRoute.JOURNAL);
+        resolve("doi:" + DOI, "10.0.0.1");
+        verify(doiRedirectService, times(1)).getLinkForDoi(DOI);
+
+        resolverService.invalidateDecisions(AccessRoute.FULLTEXT);
+        resolve("doi:" + DOI, "10.0.0.1");
+        verify(doiRedirectService, times(2)).getLinkForDoi(DOI);
+    }
+
+    @Test
+    public void routesWithoutTimeToLiveAreNotCached() {
+        resolutionCacheProperties.setTtl(Map.of("fulltext", 0L));
+        resolve("doi:" + DOI, "10.0.0.1");
+        resolve("doi:" + DOI, "10.0.0.1");
+        verify(doiRedirectService, times(2)).getLinkForDoi(DOI);
+    }
+
+    @Test
+    public void degradedDecisionsAreNotCached() {
+        // the doi resolver misses its deadline, the doi.org url is used instead
+        ReflectionTestUtils.setField(resolverService, "doiTimeout", 20L);
+        when(doiRedirectService.getLinkForDoi(DOI)).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return "https://publisher.example/" + DOI;
+        });
+        assertEquals("https://doi.org/" + DOI + "#10.0.0.1", resolve("doi:" + DOI, "10.0.0.1").getUrl());
+        resolve("doi:" + DOI, "10.0.0.1");
+        verify(doiRedirectService, times(2)).getLinkForDoi(DOI);
+        assertEquals(2.0, meterRegistry.get("libintel.resolve.deadline.missed").tags("stage", "doi").counter().count(), 0.0);
+    }
+
+    @Test
+    public void unavailableLinksolverIsSkipped() {
+        linksolver.stop();
+        // the linksolver cannot be reached, the doi url is used
+        ResolutionResult result = resolve("doi:" + DOI, "10.0.0.1");
+        assertEquals(AccessRoute.DOI, result.getRoute());
+        assertEquals("https://publisher.example/" + DOI, result.getUrl());
+
+        // the circuit breaker is open now, the linksolver is not called and the decision is not cached
+        result = resolve("doi:" + DOI, "10.0.0.1");
+        assertEquals(AccessRoute.DOI, result.getRoute());
+        assertEquals("Upstream unavailable", result.getStatus());
+        resolve("doi:" + DOI, "10.0.0.1");
+        verify(doiRedirectService, times(3)).getLinkForDoi(DOI);
+        assertEquals(2.0, meterRegistry.get("libintel.resolve.short.circuited").tags("upstream", "linksolver").counter().count(), 0.0);
+    }
+
+    @Test
+    public void knownHoldingsSkipTheLinksolver() throws Exception {
+        ReflectionTestUtils.setField(holdingsCache, "ttl", 3600L);
+        linksolver.stop();
+        linksolver = new LinksolverStub("<html><body><a href=\"/jop\">zur Zeitschrift</a></body></html>", 0);
+        ReflectionTestUtils.setField(resolverService, "linksolverUrl", linksolver.getUrl());
+        assertEquals(AccessRoute.JOURNAL, resolveArticle("first article", "2018").getRoute());
+
+        // another article of the same journal and year is answered without the linksolver
+        linksolver.stop();
+        assertEquals(AccessRoute.JOURNAL, resolveArticle("second article", "2018-05").getRoute());
+        // another year needs the linksolver
+        assertEquals(AccessRoute.LINKSOLVER, resolveArticle("third article", "2019").getRoute());
+
+        holdingsCache.invalidate("03785955");
+        assertEquals(AccessRoute.LINKSOLVER, resolveArticle("fourth article", "2018").getRoute());
+    }
+
+    @Test
+    public void knownPublisherDoesNotWaitForTheDoiResolver() throws Exception {
+        linksolver.stop();
+        linksolver = new LinksolverStub("<html><body><a href=\"/fernleihe\">Fernleihe</a></body></html>", 0);
+        ReflectionTestUtils.setField(resolverService, "linksolverUrl", linksolver.getUrl());
+        for (int i = 0; i < 5; i++)
+            publisherRoutingTable.learn("10.1016/j.heares.2019.0" + i, "https://linkinghub.elsevier.com/retrieve/pii/" + i);
+        when(doiRedirectService.getLinkForDoi(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return "https://linkinghub.elsevier.com/retrieve/pii/S0378595518303691";
+        });
+
+        long start = System.nanoTime();
+        ResolutionResult result = resolve("doi:10.1016/j.heares.2019.01.001", "10.0.0.1");
+        assertEquals(AccessRoute.ELSEVIER_ORDER, result.getRoute());
+        assertEquals("https://www.uni-due.de/ub/elsevierersatz.php?doi=10.1016/j.heares.2019.01.001&source=linksolver", result.getUrl());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        // without a known publisher, the DOI resolver decides
+        result = resolve("doi:10.1234/interlibrary-loan", "10.0.0.1");
+        assertEquals(AccessRoute.ELSEVIER_ORDER, result.getRoute());
+    }
+
+    @Test
+    public void dataciteDoisSkipUnpaywall() {
+        String dataDoi = "10.5281/zenodo.1234";
+        when(registrationAgencyService.isDatacite(dataDoi)).thenReturn(true);
+        when(dataciteClient.getDataciteData(dataDoi)).thenReturn(dataciteResponse("https://zenodo.org/record/1234", "info:eu-repo/semantics/openAccess"));
+        ResolutionResult result = resolve("doi:" + dataDoi, "10.0.0.1");
+        assertEquals(AccessRoute.OPEN_ACCESS, result.getRoute());
+        assertEquals("https://zenodo.org/record/1234", result.getUrl());
+
+        // without open access rights, the landing page is used like the doi url
+        String restrictedDoi = "10.5281/zenodo.5678";
+        when(registrationAgencyService.isDatacite(restrictedDoi)).thenReturn(true);
+        when(dataciteClient.getDataciteData(restrictedDoi)).thenReturn(dataciteResponse("https://zenodo.org/record/5678", "info:eu-repo/semantics/restrictedAccess"));
+        result = resolve("doi:" + restrictedDoi, "10.0.0.1");
+        assertEquals(AccessRoute.FULLTEXT, result.getRoute());
+        assertEquals("https://zenodo.org/record/5678#10.0.0.1", result.getUrl());
+
+        verify(unpaywallService, never()).getUnpaywallResponse(anyString());
+        verify(doiRedirectService, never()).getLinkForDoi(anyString());
+        assertEquals(2, meterRegistry.get("libintel.resolve.stage").tags("stage", "datacite", "outcome", "success").timer().count());
+    }
+
+    @Test
+    public void unavailableUnpaywallIsAnsweredFromTheSnapshot() {
+        UpstreamHttpClient upstreamHttpClient = (UpstreamHttpClient) ReflectionTestUtils.getField(resolverService, "upstreamHttpClient");
+        try {
+            upstreamHttpClient.get(Upstream.UNPAYWALL, "http://127.0.0.1:1/");
+            fail("Unpaywall was reachable");
+        } catch (IOException expected) {
+            // the circuit breaker is open now
+        }
+        UnpaywallResponse snapshotResponse = new UnpaywallResponse();
+        snapshotResponse.setResults(new Unpaywall[]{freeCopy("https://repository.example/" + DOI)});
+        when(unpaywallService.getSnapshotResponse(DOI)).thenReturn(snapshotResponse);
+        when(unpaywallService.getFreeUrl(eq(snapshotResponse), anyString())).thenCallRealMethod();
+
+        ResolutionResult result = resolve("doi:" + DOI, "10.0.0.1");
+        assertEquals(AccessRoute.OPEN_ACCESS, result.getRoute());
+        assertEquals("https://repository.example/" + DOI, result.getUrl());
+        verify(unpaywallService, never()).getUnpaywallResponse(anyString());
+        assertEquals(1.0, meterRegistry.get("libintel.resolve.short.circuited").tags("upstream", "unpaywall").counter().count(), 0.0);
+    }
+
+    @Test
+    public void openAccessCopyOnThePublisherHostIsPreferred() {
+        // unpaywall answers first and lists a repository copy before the copy on the publisher platform
+        UnpaywallResponse unpaywallResponse = new UnpaywallResponse();
+        unpaywallResponse.setResults(new Unpaywall[]{freeCopy("https://repository.example/" + DOI), freeCopy("https://publisher.example/" + DOI + "/pdf")});
+        when(unpaywallService.getUnpaywallResponse(DOI)).thenReturn(unpaywallResponse);
+        when(unpaywallService.hasSeveralFreeUrls(unpaywallResponse)).thenCallRealMethod();
+        when(unpaywallService.getFreeUrl(eq(unpaywallResponse), anyString())).thenCallRealMethod();
+        when(doiRedirectService.getLinkForDoi(DOI)).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return "https://publisher.example/" + DOI;
+        });
+
+        ResolutionResult result = resolve("doi:" + DOI, "10.0.0.1");
+        assertEquals(AccessRoute.OPEN_ACCESS, result.getRoute());
+        assertEquals("https://publisher.example/" + DOI + "/pdf", result.getUrl());
+    }
+
+    private static Unpaywall freeCopy(String url) {
+        Unpaywall unpaywall = new Unpaywall();
+        unpaywall.setFreeToRead(true);
+        unpaywall.setFreeFulltextUrl(url);
+        return unpaywall;
+    }
+
+    private static DataciteResponse dataciteResponse(String url, String rightsUri) {
+        DataciteRights rights = new DataciteRights();
+        rights.setRightsUri(rightsUri);
+        DataciteMetadata metadata = new DataciteMetadata();
+        metadata.setUrl(url);
+        metadata.setRightsList(List.of(rights));
+        DataciteData data = new DataciteData();
+        data.setAttributes(metadata);
+        DataciteResponse response = new DataciteResponse();
+        response.setData(data);
+        return response;
+    }
+
+    private ResolutionResult resolveArticle(String title, String date) {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        requestParams.add("issn", "0378-5955");
+        requestParams.add("date", date);
+        requestParams.add("atitle", title);
+        return resolverService.resolve(new ResolutionContext(requestParams, "linksolver", "10.0.0.1"));
+    }
+
+    private ResolutionResult resolve(String id, String remoteAddress) {
+        MultiValueMap<String, String> requestParams = new LinkedMultiValueMap<>();
+        requestParams.add("id", id);
+        requestParams.add("issn", "1234-5678");
+        return resolverService.resolve(new ResolutionContext(requestParams, "linksolver", remoteAddress));
+    }
+}
@@ -0,0 +1,155 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UnpaywallClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheEntry;
+import org.unidue.ub.libintel.linksolverwrapper.model.SharedCacheKey;
+import org.unidue.ub.libintel.linksolverwrapper.model.Unpaywall;
+import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallResponse;
+import org.unidue.ub.libintel.linksolverwrapper.repository.SharedCacheRepository;
+import org.unidue.ub.libintel.linksolverwrapper.service.DoiRedirectService;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallSnapshotService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+import org.unidue.ub.libintel.linksolverwrapper.utils.RedirectLinkRetriever;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the shared cache against a mocked repository: entries are written behind in batches with the latest value per
+ * key, expired entries are ignored, and a second instance answers DOIs from the entries written by the first one
+ * without asking the upstream services.
+ */
+public class SharedCacheServiceTest {
+
+    private SharedCacheRepository repository;
+
+    private SharedCacheService sharedCacheService;
+
+    @Before
+    public void setUp() {
+        repository = mock(SharedCacheRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        sharedCacheService = new SharedCacheService(repository, new SimpleMeterRegistry(), 1024);
+        ReflectionTestUtils.setField(sharedCacheService, "enabled", true);
+        ReflectionTestUtils.setField(sharedCacheService, "batchSize", 100);
+        ReflectionTestUtils.setField(sharedCacheService, "flushInterval", 1000L);
+        ReflectionTestUtils.setField(sharedCacheService, "pruneInterval", 3600L);
+    }
+
+    @After
+    public void tearDown() {
+        sharedCacheService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void writesLatestValuesBehind() {
+        long expiresAt = System.currentTimeMillis() + 60000;
+        sharedCacheService.put("doi-redirect", "10.1/a", "https://example.org/old", expiresAt);
+        sharedCacheService.put("doi-redirect", "10.1/b", "https://example.org/b", expiresAt);
+        sharedCacheService.put("doi-redirect", "10.1/a", "https://example.org/a", expiresAt);
+        sharedCacheService.start();
+        sharedCacheService.shutdown();
+
+        ArgumentCaptor<Collection<SharedCacheEntry>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).upsertAll(captor.capture());
+        List<SharedCacheEntry> written = new ArrayList<>();
+        captor.getValue().forEach(written::add);
+        assertEquals(2, written.size());
+        assertEquals("https://example.org/a", written.get(0).getValue());
+        // expired entries were removed on start
+        verify(repository).deleteExpired(anyLong());
+    }
+
+    @Test
+    public void escapesWildcardsOnInvalidation() {
+        sharedCacheService.invalidate("doi-redirect", "10.1/a_b%c!d");
+        verify(repository).deleteByKeyOrPattern(eq("doi-redirect"), eq("10.1/a_b%c!d"), eq("10.1/a!_b!%c!!d/%"));
+    }
+
+    @Test
+    public void ignoresExpiredEntries() {
+        when(repository.findById(new SharedCacheKey("holdings", "issn:1234-5678/2018")))
+                .thenReturn(Optional.of(new SharedCacheEntry("holdings", "issn:1234-5678/2018", "JOURNAL", System.currentTimeMillis() - 1)));
+        assertNull(sharedCacheService.get("holdings", "issn:1234-5678/2018"));
+
+        ReflectionTestUtils.setField(sharedCacheService, "enabled", false);
+        assertNull(sharedCacheService.get("holdings", "issn:1234-5678/2019"));
+        sharedCacheService.put("holdings", "issn:1234-5678/2019", "JOURNAL", System.currentTimeMillis() + 60000);
+        verify(repository, times(1)).findById(any());
+    }
+
+    @Test
+    public void newInstanceSkipsTheDoiResolver() {
+        when(repository.findById(new SharedCacheKey("doi-redirect", "10.1016/j.test.2018.01.001")))
+                .thenReturn(Optional.of(new SharedCacheEntry("doi-redirect", "10.1016/j.test.2018.01.001", "https://www.sciencedirect.com/science/article/pii/1", System.currentTimeMillis() + 60000)));
+        RedirectLinkRetriever redirectLinkRetriever = mock(RedirectLinkRetriever.class);
+        DoiRedirectService doiRedirectService = new DoiRedirectService(redirectLinkRetriever, new CacheRegistry(), sharedCacheService, 100);
+
+        assertEquals("https://www.sciencedirect.com/science/article/pii/1", doiRedirectService.getLinkForDoi("10.1016/J.TEST.2018.01.001"));
+        assertEquals("https://www.sciencedirect.com/science/article/pii/1", doiRedirectService.getLinkForDoi("10.1016/j.test.2018.01.001"));
+        verify(redirectLinkRetriever, never()).getRedirectLocation(any(Upstream.class), anyString());
+        // the second request was answered from the local cache
+        verify(repository, times(1)).findById(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sharesUnpaywallResponses() {
+        Unpaywall unpaywall = new Unpaywall();
+        unpaywall.setDoi("10.1/oa");
+        unpaywall.setFreeToRead(true);
+        unpaywall.setFreeFulltextUrl("https://repository.example.org/oa.pdf");
+        UnpaywallResponse unpaywallResponse = new UnpaywallResponse();
+        unpaywallResponse.setResults(new Unpaywall[]{unpaywall});
+        UnpaywallClient unpaywallClient = mock(UnpaywallClient.class);
+        when(unpaywallClient.getUnpaywallData(anyString(), any())).thenReturn(unpaywallResponse);
+
+        // the first instance asks unpaywall and writes the response to the shared cache
+        sharedCacheService.start();
+        assertEquals("https://repository.example.org/oa.pdf", createUnpaywallService(unpaywallClient).checkUnpaywall("10.1/oa", null));
+        sharedCacheService.shutdown();
+        ArgumentCaptor<Collection<SharedCacheEntry>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(repository, atLeastOnce()).upsertAll(captor.capture());
+        SharedCacheEntry shared = captor.getValue().iterator().next();
+        when(repository.findById(new SharedCacheKey("unpaywall", "10.1/oa"))).thenReturn(Optional.of(shared));
+
+        // the second instance reads it from there
+        assertEquals("https://repository.example.org/oa.pdf", createUnpaywallService(unpaywallClient).checkUnpaywall("10.1/oa", null));
+        verify(unpaywallClient, times(1)).getUnpaywallData(anyString(), any());
+    }
+
+    private UnpaywallService createUnpaywallService(UnpaywallClient unpaywallClient) {
+        UnpaywallService unpaywallService = new UnpaywallService(unpaywallClient, mock(UnpaywallSnapshotService.class),
+                new CacheRegistry(), Runnable::run, sharedCacheService, 100);
+        ReflectionTestUtils.setField(unpaywallService, "email", "test@example.org");
+        ReflectionTestUtils.setField(unpaywallService, "ttl", 3600L);
+        ReflectionTestUtils.setField(unpaywallService, "negativeTtl", 600L);
+        ReflectionTestUtils.setField(unpaywallService, "stalePeriod", 3600L);
+        return unpaywallService;
+    }
+}
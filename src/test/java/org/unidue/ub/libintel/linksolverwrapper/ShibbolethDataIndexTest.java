@@ -0,0 +1,95 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.model.ShibbolethData;
+import org.unidue.ub.libintel.linksolverwrapper.repository.ShibbolethDataRepository;
+import org.unidue.ub.libintel.linksolverwrapper.service.ShibbolethDataIndex;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the lookup of the Shibboleth data by host and parent domains, and that the index is replaced on reloads, kept
+ * if the database cannot be read, and reloaded periodically.
+ */
+public class ShibbolethDataIndexTest {
+
+    private ShibbolethDataRepository repository;
+
+    private ShibbolethDataIndex shibbolethDataIndex;
+
+    @Before
+    public void setUp() {
+        repository = mock(ShibbolethDataRepository.class);
+        shibbolethDataIndex = new ShibbolethDataIndex(repository);
+    }
+
+    @After
+    public void tearDown() {
+        shibbolethDataIndex.shutdown();
+    }
+
+    @Test
+    public void findsHostsAndParentDomains() {
+        ShibbolethData sciencedirect = shibbolethData("sciencedirect.com");
+        ShibbolethData wiley = shibbolethData("onlinelibrary.wiley.com");
+        when(repository.findAll()).thenReturn(List.of(sciencedirect, wiley));
+        shibbolethDataIndex.reload();
+
+        assertEquals(sciencedirect, shibbolethDataIndex.find("sciencedirect.com"));
+        assertEquals(sciencedirect, shibbolethDataIndex.find("www.sciencedirect.com"));
+        assertEquals(sciencedirect, shibbolethDataIndex.find("WWW.ScienceDirect.com"));
+        assertEquals(wiley, shibbolethDataIndex.find("onlinelibrary.wiley.com"));
+        // parent domains match, but not siblings or other hosts ending with the same characters
+        assertNull(shibbolethDataIndex.find("wiley.com"));
+        assertNull(shibbolethDataIndex.find("notsciencedirect.com"));
+        assertNull(shibbolethDataIndex.find("com"));
+        assertNull(shibbolethDataIndex.find(null));
+    }
+
+    @Test
+    public void keepsTheIndexIfTheDatabaseFails() {
+        ShibbolethData sciencedirect = shibbolethData("sciencedirect.com");
+        when(repository.findAll())
+                .thenReturn(List.of(sciencedirect))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(List.of(shibbolethData("link.springer.com")));
+        shibbolethDataIndex.reload();
+        shibbolethDataIndex.reload();
+        assertEquals(sciencedirect, shibbolethDataIndex.find("www.sciencedirect.com"));
+
+        shibbolethDataIndex.reload();
+        assertNull(shibbolethDataIndex.find("www.sciencedirect.com"));
+        assertEquals("link.springer.com", shibbolethDataIndex.find("link.springer.com").getHost());
+    }
+
+    @Test
+    public void reloadsPeriodically() throws InterruptedException {
+        // the database is not reachable at startup
+        when(repository.findAll())
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(List.of(shibbolethData("sciencedirect.com")));
+        ReflectionTestUtils.setField(shibbolethDataIndex, "reloadInterval", 1L);
+        shibbolethDataIndex.start();
+        assertNull(shibbolethDataIndex.find("www.sciencedirect.com"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (shibbolethDataIndex.find("www.sciencedirect.com") == null && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals("sciencedirect.com", shibbolethDataIndex.find("www.sciencedirect.com").getHost());
+    }
+
+    private static ShibbolethData shibbolethData(String host) {
+        ShibbolethData shibbolethData = new ShibbolethData();
+        shibbolethData.setHost(host);
+        return shibbolethData;
+    }
+}
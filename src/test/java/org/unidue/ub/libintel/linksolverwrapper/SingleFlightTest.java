@@ -0,0 +1,95 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Test;
+import org.unidue.ub.libintel.linksolverwrapper.utils.SingleFlight;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that concurrent calls for the same key share one computation, and that failures, including errors, are
+ * passed to all waiting calls without leaving the key blocked.
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    public void concurrentCallsShareOneComputation() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            computations.incrementAndGet();
+            return "other value";
+        }));
+        // the second call is waiting for the first one
+        while (singleFlight.getCoalesced() == 0)
+            Thread.sleep(1);
+        release.countDown();
+
+        assertEquals("value", first.get(5, TimeUnit.SECONDS));
+        assertEquals("value", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, computations.get());
+        // the key is free again after the computation
+        assertEquals("next", singleFlight.execute("key", () -> "next"));
+    }
+
+    @Test
+    public void errorsReachTheWaitingCalls() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> "other value"));
+        while (singleFlight.getCoalesced() == 0)
+            Thread.sleep(1);
+        release.countDown();
+
+        for (CompletableFuture<String> future : List.of(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("the error was not passed on");
+            } catch (ExecutionException ee) {
+                assertTrue(ee.getCause() instanceof StackOverflowError);
+            }
+        }
+        assertEquals("next", singleFlight.execute("key", () -> "next"));
+    }
+
+    @Test
+    public void asyncErrorsCompleteTheFuture() throws Exception {
+        CompletableFuture<String> future = singleFlight.executeAsync("key", () -> {
+            throw new AssertionError("failed");
+        }, Runnable::run);
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals("next", singleFlight.executeAsync("key", () -> "next", Runnable::run).get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.model.WayflessType;
+import org.unidue.ub.libintel.linksolverwrapper.service.ShibbolethDataIndex;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+import org.unidue.ub.libintel.linksolverwrapper.utils.SubnetMatcher;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks the matching of IPv4 and IPv6 addresses against compiled subnets, the rejection of invalid subnets, and that
+ * the Shibboleth builder keeps its excluded subnets if invalid ones are pushed by the config server.
+ */
+public class SubnetMatcherTest {
+
+    @Test
+    public void matchesIpv4Subnets() {
+        SubnetMatcher matcher = SubnetMatcher.compile("132.252.0.0/16", "134.91.0.0/16", " 10.1.2.3 ", "", null);
+        assertTrue(matcher.matches("132.252.0.0"));
+        assertTrue(matcher.matches("132.252.255.255"));
+        assertTrue(matcher.matches("134.91.17.4"));
+        assertTrue(matcher.matches("10.1.2.3"));
+        assertFalse(matcher.matches("132.253.0.0"));
+        assertFalse(matcher.matches("132.251.255.255"));
+        assertFalse(matcher.matches("10.1.2.4"));
+        // IPv4 addresses are matched in their IPv6 mapped form as well
+        assertTrue(matcher.matches("::ffff:132.252.1.1"));
+    }
+
+    @Test
+    public void matchesIpv6Subnets() {
+        SubnetMatcher matcher = SubnetMatcher.compile("2001:638:500::/48", "2a00:1398::1/128");
+        assertTrue(matcher.matches("2001:638:500::1"));
+        assertTrue(matcher.matches("2001:638:500:ffff:ffff:ffff:ffff:ffff"));
+        assertTrue(matcher.matches("2a00:1398::1"));
+        assertTrue(matcher.matches("[2a00:1398:0:0:0:0:0:1]"));
+        assertFalse(matcher.matches("2001:638:501::"));
+        assertFalse(matcher.matches("2a00:1398::2"));
+        assertFalse(matcher.matches("132.252.1.1"));
+    }
+
+    @Test
+    public void matchesAllAddressesWithPrefixLengthZero() {
+        SubnetMatcher ipv4 = SubnetMatcher.compile("0.0.0.0/0");
+        assertTrue(ipv4.matches("0.0.0.0"));
+        assertTrue(ipv4.matches("255.255.255.255"));
+        assertFalse(ipv4.matches("::1"));
+        SubnetMatcher ipv6 = SubnetMatcher.compile("::/0");
+        assertTrue(ipv6.matches("::"));
+        assertTrue(ipv6.matches("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertFalse(ipv6.matches("10.0.0.1"));
+    }
+
+    @Test
+    public void mergesOverlappingAndAdjacentRanges() {
+        SubnetMatcher matcher = SubnetMatcher.compile("10.0.1.0/24", "10.0.0.0/16", "10.1.0.0/16", "10.0.0.0/24",
+                "2001:db8::/32", "2001:db8:1::/48", "2001:db9::/32");
+        assertTrue(matcher.matches("10.0.200.1"));
+        assertTrue(matcher.matches("10.1.0.0"));
+        assertTrue(matcher.matches("10.1.255.255"));
+        assertFalse(matcher.matches("10.2.0.0"));
+        assertFalse(matcher.matches("9.255.255.255"));
+        assertTrue(matcher.matches("2001:db8:1::1"));
+        assertTrue(matcher.matches("2001:db8:ffff::1"));
+        assertTrue(matcher.matches("2001:db9::1"));
+        assertFalse(matcher.matches("2001:dba::"));
+    }
+
+    @Test
+    public void rejectsInvalidSubnets() {
+        for (String subnet : new String[]{"132.252.0.0/33", "132.252.0.0/-1", "132.252.0.0/", "132.252.0/16",
+                "256.0.0.0/8", "2001:db8::/129", "example.org/16", "2001:zz8::/32"}) {
+            try {
+                SubnetMatcher.compile(subnet);
+                fail("accepted invalid subnet " + subnet);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void ignoresInvalidAddresses() {
+        SubnetMatcher matcher = SubnetMatcher.compile("0.0.0.0/0", "::/0");
+        assertFalse(matcher.matches(null));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches("unknown"));
+        assertFalse(matcher.matches("1.2.3"));
+        assertFalse(matcher.matches("1.2.3.4.5"));
+        assertFalse(matcher.matches("1.2.3.256"));
+    }
+
+    @Test
+    public void keepsTheExclusionsOnInvalidRefresh() {
+        MockEnvironment environment = new MockEnvironment();
+        ShibbolethBuilder shibbolethBuilder = new ShibbolethBuilder(mock(ShibbolethDataIndex.class), environment);
+        ReflectionTestUtils.setField(shibbolethBuilder, "shiboblethFreeSubnet", new String[]{"132.252.0.0/16"});
+        ReflectionTestUtils.invokeMethod(shibbolethBuilder, "compileExclusions");
+        String url = "https://www.sciencedirect.com/science/article/pii/1";
+
+        environment.setProperty("libintel.shibboleth.exclusion", "134.91.0.0/16,300.0.0.0/8");
+        shibbolethBuilder.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("libintel.shibboleth.exclusion")));
+        assertEquals(WayflessType.IN_IP_RANGE, shibbolethBuilder.buildWayflessUrl(url, "132.252.1.1").getType());
+        assertEquals(WayflessType.NO_DATA, shibbolethBuilder.buildWayflessUrl(url, "134.91.1.1").getType());
+
+        environment.setProperty("libintel.shibboleth.exclusion", "134.91.0.0/16");
+        shibbolethBuilder.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("libintel.shibboleth.exclusion")));
+        assertEquals(WayflessType.NO_DATA, shibbolethBuilder.buildWayflessUrl(url, "132.252.1.1").getType());
+        assertEquals(WayflessType.IN_IP_RANGE, shibbolethBuilder.buildWayflessUrl(url, "134.91.1.1").getType());
+    }
+}
@@ -0,0 +1,134 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.client.UnpaywallClient;
+import org.unidue.ub.libintel.linksolverwrapper.model.Unpaywall;
+import org.unidue.ub.libintel.linksolverwrapper.model.UnpaywallResponse;
+import org.unidue.ub.libintel.linksolverwrapper.repository.SharedCacheRepository;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallSnapshotService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the stale-while-revalidate cache of the unpaywall data: outdated entries are returned at once and refreshed
+ * in the background, failed refreshes keep them, and DOIs unknown to unpaywall are cached for the negative time to
+ * live.
+ */
+public class UnpaywallServiceTest {
+
+    private final static String DOI = "10.1/oa";
+
+    private UnpaywallClient unpaywallClient;
+
+    private UnpaywallService unpaywallService;
+
+    // the background refreshes, run on demand
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        unpaywallClient = mock(UnpaywallClient.class);
+        // the shared cache is disabled by default
+        SharedCacheService sharedCacheService = new SharedCacheService(mock(SharedCacheRepository.class), new SimpleMeterRegistry(), 16);
+        unpaywallService = new UnpaywallService(unpaywallClient, mock(UnpaywallSnapshotService.class), new CacheRegistry(),
+                refreshes::add, sharedCacheService, 100);
+        ReflectionTestUtils.setField(unpaywallService, "email", "test@example.org");
+        ReflectionTestUtils.setField(unpaywallService, "ttl", 3600L);
+        ReflectionTestUtils.setField(unpaywallService, "negativeTtl", 600L);
+        ReflectionTestUtils.setField(unpaywallService, "stalePeriod", 3600L);
+    }
+
+    @Test
+    public void cachesResponses() {
+        when(unpaywallClient.getUnpaywallData(anyString(), anyString())).thenReturn(response("https://repository.example.org/1.pdf"));
+
+        assertEquals("https://repository.example.org/1.pdf", unpaywallService.checkUnpaywall(DOI, null));
+        assertEquals("https://repository.example.org/1.pdf", unpaywallService.checkUnpaywall("10.1/OA", null));
+        verify(unpaywallClient, times(1)).getUnpaywallData(anyString(), anyString());
+        assertEquals(0, refreshes.size());
+    }
+
+    @Test
+    public void servesOutdatedEntriesWhileRefreshing() {
+        // entries turn stale immediately
+        ReflectionTestUtils.setField(unpaywallService, "ttl", 0L);
+        when(unpaywallClient.getUnpaywallData(anyString(), anyString()))
+                .thenReturn(response("https://repository.example.org/1.pdf"))
+                .thenReturn(response("https://repository.example.org/2.pdf"));
+        assertEquals("https://repository.example.org/1.pdf", unpaywallService.checkUnpaywall(DOI, null));
+
+        // the outdated entry is returned without waiting for unpaywall
+        assertEquals("https://repository.example.org/1.pdf", unpaywallService.checkUnpaywall(DOI, null));
+        verify(unpaywallClient, times(1)).getUnpaywallData(anyString(), anyString());
+        assertEquals(1, refreshes.size());
+
+        refreshes.remove(0).run();
+        assertEquals("https://repository.example.org/2.pdf", unpaywallService.checkUnpaywall(DOI, null));
+        verify(unpaywallClient, times(2)).getUnpaywallData(anyString(), anyString());
+    }
+
+    @Test
+    public void keepsOutdatedEntriesIfTheRefreshFails() {
+        ReflectionTestUtils.setField(unpaywallService, "ttl", 0L);
+        when(unpaywallClient.getUnpaywallData(anyString(), anyString()))
+                .thenReturn(response("https://repository.example.org/1.pdf"))
+                .thenThrow(feignException(429));
+        unpaywallService.checkUnpaywall(DOI, null);
+        unpaywallService.checkUnpaywall(DOI, null);
+        refreshes.remove(0).run();
+
+        assertEquals("https://repository.example.org/1.pdf", unpaywallService.checkUnpaywall(DOI, null));
+    }
+
+    @Test
+    public void cachesUnknownDoisForTheNegativeTimeToLive() {
+        when(unpaywallClient.getUnpaywallData(anyString(), anyString())).thenThrow(feignException(404));
+
+        assertNull(unpaywallService.checkUnpaywall(DOI, null));
+        assertNull(unpaywallService.checkUnpaywall(DOI, null));
+        verify(unpaywallClient, times(1)).getUnpaywallData(anyString(), anyString());
+        assertEquals(0, refreshes.size());
+
+        // after the negative time to live, the DOI is refreshed in the background
+        ReflectionTestUtils.setField(unpaywallService, "negativeTtl", 0L);
+        unpaywallService.checkUnpaywall("10.1/unknown", null);
+        assertNull(unpaywallService.checkUnpaywall("10.1/unknown", null));
+        assertEquals(1, refreshes.size());
+    }
+
+    private static UnpaywallResponse response(String url) {
+        Unpaywall unpaywall = new Unpaywall();
+        unpaywall.setDoi(DOI);
+        unpaywall.setFreeToRead(true);
+        unpaywall.setFreeFulltextUrl(url);
+        UnpaywallResponse unpaywallResponse = new UnpaywallResponse();
+        unpaywallResponse.setResults(new Unpaywall[]{unpaywall});
+        return unpaywallResponse;
+    }
+
+    private static FeignException feignException(int status) {
+        Request request = Request.create(Request.HttpMethod.GET, "https://api.unpaywall.org/v2/" + DOI, Map.of(), null, StandardCharsets.UTF_8);
+        Response response = Response.builder().status(status).reason("").headers(Map.of()).request(request).build();
+        return FeignException.errorStatus("UnpaywallClient#getUnpaywallData", response);
+    }
+}
@@ -0,0 +1,125 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallSnapshotService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Imports a small data feed snapshot and a change file and checks the lookups in the resulting index files.
+ */
+public class UnpaywallSnapshotServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UnpaywallSnapshotService unpaywallSnapshotService;
+
+    private Path feed;
+
+    @Before
+    public void setUp() throws IOException {
+        unpaywallSnapshotService = new UnpaywallSnapshotService();
+        ReflectionTestUtils.setField(unpaywallSnapshotService, "directory", folder.getRoot().toString());
+        ReflectionTestUtils.setField(unpaywallSnapshotService, "feedDirectory", "");
+        feed = folder.newFolder("feed").toPath();
+    }
+
+    @After
+    public void tearDown() {
+        unpaywallSnapshotService.shutdown();
+    }
+
+    @Test
+    public void answersFromSnapshotAndChanges() throws Exception {
+        try (Writer writer = gzipWriter(feed.resolve("snapshot.jsonl.gz"))) {
+            writer.write("{\"doi\": \"10.1108/JD-05-2018-0073\", \"is_oa\": true, \"oa_locations\": [{\"url\": \"https://repository.example/other.pdf\"}], "
+                    + "\"best_oa_location\": {\"host_type\": \"publisher\", \"url\": \"https://www.emerald.com/jd-05-2018-0073.pdf\", \"license\": null}, \"year\": 2018}\n");
+            writer.write("{\"doi\": \"10.1016/j.joi.2018.09.004\", \"is_oa\": false, \"best_oa_location\": null, \"z_authors\": [{\"family\": \"Doe\"}]}\n");
+            for (int i = 0; i < 20000; i++)
+                writer.write("{\"doi\": \"10.1234/bulk-" + i + "\", \"is_oa\": " + (i % 2 == 0) + ", \"best_oa_location\": {\"url\": \"https://oa.example/" + i + "\"}}\n");
+        }
+        assertEquals(20002L, (long) unpaywallSnapshotService.importSnapshot("snapshot.jsonl.gz").get());
+
+        assertEquals("https://www.emerald.com/jd-05-2018-0073.pdf", unpaywallSnapshotService.find("10.1108/jd-05-2018-0073"));
+        assertEquals("", unpaywallSnapshotService.find("10.1016/J.JOI.2018.09.004"));
+        assertNull(unpaywallSnapshotService.find("10.1016/j.joi.2018.09.005"));
+        for (int i = 0; i < 20000; i++)
+            assertEquals(i % 2 == 0 ? "https://oa.example/" + i : "", unpaywallSnapshotService.find("10.1234/bulk-" + i));
+
+        // the change file opens one article, closes another and adds a new one
+        try (Writer writer = Files.newBufferedWriter(feed.resolve("changes.jsonl"))) {
+            writer.write("{\"doi\": \"10.1016/j.joi.2018.09.004\", \"is_oa\": true, \"best_oa_location\": {\"url\": \"https://arxiv.org/abs/1809.00001\"}}\n");
+            writer.write("{\"doi\": \"10.1234/bulk-0\", \"is_oa\": false, \"best_oa_location\": null}\n");
+            writer.write("{\"doi\": \"10.5555/new\", \"is_oa\": true, \"best_oa_location\": {\"url\": \"https://new.example\"}}\n");
+        }
+        assertEquals(3L, (long) unpaywallSnapshotService.importChanges("changes.jsonl").get());
+
+        assertEquals("https://arxiv.org/abs/1809.00001", unpaywallSnapshotService.find("10.1016/j.joi.2018.09.004"));
+        assertEquals("", unpaywallSnapshotService.find("10.1234/bulk-0"));
+        assertEquals("https://oa.example/2", unpaywallSnapshotService.find("10.1234/bulk-2"));
+        assertEquals("https://new.example", unpaywallSnapshotService.find("10.5555/new"));
+        assertEquals(2, unpaywallSnapshotService.getSegments().size());
+
+        // the index files are found again after a restart
+        UnpaywallSnapshotService restarted = new UnpaywallSnapshotService();
+        ReflectionTestUtils.setField(restarted, "directory", folder.getRoot().toString());
+        restarted.load();
+        assertEquals("https://new.example", restarted.find("10.5555/new"));
+        restarted.shutdown();
+
+        // a new snapshot replaces the change files
+        try (Writer writer = gzipWriter(feed.resolve("snapshot-2.jsonl.gz"))) {
+            writer.write("{\"doi\": \"10.5555/new\", \"is_oa\": false}\n");
+        }
+        unpaywallSnapshotService.importSnapshot("snapshot-2.jsonl.gz").get();
+        assertEquals(1, unpaywallSnapshotService.getSegments().size());
+        assertEquals("", unpaywallSnapshotService.find("10.5555/new"));
+        assertNull(unpaywallSnapshotService.find("10.1108/JD-05-2018-0073"));
+        try (var files = Files.list(folder.getRoot().toPath())) {
+            // index file, segments file and feed folder
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFilesOutsideTheFeedDirectory() throws ExecutionException, InterruptedException {
+        unpaywallSnapshotService.importSnapshot("../segments").get();
+    }
+
+    @Test
+    public void failedImportKeepsIndex() throws Exception {
+        Files.write(feed.resolve("broken.jsonl"), "{\"doi\": \"10.5555/broken\", \"is_oa\": tru".getBytes(StandardCharsets.UTF_8));
+        try {
+            unpaywallSnapshotService.importSnapshot("broken.jsonl").get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(unpaywallSnapshotService.getSegments().isEmpty());
+        try (var files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static Writer gzipWriter(Path file) throws IOException {
+        OutputStream output = new GZIPOutputStream(Files.newOutputStream(file));
+        return new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unidue.ub.libintel.linksolverwrapper.client.HttpClientProperties;
+import org.unidue.ub.libintel.linksolverwrapper.client.Upstream;
+import org.unidue.ub.libintel.linksolverwrapper.client.UpstreamHttpClient;
+
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the connection limit of an upstream against a local server: waiting for a permit does not block the caller,
+ * and a streamed body holds its permit until the reader is closed.
+ */
+public class UpstreamHttpClientTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.createContext("/", exchange -> {
+            byte[] body = "body".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+
+        HttpClientProperties.Settings settings = new HttpClientProperties.Settings();
+        settings.setMaxConnections(1);
+        settings.setRequestTimeout(500);
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setUpstreams(Map.of("other", settings));
+        upstreamHttpClient = new UpstreamHttpClient(properties);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void streamedBodyHoldsThePermitUntilClosed() throws Exception {
+        Reader reader = upstreamHttpClient.openReader(Upstream.OTHER, baseUrl + "/stream");
+        // the headers have arrived, but the reader still holds the only permit
+        CompletableFuture<String> waiting = upstreamHttpClient.getAsync(Upstream.OTHER, baseUrl + "/waiting");
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        reader.close();
+        assertEquals("body", waiting.get(5, TimeUnit.SECONDS));
+        // closing twice does not release a second permit
+        reader.close();
+        assertEquals("body", upstreamHttpClient.get(Upstream.OTHER, baseUrl + "/next"));
+    }
+
+    @Test
+    public void waitingForAPermitDoesNotBlockAndTimesOut() throws Exception {
+        Reader reader = upstreamHttpClient.openReader(Upstream.OTHER, baseUrl + "/stream");
+        long start = System.nanoTime();
+        CompletableFuture<String> waiting = upstreamHttpClient.getAsync(Upstream.OTHER, baseUrl + "/waiting");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 400);
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("the request did not time out");
+        } catch (ExecutionException ee) {
+            assertTrue(ee.getCause().getMessage().startsWith("connection limit reached"));
+        }
+        reader.close();
+        assertEquals("body", upstreamHttpClient.get(Upstream.OTHER, baseUrl + "/next"));
+    }
+}
@@ -0,0 +1,160 @@
+package org.unidue.ub.libintel.linksolverwrapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.unidue.ub.libintel.linksolverwrapper.controller.BatchResolveController;
+import org.unidue.ub.libintel.linksolverwrapper.controller.CacheController;
+import org.unidue.ub.libintel.linksolverwrapper.controller.UnpaywallSnapshotController;
+import org.unidue.ub.libintel.linksolverwrapper.service.BatchResolutionService;
+import org.unidue.ub.libintel.linksolverwrapper.service.LinksolverHoldingsCache;
+import org.unidue.ub.libintel.linksolverwrapper.service.ResolverService;
+import org.unidue.ub.libintel.linksolverwrapper.service.SharedCacheService;
+import org.unidue.ub.libintel.linksolverwrapper.service.UnpaywallSnapshotService;
+import org.unidue.ub.libintel.linksolverwrapper.utils.CacheRegistry;
+
+import javax.servlet.Filter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Sends requests through the security filter chain of {@link LinksolverWrapperApplication} to the controllers with
+ * mocked services: the public endpoints are reachable without CSRF token, the caches and the snapshot
+ * import only by the system user.
+ */
+public class WebSecurityTest {
+
+    private AnnotationConfigWebApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(WebConfiguration.class);
+        context.refresh();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void batchResolutionIsPublic() throws Exception {
+        MvcResult result = mockMvc.perform(post("/resolve/batch").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    public void cachesRequireTheSystemUser() throws Exception {
+        mockMvc.perform(get("/caches"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(delete("/caches/resolution"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(delete("/caches/holdings").header(HttpHeaders.AUTHORIZATION, basic("system", "wrong")))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/caches").header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/caches/resolution").header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/caches/holdings").header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/caches/unknown").header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void snapshotImportRequiresTheSystemUser() throws Exception {
+        mockMvc.perform(post("/unpaywall/snapshot").param("file", "snapshot.jsonl.gz"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/unpaywall/snapshot/changes").param("file", "changes.jsonl.gz"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/unpaywall/snapshot").param("file", "snapshot.jsonl.gz")
+                .header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/unpaywall/snapshot/changes").param("file", "changes.jsonl.gz")
+                .header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(get("/unpaywall/snapshot").header(HttpHeaders.AUTHORIZATION, basic("system", "secret")))
+                .andExpect(status().isOk());
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @EnableWebSecurity
+    static class WebConfiguration {
+
+        // the security settings of the application, without the configuration of the application itself
+        @Bean
+        public LinksolverWrapperApplication securityConfiguration() {
+            return new LinksolverWrapperApplication();
+        }
+
+        @Bean
+        public UserDetailsService userDetailsService() {
+            return new InMemoryUserDetailsManager(User.withUsername("system").password("{noop}secret").roles("SYSTEM").build());
+        }
+
+        @Bean
+        public BatchResolveController batchResolveController() {
+            BatchResolutionService batchResolutionService = mock(BatchResolutionService.class);
+            when(batchResolutionService.resolveAll(any())).thenReturn(CompletableFuture.completedFuture(List.of()));
+            return new BatchResolveController(batchResolutionService, new ObjectMapper());
+        }
+
+        @Bean
+        public CacheController cacheController() {
+            LinksolverHoldingsCache holdingsCache = mock(LinksolverHoldingsCache.class);
+            when(holdingsCache.invalidate(any())).thenReturn(true);
+            return new CacheController(new CacheRegistry(), mock(ResolverService.class), holdingsCache, mock(SharedCacheService.class));
+        }
+
+        @Bean
+        public UnpaywallSnapshotController unpaywallSnapshotController() {
+            return new UnpaywallSnapshotController(mock(UnpaywallSnapshotService.class));
+        }
+    }
+}
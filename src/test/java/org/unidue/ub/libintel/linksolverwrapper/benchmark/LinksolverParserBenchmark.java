@@ -0,0 +1,96 @@
+package org.unidue.ub.libintel.linksolverwrapper.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLink;
+import org.unidue.ub.libintel.linksolverwrapper.model.LinksolverLinkType;
+import org.unidue.ub.libintel.linksolverwrapper.utils.LinksolverResponseParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the classification of linksolver responses by the streaming {@link LinksolverResponseParser} with the
+ * former Jsoup DOM traversal. The pages are read from src/test/resources/linksolver.
+ *
+ * Run with 'mvn -P benchmark test-compile exec:exec' or from the IDE via the main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinksolverParserBenchmark {
+
+    @Param({"fulltext", "journal", "interlibrary-loan"})
+    public String page;
+
+    private String html;
+
+    @Setup
+    public void readPage() throws IOException {
+        html = readFixture(page);
+    }
+
+    @Benchmark
+    public LinksolverLinkType jsoup() {
+        // the former traversal: build the DOM and check the text of every link in document order
+        Document doc = Jsoup.parse(html, "https://linksolver.example/openurl");
+        LinksolverLinkType lastType = null;
+        for (Element link : doc.select("a")) {
+            lastType = LinksolverLinkType.fromLinkText(link.text());
+            if (lastType.isDecisive())
+                return lastType;
+        }
+        return lastType;
+    }
+
+    @Benchmark
+    public LinksolverLinkType streaming() throws IOException {
+        LinksolverLink link = LinksolverResponseParser.parse(new StringReader(html));
+        return link == null ? null : link.getType();
+    }
+
+    /**
+     * reads one of the linksolver pages from the test resources
+     *
+     * @param page the name of the page without extension
+     * @return the html of the page
+     */
+    public static String readFixture(String page) throws IOException {
+        try (InputStream inputStream = LinksolverParserBenchmark.class.getResourceAsStream("/linksolver/" + page + ".html")) {
+            if (inputStream == null)
+                throw new IOException("no linksolver page " + page);
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LinksolverParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,217 @@
+package org.unidue.ub.libintel.linksolverwrapper.benchmark;
+
+import ch.qos.logback.classic.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.unidue.ub.libintel.linksolverwrapper.model.OpenUrl;
+import org.unidue.ub.libintel.linksolverwrapper.model.ShibbolethData;
+import org.unidue.ub.libintel.linksolverwrapper.repository.ShibbolethDataRepository;
+import org.unidue.ub.libintel.linksolverwrapper.service.ShibbolethDataIndex;
+import org.unidue.ub.libintel.linksolverwrapper.utils.IdentifierRecognizer;
+import org.unidue.ub.libintel.linksolverwrapper.utils.ShibbolethBuilder;
+import org.unidue.ub.libintel.linksolverwrapper.utils.Utilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks the steps of /resolve which run on every request and do not wait for upstream services. Each operation
+ * processes all OpenURL requests recorded in src/test/resources/openurl/requests.txt. Throughput and latency
+ * percentiles are reported, the main method adds the allocation rate.
+ *
+ * Logging is reduced to warnings, so that the console output does not dominate the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveHotPathBenchmark {
+
+    private List<MultiValueMap<String, String>> requests;
+
+    private List<String> values;
+
+    private List<String> ids;
+
+    private Map<String, String> jopParameters;
+
+    private ShibbolethBuilder shibbolethBuilder;
+
+    // targets with SP-side and IP-side Shibboleth data, a subdomain and a host without Shibboleth data
+    private final static String[] TARGETS = {
+            "https://www.sciencedirect.com/science/article/pii/S1751157718301755",
+            "https://onlinelibrary.wiley.com/doi/full/10.1002/asi.24062",
+            "https://link.springer.com/book/10.1007/978-3-658-21346-5",
+            "https://www.emerald.com/insight/content/doi/10.1108/JD-05-2018-0073/full/html"
+    };
+
+    // requests from outside and from inside the excluded subnets
+    private final static String[] REMOTE_ADDRESSES = {"93.184.216.34", "132.252.181.12"};
+
+    @Setup
+    public void setUp() throws IOException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        requests = readRequests();
+        values = new ArrayList<>();
+        ids = new ArrayList<>();
+        for (MultiValueMap<String, String> request : requests) {
+            request.values().forEach(values::addAll);
+            if (request.containsKey("id"))
+                ids.addAll(request.get("id"));
+        }
+
+        jopParameters = new HashMap<>();
+        jopParameters.put("sid", "bib:ughe");
+        jopParameters.put("pid", "bibid%3DUGHE");
+        jopParameters.put("genre", "journal");
+        jopParameters.put("issn", "0006-1972");
+
+        shibbolethBuilder = stubShibbolethBuilder();
+    }
+
+    @Benchmark
+    public void recognizeIdentifier(Blackhole blackhole) {
+        for (String id : ids)
+            blackhole.consume(IdentifierRecognizer.recognize(id));
+    }
+
+    @Benchmark
+    public void normalizeIdentifier(Blackhole blackhole) {
+        for (String id : ids)
+            blackhole.consume(IdentifierRecognizer.normalize(id));
+    }
+
+    @Benchmark
+    public void cleanUpString(Blackhole blackhole) {
+        for (String value : values)
+            blackhole.consume(Utilities.cleanUpString(value));
+    }
+
+    @Benchmark
+    public void mapListToString(Blackhole blackhole) {
+        for (MultiValueMap<String, String> request : requests)
+            blackhole.consume(Utilities.mapListToString(request));
+    }
+
+    @Benchmark
+    public void parseOpenUrl(Blackhole blackhole) {
+        for (MultiValueMap<String, String> request : requests) {
+            OpenUrl openUrl = OpenUrl.parse(request);
+            blackhole.consume(openUrl.getKey());
+            blackhole.consume(openUrl.getQueryString());
+        }
+    }
+
+    @Benchmark
+    public String mapToString() {
+        return Utilities.mapToString(jopParameters);
+    }
+
+    @Benchmark
+    public void constructWayflessUrl(Blackhole blackhole) {
+        for (String remoteAddress : REMOTE_ADDRESSES)
+            for (String target : TARGETS)
+                blackhole.consume(shibbolethBuilder.constructWayflessUrl(target, remoteAddress));
+    }
+
+    /**
+     * reads the recorded OpenURL requests and decodes them like the request parameters of /resolve
+     */
+    static List<MultiValueMap<String, String>> readRequests() throws IOException {
+        List<MultiValueMap<String, String>> requests = new ArrayList<>();
+        try (InputStream inputStream = ResolveHotPathBenchmark.class.getResourceAsStream("/openurl/requests.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                MultiValueMap<String, String> request = new LinkedMultiValueMap<>();
+                for (String parameter : line.split("&")) {
+                    int index = parameter.indexOf('=');
+                    request.add(URLDecoder.decode(parameter.substring(0, index), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(index + 1), StandardCharsets.UTF_8));
+                }
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * builds a ShibbolethBuilder on an index filled from a stub repository
+     */
+    private static ShibbolethBuilder stubShibbolethBuilder() {
+        ShibbolethData sciencedirect = new ShibbolethData();
+        sciencedirect.setHost("sciencedirect.com");
+        sciencedirect.setSpSideWayfless(true);
+        sciencedirect.setServiceproviderSibbolethUrl("https://auth.elsevier.com/ShibAuth/institutionLogin");
+        sciencedirect.setEntityIdString("entityID");
+        sciencedirect.setTargetString("appReturnURL");
+        ShibbolethData wiley = new ShibbolethData();
+        wiley.setHost("onlinelibrary.wiley.com");
+        wiley.setShire("https://onlinelibrary.wiley.com/Shibboleth.sso/SAML/POST");
+        wiley.setProviderId("https://onlinelibrary.wiley.com/shibboleth");
+        ShibbolethData springer = new ShibbolethData();
+        springer.setHost("link.springer.com");
+        springer.setSpSideWayfless(true);
+        springer.setServiceproviderSibbolethUrl("https://fsso.springer.com/saml/login");
+        springer.setEntityIdString("idp");
+        springer.setTargetString("targetUrl");
+        springer.setAdditionalUrlParameters("&wayfless=true");
+
+        ShibbolethDataRepository repository = mock(ShibbolethDataRepository.class);
+        when(repository.findAll()).thenReturn(Arrays.asList(sciencedirect, wiley, springer));
+        ShibbolethDataIndex shibbolethDataIndex = new ShibbolethDataIndex(repository);
+        shibbolethDataIndex.reload();
+
+        ShibbolethBuilder shibbolethBuilder = new ShibbolethBuilder(shibbolethDataIndex, mock(Environment.class));
+        ReflectionTestUtils.setField(shibbolethBuilder, "idpUrl", "https://idp.uni-due.de/idp/profile/Shibboleth/SSO");
+        ReflectionTestUtils.setField(shibbolethBuilder, "entityId", "https://idp.uni-due.de/idp/shibboleth");
+        ReflectionTestUtils.setField(shibbolethBuilder, "shiboblethFreeSubnet", new String[]{"132.252.0.0/16", "134.91.0.0/16"});
+        ReflectionTestUtils.invokeMethod(shibbolethBuilder, "compileExclusions");
+        return shibbolethBuilder;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ResolveHotPathBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}